@@ -0,0 +1,205 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package SHM.HMatrix;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Holds the (density, clusterID) entries of all objects of an HMatrix in primitive arrays, instead
+ * of a TreeMap of boxed values per object. The entries of each object are a run of the shared
+ * levels and clusterIDs arrays, from pointOffsets[point] to pointOffsets[point+1], in descending
+ * order of density (the order of the hierarchy), and the clusterID at a density is found by binary
+ * search in the run.
+ *
+ * The entries are added in the order of the hierarchy (interleaved between the objects), and pack()
+ * must be called before they are read. ColumnarObjInstance gives the ObjInstance view of an object.
+ */
+public class ColumnarClusterIDs implements java.io.Serializable
+{
+    private int numPoints;
+    private int numEntries;
+
+    //Filled by pack():
+    private int[] pointOffsets;
+    private double[] levels;
+    private int[] clusterIDs;
+
+    //The entries in the order they were added, which are discarded by pack():
+    private int[] addedPoints;
+    private double[] addedLevels;
+    private int[] addedClusterIDs;
+    private int[] lastAdded;        //The index of the last entry added for each object, or -1.
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final long serialVersionUID = 1L;
+
+    public ColumnarClusterIDs(int numPoints)
+    {
+        this.numPoints = numPoints;
+        this.numEntries = 0;
+
+        int capacity = Math.max(INITIAL_CAPACITY, 2*numPoints);
+        this.addedPoints = new int[capacity];
+        this.addedLevels = new double[capacity];
+        this.addedClusterIDs = new int[capacity];
+        this.lastAdded = new int[numPoints];
+        Arrays.fill(this.lastAdded, -1);
+    }
+
+    /**
+     * Adds an entry of an object. The entries of each object must be added in descending order of
+     * density, and as in TreeMap.put(), an entry at the density of the last entry replaces it.
+     * @param point The index of the object
+     * @param level The density (level of the hierarchy)
+     * @param clusterID The clusterID of the object from this density down to the next entry
+     */
+    public void add(int point, double level, int clusterID)
+    {
+        if(this.pointOffsets != null)
+            throw new IllegalStateException("No entries can be added after pack().");
+
+        int last = this.lastAdded[point];
+        if(last != -1)
+        {
+            int comparison = Double.compare(level, this.addedLevels[last]);
+            if(comparison == 0)
+            {
+                this.addedClusterIDs[last] = clusterID;
+                return;
+            }
+            if(comparison > 0)
+                throw new IllegalArgumentException("The entries of object " + point + " must be added in descending order of density.");
+        }
+
+        if(this.numEntries == this.addedPoints.length)
+        {
+            this.addedPoints = Arrays.copyOf(this.addedPoints, 2*this.numEntries);
+            this.addedLevels = Arrays.copyOf(this.addedLevels, 2*this.numEntries);
+            this.addedClusterIDs = Arrays.copyOf(this.addedClusterIDs, 2*this.numEntries);
+        }
+
+        this.addedPoints[this.numEntries] = point;
+        this.addedLevels[this.numEntries] = level;
+        this.addedClusterIDs[this.numEntries] = clusterID;
+        this.lastAdded[point] = this.numEntries;
+        this.numEntries++;
+    }
+
+    /**
+     * Groups the entries added into one run per object (a counting sort by object, which keeps the
+     * order in which the entries of each object were added).
+     */
+    public void pack()
+    {
+        if(this.pointOffsets != null)
+            return;
+
+        this.pointOffsets = new int[this.numPoints+1];
+        for(int i = 0; i < this.numEntries; i++)
+        {
+            this.pointOffsets[this.addedPoints[i]+1]++;
+        }
+        for(int point = 0; point < this.numPoints; point++)
+        {
+            this.pointOffsets[point+1] += this.pointOffsets[point];
+        }
+
+        this.levels = new double[this.numEntries];
+        this.clusterIDs = new int[this.numEntries];
+        int[] nextEntry = Arrays.copyOf(this.pointOffsets, this.numPoints);
+        for(int i = 0; i < this.numEntries; i++)
+        {
+            int position = nextEntry[this.addedPoints[i]]++;
+            this.levels[position] = this.addedLevels[i];
+            this.clusterIDs[position] = this.addedClusterIDs[i];
+        }
+
+        this.addedPoints = null;
+        this.addedLevels = null;
+        this.addedClusterIDs = null;
+        this.lastAdded = null;
+    }
+
+    /**
+     * Returns the clusterID of an object at a density: the clusterID of the entry with the greatest
+     * density which is not greater than it, or ObjInstance's NOISE if there is none (as
+     * ObjInstance.getClusterID()).
+     */
+    public int getClusterID(int point, double level)
+    {
+        this.checkPacked();
+
+        //The run is in descending order, so the entry is the first one with a density <= level:
+        int low = this.pointOffsets[point];
+        int high = this.pointOffsets[point+1];
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(Double.compare(this.levels[middle], level) <= 0)
+                high = middle;
+            else
+                low = middle+1;
+        }
+
+        if(low == this.pointOffsets[point+1])
+            return 0;
+        return this.clusterIDs[low];
+    }
+
+    /**
+     * Returns the entries of an object as the TreeMap which an ObjInstance would hold.
+     */
+    public TreeMap<Double, Integer> getAllClusters(int point)
+    {
+        this.checkPacked();
+
+        TreeMap<Double, Integer> clusters = new TreeMap<Double, Integer>();
+        for(int i = this.pointOffsets[point]; i < this.pointOffsets[point+1]; i++)
+        {
+            clusters.put(this.levels[i], this.clusterIDs[i]);
+        }
+        return clusters;
+    }
+
+    public int getNumEntries(int point)
+    {
+        this.checkPacked();
+        return this.pointOffsets[point+1] - this.pointOffsets[point];
+    }
+
+    //Notice that the entries of an object are indexed in descending order of density.
+    public double getEntryLevel(int point, int entry)
+    {
+        this.checkPacked();
+        return this.levels[this.entryIndex(point, entry)];
+    }
+
+    public int getEntryClusterID(int point, int entry)
+    {
+        this.checkPacked();
+        return this.clusterIDs[this.entryIndex(point, entry)];
+    }
+
+    public int getNumPoints()
+    {
+        return this.numPoints;
+    }
+
+    private int entryIndex(int point, int entry)
+    {
+        if(entry < 0 || entry >= this.pointOffsets[point+1] - this.pointOffsets[point])
+            throw new IndexOutOfBoundsException("Entry: " + entry + ", Entries of object " + point + ": " + (this.pointOffsets[point+1] - this.pointOffsets[point]));
+        return this.pointOffsets[point] + entry;
+    }
+
+    private void checkPacked()
+    {
+        if(this.pointOffsets == null)
+            throw new IllegalStateException("The entries must be packed before they are read.");
+    }
+}
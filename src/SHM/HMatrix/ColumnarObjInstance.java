@@ -0,0 +1,120 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package SHM.HMatrix;
+
+import java.io.ObjectStreamException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An ObjInstance whose (density, clusterID) entries are the run of an object in a shared
+ * ColumnarClusterIDs, so existing callers of ObjInstance read them without a TreeMap per object.
+ * getAllClusters() and getDensities() return copies of the entries. A put() copies the entries
+ * into the ObjInstance's own TreeMap, after which the object behaves as a plain ObjInstance.
+ *
+ * It is written to a .shm file as a plain ObjInstance, so the format of the file does not change.
+ */
+public class ColumnarObjInstance extends ObjInstance
+{
+    private ColumnarClusterIDs columns;
+    private int point;              //The index of the object in columns.
+    private boolean detached;       //Indicates if the entries were copied into the ObjInstance by put().
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param id The ID of the object, which is also its index in columns
+     * @param columns The entries of all objects, which must be packed before they are read
+     */
+    public ColumnarObjInstance(Integer id, ColumnarClusterIDs columns)
+    {
+        super(id);
+        this.columns = columns;
+        this.point = id;
+        this.detached = false;
+    }
+
+    @Override
+    public void updateDeathLevel()
+    {
+        if(this.detached)
+        {
+            super.updateDeathLevel();
+            return;
+        }
+
+        //The entries are in descending order, so the second lowest density is the second to last one.
+        this.deathLevel = this.columns.getEntryLevel(this.point, this.columns.getNumEntries(this.point)-2);
+    }
+
+    @Override
+    public TreeMap<Double, Integer> getAllClusters()
+    {
+        if(this.detached)
+            return super.getAllClusters();
+
+        return this.columns.getAllClusters(this.point);
+    }
+
+    @Override
+    public Set<Double> getDensities()
+    {
+        if(this.detached)
+            return super.getDensities();
+
+        return this.columns.getAllClusters(this.point).keySet();
+    }
+
+    @Override
+    public Integer getClusterID(Double d)
+    {
+        if(this.detached)
+            return super.getClusterID(d);
+
+        return this.columns.getClusterID(this.point, d);
+    }
+
+    @Override
+    public void put(Double density, Integer clusterID)
+    {
+        if(!this.detached)
+        {
+            for(Map.Entry<Double, Integer> entry : this.columns.getAllClusters(this.point).entrySet())
+            {
+                super.put(entry.getKey(), entry.getValue());
+            }
+            this.detached = true;
+        }
+
+        super.put(density, clusterID);
+    }
+
+    /**
+     * Replaces this object by a plain ObjInstance with the same values when it is serialized.
+     */
+    private Object writeReplace() throws ObjectStreamException
+    {
+        ObjInstance obj = new ObjInstance(this.getID(), this.getObservation(), this.getObservation2(), this.getObservation3());
+        obj.setLabel(this.getLabel());
+        obj.setReachabilityDistance(this.getReachabilityDistance());
+        obj.setOutlierScore(this.getOutlierScore());
+        obj.setCoreDistance(this.getCoreDistance());
+        obj.setHDBSCANPartition(this.getHDBSCANPartition());
+
+        TreeMap<Double, Integer> clusters = this.getAllClusters();
+        for(Map.Entry<Double, Integer> entry : clusters.entrySet())
+        {
+            obj.put(entry.getKey(), entry.getValue());
+        }
+
+        //As in ObjInstance.updateDeathLevel(), the death level is the same Double as its key:
+        Double deathLevelKey = clusters.floorKey(this.deathLevel);
+        obj.deathLevel = (this.deathLevel.equals(deathLevelKey)) ? deathLevelKey : this.deathLevel;
+
+        return obj;
+    }
+}
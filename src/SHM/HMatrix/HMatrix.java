@@ -81,7 +81,7 @@ public class HMatrix implements java.io.Serializable
         {
             obj.updateDeathLevel();
             //gets the Idx of the last index that is not noise.
-            int lastCluster = obj.getAllClusters().get(obj.getDeathLevel());
+            int lastCluster = obj.getClusterID(obj.getDeathLevel());
             this.lastClusters.put(obj.getID(), lastCluster);                
         }
     }
@@ -29,7 +29,7 @@ public class ObjInstance implements java.io.Serializable{
     private Double outlierScore;				//Holds the outlier Score given to this object after applying the HDBSCAN* algorithm
     private Double coreDistance;				//Holds the core distance of this object.
     
-    private Double deathLevel;           //Holds the last density where this object is not a noise.
+    protected Double deathLevel;           //Holds the last density where this object is not a noise.
     
     private Integer HDBSCANPartition;			//Holds the partitioning given by HDBSCAN
     
@@ -186,9 +186,10 @@ public class ObjInstance implements java.io.Serializable{
     public String toString()
     {
        String out = "ID:"+this.id+" OBS:"+this.observation+"| "+" OBS2:"+this.observation2+"| "+" OBS3:"+this.observation3+"| ";
-       for(Double density : this.clusterIDs.keySet())
+       TreeMap<Double, Integer> clusters = this.getAllClusters();
+       for(Double density : clusters.keySet())
        {
-           out += "[D="+density+" Cl="+this.clusterIDs.get(density)+"]";
+           out += "[D="+density+" Cl="+clusters.get(density)+"]";
        }
        return out;
     }
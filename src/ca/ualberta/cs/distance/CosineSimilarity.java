@@ -4,7 +4,7 @@ package ca.ualberta.cs.distance;
  * Computes cosine similarity between two points, d = 1 - ((X.Y) / (||X||*||Y||))
  * @author zjullion
  */
-public class CosineSimilarity implements DistanceCalculator {
+public class CosineSimilarity implements MetricDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
@@ -32,12 +32,88 @@ public class CosineSimilarity implements DistanceCalculator {
 	}
 	
 	
+	/**
+	 * For vectors scaled to unit length, ||X-Y||^2 = 2 * (1 - cos(X,Y)), so sqrt(2d) is the euclidean
+	 * distance between the normalized points.  Small negative values caused by rounding are treated as 0.
+	 */
+	public double toMetric(double distance) {
+		return Math.sqrt(2 * Math.max(distance, 0));
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, computing the magnitude of the point
+	 * only once.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		double magnitudeOne = sumOfProducts(point, point);
+		
+		for (int i = 0; i < numIndices; i++) {
+			double[] other = points[indices[i]];
+			
+			if (other.length != point.length) {
+				distances[i] = computeDistance(point, other);
+				continue;
+			}
+			
+			double dotProduct = 0;
+			double magnitudeTwo = 0;
+			for (int j = 0; j < point.length; j++) {
+				dotProduct+= (point[j] * other[j]);
+				magnitudeTwo+= (other[j] * other[j]);
+			}
+			distances[i] = 1 - (dotProduct / Math.sqrt(magnitudeOne * magnitudeTwo));
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, computing the magnitude of each point only
+	 * once, so that only the dot product is computed for each pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		double[] magnitudesTwo = new double[endTwo - startTwo];
+		for (int j = startTwo; j < endTwo; j++) {
+			magnitudesTwo[j - startTwo] = sumOfProducts(pointsTwo[j], pointsTwo[j]);
+		}
+		
+		int position = 0;
+		for (int i = startOne; i < endOne; i++) {
+			double magnitudeOne = sumOfProducts(pointsOne[i], pointsOne[i]);
+			
+			for (int j = startTwo; j < endTwo; j++) {
+				if (pointsOne[i].length != pointsTwo[j].length)
+					distances[position++] = computeDistance(pointsOne[i], pointsTwo[j]);
+				else
+					distances[position++] = 1 - (sumOfProducts(pointsOne[i], pointsTwo[j]) / 
+							Math.sqrt(magnitudeOne * magnitudesTwo[j - startTwo]));
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "cosine";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Sums the products of the attributes of two points of the same length, in the same order as
+	 * computeDistance.
+	 */
+	private static double sumOfProducts(double[] attributesOne, double[] attributesTwo) {
+		double sum = 0;
+
+		for (int i = 0; i < attributesOne.length; i++) {
+			sum+= (attributesOne[i] * attributesTwo[i]);
+		}
+
+		return sum;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
\ No newline at end of file
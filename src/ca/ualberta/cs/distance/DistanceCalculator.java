@@ -15,6 +15,87 @@ public interface DistanceCalculator{
 	 * @return A double for the distance between the two points
 	 */
 	public double computeDistance(double[] attributesOne, double[] attributesTwo);
+
+
+	/**
+	 * Computes the distance between two points, allowing the computation to stop early once the
+	 * distance is known to be larger than an upper bound.  If the distance is not larger than the
+	 * bound, the value returned is exactly computeDistance(attributesOne, attributesTwo); otherwise
+	 * it is some value larger than the bound.  The default implementation never stops early.
+	 * @param attributesOne The attributes of the first point
+	 * @param attributesTwo The attributes of the second point
+	 * @param upperBound The largest distance the caller is interested in
+	 * @return The distance between the two points, or a value larger than upperBound
+	 */
+	public default double computeDistance(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		return computeDistance(attributesOne, attributesTwo);
+	}
+
+
+	/**
+	 * Computes the distances from one point to several points of a data set.  The default
+	 * implementation calls computeDistance(point, points[indices[i]]) for each index; the built-in
+	 * distance functions override it with a loop which computes the statistics of the point (such as
+	 * its magnitude) only once, and returns the same values.
+	 * @param point The attributes of the point
+	 * @param points A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param indices The indices (in points) of the points to compute distances to
+	 * @param numIndices The number of indices to use, from the beginning of indices
+	 * @param distances A double[] of length at least numIndices, which will be filled with the
+	 * distance from the point to points[indices[i]] at position i
+	 */
+	public default void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = computeDistance(point, points[indices[i]]);
+		}
+	}
+
+
+	/**
+	 * Computes the distances from one point to several points of a data set, each with its own upper
+	 * bound as in computeDistance(double[], double[], double).
+	 * @param point The attributes of the point
+	 * @param points A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param indices The indices (in points) of the points to compute distances to
+	 * @param numIndices The number of indices to use, from the beginning of indices
+	 * @param upperBounds A double[] holding the upper bound for points[indices[i]] at position i
+	 * @param distances A double[] of length at least numIndices, which will be filled with the
+	 * distance from the point to points[indices[i]] (or a value larger than its bound) at position i
+	 */
+	public default void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] upperBounds, double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = computeDistance(point, points[indices[i]], upperBounds[i]);
+		}
+	}
+
+
+	/**
+	 * Computes the distances between every point of a block of points and every point of another
+	 * block.  Callers should pass blocks small enough to stay in cache.  The default implementation
+	 * calls computeDistance for each pair; the built-in distance functions override it with a loop
+	 * which computes the statistics of each point only once per block, and returns the same values.
+	 * @param pointsOne A double[][] holding the first block of points
+	 * @param startOne The first index (inclusive) of the first block
+	 * @param endOne The last index (exclusive) of the first block
+	 * @param pointsTwo A double[][] holding the second block of points
+	 * @param startTwo The first index (inclusive) of the second block
+	 * @param endTwo The last index (exclusive) of the second block
+	 * @param distances A double[] of length at least (endOne-startOne)*(endTwo-startTwo), which will be
+	 * filled row by row: the distance from pointsOne[i] to pointsTwo[j] is at position
+	 * (i-startOne)*(endTwo-startTwo) + (j-startTwo)
+	 */
+	public default void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		int position = 0;
+
+		for (int i = startOne; i < endOne; i++) {
+			for (int j = startTwo; j < endTwo; j++) {
+				distances[position++] = computeDistance(pointsOne[i], pointsTwo[j]);
+			}
+		}
+	}
 	
 	
 	public String getName();
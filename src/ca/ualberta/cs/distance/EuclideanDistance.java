@@ -4,12 +4,14 @@ package ca.ualberta.cs.distance;
  * Computes the euclidean distance between two points, d = sqrt((x1-y1)^2 + (x2-y2)^2 + ... + (xn-yn)^2).
  * @author zjullion
  */
-public class EuclideanDistance implements DistanceCalculator {
+public class EuclideanDistance implements MinkowskiDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
 	// ------------------------------ CONSTANTS ------------------------------
 
+	private static final double BOUND_SLACK = 1e-12;
+
 	// ------------------------------ CONSTRUCTORS ------------------------------
 	
 	public EuclideanDistance() {
@@ -28,12 +30,99 @@ public class EuclideanDistance implements DistanceCalculator {
 	}
 	
 	
+	public double toMetric(double distance) {
+		return distance;
+	}
+	
+	
+	/**
+	 * Computes the distance between two points, stopping as soon as it is larger than the bound.
+	 */
+	public double computeDistance(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		return Math.sqrt(sumOfSquares(attributesOne, attributesTwo, upperBound));
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = Math.sqrt(sumOfSquares(point, points[indices[i]]));
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, each with its own bound, without a
+	 * virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] upperBounds, double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = Math.sqrt(sumOfSquares(point, points[indices[i]], upperBounds[i]));
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		int position = 0;
+		
+		for (int i = startOne; i < endOne; i++) {
+			for (int j = startTwo; j < endTwo; j++) {
+				distances[position++] = Math.sqrt(sumOfSquares(pointsOne[i], pointsTwo[j]));
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "euclidean";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Sums the squared differences of the attributes, in the same order as computeDistance.
+	 */
+	private static double sumOfSquares(double[] attributesOne, double[] attributesTwo) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			double difference = attributesOne[i] - attributesTwo[i];
+			distance+= difference * difference;
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Sums the squared differences of the attributes as sumOfSquares does, but stops as soon as the
+	 * sum is larger than the square of the bound (with a relative slack of BOUND_SLACK, so that
+	 * rounding in the square and the square root can never make an abandoned distance smaller than
+	 * or equal to the bound).
+	 */
+	private static double sumOfSquares(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		double limit = upperBound * upperBound * (1 + BOUND_SLACK);
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			double difference = attributesOne[i] - attributesTwo[i];
+			distance+= difference * difference;
+			if (distance > limit)
+				break;
+		}
+
+		return distance;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
\ No newline at end of file
@@ -4,7 +4,7 @@ package ca.ualberta.cs.distance;
  * Computes the manhattan distance between two points, d = |x1-y1| + |x2-y2| + ... + |xn-yn|.
  * @author zjullion
  */
-public class ManhattanDistance implements DistanceCalculator {
+public class ManhattanDistance implements MinkowskiDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
@@ -28,12 +28,94 @@ public class ManhattanDistance implements DistanceCalculator {
 	}
 	
 	
+	public double toMetric(double distance) {
+		return distance;
+	}
+	
+	
+	/**
+	 * Computes the distance between two points, stopping as soon as it is larger than the bound.
+	 */
+	public double computeDistance(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		return sumOfDifferences(attributesOne, attributesTwo, upperBound);
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = sumOfDifferences(point, points[indices[i]]);
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, each with its own bound, without a
+	 * virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] upperBounds, double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = sumOfDifferences(point, points[indices[i]], upperBounds[i]);
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		int position = 0;
+		
+		for (int i = startOne; i < endOne; i++) {
+			for (int j = startTwo; j < endTwo; j++) {
+				distances[position++] = sumOfDifferences(pointsOne[i], pointsTwo[j]);
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "manhattan";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Sums the absolute differences of the attributes, in the same order as computeDistance.
+	 */
+	private static double sumOfDifferences(double[] attributesOne, double[] attributesTwo) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			distance+= Math.abs(attributesOne[i] - attributesTwo[i]);
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Sums the absolute differences of the attributes as sumOfDifferences does, but stops as soon as
+	 * the sum is larger than the bound.
+	 */
+	private static double sumOfDifferences(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			distance+= Math.abs(attributesOne[i] - attributesTwo[i]);
+			if (distance > upperBound)
+				break;
+		}
+
+		return distance;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
@@ -0,0 +1,18 @@
+package ca.ualberta.cs.distance;
+
+/**
+ * An interface for distance functions which become a metric (non-negative, symmetric and satisfying
+ * the triangle inequality) after a monotonically increasing transformation.  Metric indexes such as
+ * vantage-point trees use the transformed values to prune their search, so distance functions that
+ * do not implement this interface are always searched with an exact scan.
+ */
+public interface MetricDistance extends DistanceCalculator {
+
+	/**
+	 * Transforms a distance computed by this function into a metric distance.  The transformation must
+	 * be monotonically increasing, so that the order of neighbors is not changed.
+	 * @param distance A distance returned by computeDistance
+	 * @return The corresponding metric distance
+	 */
+	public double toMetric(double distance);
+}
@@ -0,0 +1,12 @@
+package ca.ualberta.cs.distance;
+
+/**
+ * A marker interface for distance functions that never decrease when the absolute difference
+ * between two points grows in any single attribute (e.g. the euclidean, manhattan and supremum
+ * distances).  For these functions, the distance from a point to the closest point of an
+ * axis-aligned box is a lower bound on its distance to every point inside the box, which allows
+ * spatial indexes such as k-d trees to skip parts of the data set.
+ */
+public interface MinkowskiDistance extends MetricDistance {
+
+}
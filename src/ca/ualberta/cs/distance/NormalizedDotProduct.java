@@ -0,0 +1,182 @@
+package ca.ualberta.cs.distance;
+
+/**
+ * Computes the cosine similarity or the pearson correlation between two points which were
+ * normalized by normalize, d = 1 - (X.Y)
+ *
+ * For cosine similarity each point is scaled to unit length, and for pearson correlation each point
+ * is also centered on its mean first, so the norms and means are computed once per point instead of
+ * once per pair and only the dot product remains.  The distances are the same as those of
+ * CosineSimilarity and PearsonCorrelation (which remain the reference implementations) up to
+ * rounding.  Points with zero length (or zero deviation) are normalized to NaN, so their distances
+ * are NaN as before.
+ *
+ * Callers check canNormalize, then replace the data set by normalize(dataSet, distanceFunction) and
+ * the distance function by a NormalizedDotProduct, so the core distances, the MST and the neighbor
+ * graphs all compute only a dot product per pair.
+ */
+public class NormalizedDotProduct implements MetricDistance {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private String name;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates a new NormalizedDotProduct.
+	 * @param name The name of the distance function the points were normalized for
+	 */
+	public NormalizedDotProduct(String name) {
+		this.name = name;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public double computeDistance(double[] attributesOne, double[] attributesTwo) {
+		double dotProduct = 0;
+
+		for (int i = 0; i < attributesOne.length && i < attributesTwo.length; i++) {
+			dotProduct+= (attributesOne[i] * attributesTwo[i]);
+		}
+
+		return 1 - dotProduct;
+	}
+
+
+	/**
+	 * For points of unit length, ||X-Y||^2 = 2 * (1 - X.Y), so sqrt(2d) is the euclidean distance
+	 * between the normalized points.  Small negative values caused by rounding are treated as 0.
+	 */
+	public double toMetric(double distance) {
+		return Math.sqrt(2 * Math.max(distance, 0));
+	}
+
+
+	/**
+	 * Computes the distances from one point to several points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = 1 - dotProduct(point, points[indices[i]]);
+		}
+	}
+
+
+	/**
+	 * Computes the distances between two blocks of points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		int position = 0;
+
+		for (int i = startOne; i < endOne; i++) {
+			for (int j = startTwo; j < endTwo; j++) {
+				distances[position++] = 1 - dotProduct(pointsOne[i], pointsTwo[j]);
+			}
+		}
+	}
+
+
+	public String getName() {
+		return this.name;
+	}
+
+
+	/**
+	 * Checks whether a data set can be normalized for a distance function, which is the case when the
+	 * distance function is a CosineSimilarity or a PearsonCorrelation and all points have the same
+	 * number of attributes.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction The DistanceCalculator that would be used on the data set
+	 * @return true if normalize can be used, and NormalizedDotProduct gives the same distances
+	 */
+	public static boolean canNormalize(double[][] dataSet, DistanceCalculator distanceFunction) {
+		if (!(distanceFunction instanceof CosineSimilarity) && !(distanceFunction instanceof PearsonCorrelation))
+			return false;
+		if (dataSet.length == 0)
+			return false;
+
+		for (double[] point : dataSet) {
+			if (point.length != dataSet[0].length)
+				return false;
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Normalizes a data set for a CosineSimilarity or a PearsonCorrelation.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction The CosineSimilarity or PearsonCorrelation that would be used on the data set
+	 * @return The normalized data set, with the points in the same order
+	 */
+	public static double[][] normalize(double[][] dataSet, DistanceCalculator distanceFunction) {
+		boolean center = (distanceFunction instanceof PearsonCorrelation);
+		double[][] normalizedDataSet = new double[dataSet.length][];
+
+		for (int i = 0; i < dataSet.length; i++) {
+			normalizedDataSet[i] = normalize(dataSet[i], center);
+		}
+
+		return normalizedDataSet;
+	}
+
+
+	/**
+	 * Normalizes a point to unit length, after centering it on its mean if required.
+	 * @param point The attributes of the point
+	 * @param center If the point should be centered on its mean (for pearson correlation)
+	 * @return The normalized point
+	 */
+	public static double[] normalize(double[] point, boolean center) {
+		double[] normalizedPoint = new double[point.length];
+		double mean = 0;
+
+		if (center) {
+			for (int i = 0; i < point.length; i++) {
+				mean+= point[i];
+			}
+			mean = mean / point.length;
+		}
+
+		double magnitude = 0;
+		for (int i = 0; i < point.length; i++) {
+			normalizedPoint[i] = point[i] - mean;
+			magnitude+= (normalizedPoint[i] * normalizedPoint[i]);
+		}
+		magnitude = Math.sqrt(magnitude);
+
+		for (int i = 0; i < point.length; i++) {
+			if (magnitude == 0)
+				normalizedPoint[i] = Double.NaN;
+			else
+				normalizedPoint[i] = normalizedPoint[i] / magnitude;
+		}
+
+		return normalizedPoint;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Sums the products of the attributes of two points, in the same order as computeDistance.
+	 */
+	private static double dotProduct(double[] attributesOne, double[] attributesTwo) {
+		double sum = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			sum+= (attributesOne[i] * attributesTwo[i]);
+		}
+
+		return sum;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
@@ -0,0 +1,151 @@
+package ca.ualberta.cs.distance;
+
+/**
+ * Computes the tanimoto similarity between two binary points (such as fingerprints) which were
+ * packed by pack,
+ *
+ * t = 1-(c/(r+d-c)), where
+ *
+ * c is the number of bit one shared by both objects
+ * r is the amount of bit one in object 1
+ * d is the amount of bit one in object 2
+ *
+ * A packed point holds r in its first position, followed by the bits of the point in words of
+ * BITS_PER_WORD bits.  Each word is stored as an integer valued double (which is exact, since it is
+ * smaller than 2^53), so packed data sets are still double[][] and can be used wherever a data set
+ * is expected.  c is then computed with Long.bitCount of the AND of the words, and the result is
+ * identical to that of TanimotoSimilarity on the unpacked points.
+ */
+public class PackedTanimotoSimilarity implements MetricDistance {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int numAttributes;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	public static final int BITS_PER_WORD = 52;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates a new PackedTanimotoSimilarity.
+	 * @param numAttributes The number of attributes of the points before they were packed
+	 */
+	public PackedTanimotoSimilarity(int numAttributes) {
+		this.numAttributes = numAttributes;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public double computeDistance(double[] attributesOne, double[] attributesTwo)
+	{
+		double distance = 0;
+		double r = attributesOne[0];
+		double d = attributesTwo[0];
+		long common = 0;
+
+		for (int i = 1; i < attributesOne.length && i < attributesTwo.length; i++)
+		{
+			common+= Long.bitCount((long)attributesOne[i] & (long)attributesTwo[i]);
+		}
+
+		double c = common;
+		distance = 1.0-(c/(r+d-c));
+		return distance;
+	}
+
+
+	/**
+	 * On binary points the tanimoto distance is the jaccard distance, which is a metric.
+	 */
+	public double toMetric(double distance) {
+		return distance;
+	}
+
+
+	public String getName() {
+		return "tanimoto";
+	}
+
+
+	/**
+	 * Checks whether a data set can be packed for a distance function, which is the case when the
+	 * distance function is a TanimotoSimilarity and every attribute is 0 or 1.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction The DistanceCalculator that would be used on the data set
+	 * @return true if pack can be used, and PackedTanimotoSimilarity gives the same distances
+	 */
+	public static boolean canPack(double[][] dataSet, DistanceCalculator distanceFunction) {
+		if (!(distanceFunction instanceof TanimotoSimilarity) || dataSet.length == 0)
+			return false;
+
+		for (double[] point : dataSet) {
+			if (point.length != dataSet[0].length)
+				return false;
+			for (double value : point) {
+				if (value != 0 && value != 1)
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Packs a binary data set, where every attribute is 0 or 1.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @return The packed data set, with the points in the same order
+	 */
+	public static double[][] pack(double[][] dataSet) {
+		double[][] packedDataSet = new double[dataSet.length][];
+
+		for (int i = 0; i < dataSet.length; i++) {
+			packedDataSet[i] = pack(dataSet[i]);
+		}
+
+		return packedDataSet;
+	}
+
+
+	/**
+	 * Packs a binary point, where every attribute is 0 or 1.
+	 * @param point The attributes of the point
+	 * @return The packed point
+	 */
+	public static double[] pack(double[] point) {
+		int numWords = (point.length + BITS_PER_WORD - 1) / BITS_PER_WORD;
+		double[] packedPoint = new double[numWords + 1];
+		int numOnes = 0;
+
+		for (int word = 0; word < numWords; word++) {
+			long bits = 0;
+			int end = Math.min((word + 1) * BITS_PER_WORD, point.length);
+
+			for (int attribute = word * BITS_PER_WORD; attribute < end; attribute++) {
+				if (point[attribute] == 1) {
+					bits|= 1L << (attribute - word * BITS_PER_WORD);
+					numOnes++;
+				}
+			}
+			packedPoint[word + 1] = bits;
+		}
+		packedPoint[0] = numOnes;
+
+		return packedPoint;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	/**
+	 * Returns the number of attributes of the points before they were packed, which is the
+	 * dimension of the data (e.g. for the all points core distance).
+	 * @return The number of attributes
+	 */
+	public int getNumAttributes() {
+		return this.numAttributes;
+	}
+}
@@ -4,7 +4,7 @@ package ca.ualberta.cs.distance;
  * Computes the euclidean distance between two points, d = 1 - (cov(X,Y) / (std_dev(X) * std_dev(Y)))
  * @author zjullion
  */
-public class PearsonCorrelation implements DistanceCalculator {
+public class PearsonCorrelation implements MetricDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
@@ -43,12 +43,109 @@ public class PearsonCorrelation implements DistanceCalculator {
 	}
 	
 	
+	/**
+	 * For points centered on their means and scaled to unit length, ||X-Y||^2 = 2 * (1 - r(X,Y)), so
+	 * sqrt(2d) is the euclidean distance between the standardized points.  Small negative values caused
+	 * by rounding are treated as 0.
+	 */
+	public double toMetric(double distance) {
+		return Math.sqrt(2 * Math.max(distance, 0));
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, computing the mean and deviation of the
+	 * point only once.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		double meanOne = mean(point);
+		double standardDeviationOne = sumOfProducts(point, meanOne, point, meanOne);
+		
+		for (int i = 0; i < numIndices; i++) {
+			double[] other = points[indices[i]];
+			
+			if (other.length != point.length)
+				distances[i] = computeDistance(point, other);
+			else {
+				double meanTwo = mean(other);
+				double covariance = 0;
+				double standardDeviationTwo = 0;
+				for (int j = 0; j < point.length; j++) {
+					covariance+= ((point[j] - meanOne) * (other[j] - meanTwo));
+					standardDeviationTwo+= ((other[j] - meanTwo) * (other[j] - meanTwo));
+				}
+				distances[i] = (1 - (covariance / Math.sqrt(standardDeviationOne * standardDeviationTwo)));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, computing the mean and deviation of each
+	 * point only once per block, so that only the covariance is computed for each pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		double[] meansTwo = new double[endTwo - startTwo];
+		double[] standardDeviationsTwo = new double[endTwo - startTwo];
+		for (int j = startTwo; j < endTwo; j++) {
+			meansTwo[j - startTwo] = mean(pointsTwo[j]);
+			standardDeviationsTwo[j - startTwo] = sumOfProducts(pointsTwo[j], meansTwo[j - startTwo], 
+					pointsTwo[j], meansTwo[j - startTwo]);
+		}
+		
+		int position = 0;
+		for (int i = startOne; i < endOne; i++) {
+			double meanOne = mean(pointsOne[i]);
+			double standardDeviationOne = sumOfProducts(pointsOne[i], meanOne, pointsOne[i], meanOne);
+			
+			for (int j = startTwo; j < endTwo; j++) {
+				if (pointsOne[i].length != pointsTwo[j].length)
+					distances[position++] = computeDistance(pointsOne[i], pointsTwo[j]);
+				else {
+					double covariance = sumOfProducts(pointsOne[i], meanOne, pointsTwo[j], meansTwo[j - startTwo]);
+					distances[position++] = (1 - (covariance / Math.sqrt(standardDeviationOne * standardDeviationsTwo[j - startTwo])));
+				}
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "pearson";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Computes the mean of the attributes of a point, as computeDistance does.
+	 */
+	private static double mean(double[] attributes) {
+		double mean = 0;
+
+		for (int i = 0; i < attributes.length; i++) {
+			mean+= attributes[i];
+		}
+
+		return mean / attributes.length;
+	}
+
+
+	/**
+	 * Sums the products of the deviations from the mean of two points of the same length, in the same
+	 * order as computeDistance.
+	 */
+	private static double sumOfProducts(double[] attributesOne, double meanOne, double[] attributesTwo, double meanTwo) {
+		double sum = 0;
+
+		for (int i = 0; i < attributesOne.length; i++) {
+			sum+= ((attributesOne[i] - meanOne) * (attributesTwo[i] - meanTwo));
+		}
+
+		return sum;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
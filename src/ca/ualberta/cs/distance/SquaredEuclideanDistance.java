@@ -4,7 +4,7 @@ package ca.ualberta.cs.distance;
  * Computes the euclidean distance between two points, d = (x1-y1)^2 + (x2-y2)^2 + ... + (xn-yn)^2.
  * @author zjullion
  */
-public class SquaredEuclideanDistance implements DistanceCalculator {
+public class SquaredEuclideanDistance implements MinkowskiDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
@@ -28,12 +28,99 @@ public class SquaredEuclideanDistance implements DistanceCalculator {
 	}
 	
 	
+	/**
+	 * The square root of the squared euclidean distance is the euclidean distance, which is a metric.
+	 */
+	public double toMetric(double distance) {
+		return Math.sqrt(distance);
+	}
+	
+	
+	/**
+	 * Computes the distance between two points, stopping as soon as it is larger than the bound.
+	 */
+	public double computeDistance(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		return sumOfSquares(attributesOne, attributesTwo, upperBound);
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = sumOfSquares(point, points[indices[i]]);
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, each with its own bound, without a
+	 * virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] upperBounds, double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = sumOfSquares(point, points[indices[i]], upperBounds[i]);
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		int position = 0;
+		
+		for (int i = startOne; i < endOne; i++) {
+			for (int j = startTwo; j < endTwo; j++) {
+				distances[position++] = sumOfSquares(pointsOne[i], pointsTwo[j]);
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "sqdeuclidean";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Sums the squared differences of the attributes, in the same order as computeDistance.
+	 */
+	private static double sumOfSquares(double[] attributesOne, double[] attributesTwo) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			double difference = attributesOne[i] - attributesTwo[i];
+			distance+= difference * difference;
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Sums the squared differences of the attributes as sumOfSquares does, but stops as soon as the
+	 * sum is larger than the bound.
+	 */
+	private static double sumOfSquares(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			double difference = attributesOne[i] - attributesTwo[i];
+			distance+= difference * difference;
+			if (distance > upperBound)
+				break;
+		}
+
+		return distance;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
\ No newline at end of file
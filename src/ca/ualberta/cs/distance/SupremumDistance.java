@@ -4,7 +4,7 @@ package ca.ualberta.cs.distance;
  * Computes the supremum distance between two points, d = max[(x1-y1), (x2-y2), ... ,(xn-yn)].
  * @author zjullion
  */
-public class SupremumDistance implements DistanceCalculator {
+public class SupremumDistance implements MinkowskiDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
@@ -30,12 +30,99 @@ public class SupremumDistance implements DistanceCalculator {
 	}
 	
 	
+	public double toMetric(double distance) {
+		return distance;
+	}
+	
+	
+	/**
+	 * Computes the distance between two points, stopping as soon as it is larger than the bound.
+	 */
+	public double computeDistance(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		return largestDifference(attributesOne, attributesTwo, upperBound);
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = largestDifference(point, points[indices[i]]);
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances from one point to several points, each with its own bound, without a
+	 * virtual call per pair.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] upperBounds, double[] distances) {
+		for (int i = 0; i < numIndices; i++) {
+			distances[i] = largestDifference(point, points[indices[i]], upperBounds[i]);
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, without a virtual call per pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		int position = 0;
+		
+		for (int i = startOne; i < endOne; i++) {
+			for (int j = startTwo; j < endTwo; j++) {
+				distances[position++] = largestDifference(pointsOne[i], pointsTwo[j]);
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "supremum";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Finds the largest absolute difference of the attributes, as computeDistance does.
+	 */
+	private static double largestDifference(double[] attributesOne, double[] attributesTwo) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			double difference = Math.abs(attributesOne[i] - attributesTwo[i]);
+			if (difference > distance)
+				distance = difference;
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Finds the largest absolute difference of the attributes as largestDifference does, but stops
+	 * as soon as a difference is larger than the bound.
+	 */
+	private static double largestDifference(double[] attributesOne, double[] attributesTwo, double upperBound) {
+		double distance = 0;
+		int length = Math.min(attributesOne.length, attributesTwo.length);
+
+		for (int i = 0; i < length; i++) {
+			double difference = Math.abs(attributesOne[i] - attributesTwo[i]);
+			if (difference > distance) {
+				distance = difference;
+				if (distance > upperBound)
+					break;
+			}
+		}
+
+		return distance;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
\ No newline at end of file
@@ -11,7 +11,7 @@ package ca.ualberta.cs.distance;
  * 
  * @author jadson
  */
-public class TanimotoSimilarity implements DistanceCalculator {
+public class TanimotoSimilarity implements MetricDistance {
 
 	// ------------------------------ PRIVATE VARIABLES ------------------------------
 
@@ -44,12 +44,89 @@ public class TanimotoSimilarity implements DistanceCalculator {
 	}
 
 
+	/**
+	 * For binary points (such as fingerprints) the tanimoto distance is the jaccard distance, which is
+	 * a metric.  It is not a metric for arbitrary real values, so NeighborSearchFactory only treats it
+	 * as one when every attribute is 0 or 1.
+	 */
+	public double toMetric(double distance) {
+		return distance;
+	}
+
+
+	/**
+	 * Computes the distances from one point to several points, counting the ones of the point only once.
+	 */
+	public void computeDistances(double[] point, double[][] points, int[] indices, int numIndices, 
+			double[] distances) {
+		double r = sumOfProducts(point, point);
+		
+		for (int i = 0; i < numIndices; i++) {
+			double[] other = points[indices[i]];
+			
+			if (other.length != point.length) {
+				distances[i] = computeDistance(point, other);
+				continue;
+			}
+			
+			double d = 0;
+			double c = 0;
+			for (int j = 0; j < point.length; j++) {
+				d+= other[j]*other[j];
+				c+= point[j]*other[j];
+			}
+			distances[i] = 1.0-(c/(r+d-c));
+		}
+	}
+	
+	
+	/**
+	 * Computes the distances between two blocks of points, counting the ones of each point only once
+	 * per block, so that only the shared ones are counted for each pair.
+	 */
+	public void computeDistances(double[][] pointsOne, int startOne, int endOne, 
+			double[][] pointsTwo, int startTwo, int endTwo, double[] distances) {
+		double[] onesTwo = new double[endTwo - startTwo];
+		for (int j = startTwo; j < endTwo; j++) {
+			onesTwo[j - startTwo] = sumOfProducts(pointsTwo[j], pointsTwo[j]);
+		}
+		
+		int position = 0;
+		for (int i = startOne; i < endOne; i++) {
+			double r = sumOfProducts(pointsOne[i], pointsOne[i]);
+			
+			for (int j = startTwo; j < endTwo; j++) {
+				if (pointsOne[i].length != pointsTwo[j].length)
+					distances[position++] = computeDistance(pointsOne[i], pointsTwo[j]);
+				else {
+					double c = sumOfProducts(pointsOne[i], pointsTwo[j]);
+					distances[position++] = 1.0-(c/(r+onesTwo[j - startTwo]-c));
+				}
+			}
+		}
+	}
+	
+	
 	public String getName() {
 		return "tanimoto";
 	}
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Sums the products of the attributes of two points of the same length, in the same order as
+	 * computeDistance.
+	 */
+	private static double sumOfProducts(double[] attributesOne, double[] attributesTwo) {
+		double sum = 0;
+
+		for (int i = 0; i < attributesOne.length; i++) {
+			sum+= attributesOne[i]*attributesTwo[i];
+		}
+
+		return sum;
+	}
+
 	// ------------------------------ GETTERS & SETTERS ------------------------------
 
 }
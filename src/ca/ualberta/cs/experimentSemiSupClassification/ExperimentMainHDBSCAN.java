@@ -42,6 +42,7 @@ public class ExperimentMainHDBSCAN implements Serializable
 
 		int numberTrials	= 30;
 		String delimiter	= ",";
+		boolean boruvkaMST	= false;	//Construct the MSTs with Boruvka's algorithm instead of Prim's
 
 		//Parameters for the classification approach
 		int maxIter			= 200;
@@ -102,7 +103,7 @@ public class ExperimentMainHDBSCAN implements Serializable
 			}
 			
 //			System.out.println("Dataset: " + inputName);
-//			ExperimentsSSClassificationCreateScenarios.generateInformation(inputName, dataFolder, outputFolder, methodLabelSelection, distance, numberTrials, arrayPlab, arrayMinPts, delimiter);
+//			ExperimentsSSClassificationCreateScenarios.generateInformation(inputName, dataFolder, outputFolder, methodLabelSelection, distance, numberTrials, arrayPlab, arrayMinPts, delimiter, boruvkaMST);
 
 //			ExperimentMstCoreDistance.performIt(inputName, dataFolder, outputFolder, distance, rho, expoent, delimiter); // OK
 			
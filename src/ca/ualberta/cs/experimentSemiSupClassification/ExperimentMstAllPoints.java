@@ -158,7 +158,7 @@ public class ExperimentMstAllPoints
 				// Apply: HDBSCAN*(ap,-)
 				Util.resetDataset(datasetExperiments, false);
 				result=null;
-				result = UnifiedView.expandLabels(new UndirectedGraph(mstAp.get(minPts)), preLabeledDenBased, false);
+				result = UnifiedView.expandLabels(mstAp.get(minPts), preLabeledDenBased, false);
 
 				for(Map.Entry<Integer, Integer> entries: result.entrySet())
 					datasetExperiments.getObjects()[entries.getKey()].setLabel(entries.getValue());
@@ -170,7 +170,7 @@ public class ExperimentMstAllPoints
 				// Apply: HDBSCAN*(ap,wMST)
 				Util.resetDataset(datasetExperiments, false);
 				result=null;
-				result = UnifiedView.expandWeighted(database, new UndirectedGraph(mstAp.get(minPts)), preLabeledDenBased, semi, distance, false);
+				result = UnifiedView.expandWeighted(database, mstAp.get(minPts), preLabeledDenBased, semi, distance, false);
 
 				for(Map.Entry<Integer, Integer> entries: result.entrySet())
 					datasetExperiments.getObjects()[entries.getKey()].setLabel(entries.getValue());
@@ -157,7 +157,7 @@ public class ExperimentMstCoreDistance
 				// Apply: HDBSCAN*(cd,-)
 				Util.resetDataset(datasetExperiments, false);
 				result=null;
-				result = UnifiedView.expandLabels(new UndirectedGraph(mstCd.get(minPts)), preLabeledDenBased, false);
+				result = UnifiedView.expandLabels(mstCd.get(minPts), preLabeledDenBased, false);
 
 				for(Map.Entry<Integer, Integer> entries: result.entrySet())
 					datasetExperiments.getObjects()[entries.getKey()].setLabel(entries.getValue());
@@ -169,7 +169,7 @@ public class ExperimentMstCoreDistance
 				// Apply: HDBSCAN*(cd,wMST)
 				Util.resetDataset(datasetExperiments, false);
 				result=null;
-				result = UnifiedView.expandWeighted(database, new UndirectedGraph(mstCd.get(minPts)), preLabeledDenBased, semi, distance, false);
+				result = UnifiedView.expandWeighted(database, mstCd.get(minPts), preLabeledDenBased, semi, distance, false);
 
 				for(Map.Entry<Integer, Integer> entries: result.entrySet())
 					datasetExperiments.getObjects()[entries.getKey()].setLabel(entries.getValue());
@@ -6,10 +6,14 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.NormalizedDotProduct;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
 import ca.ualberta.cs.hdbscanApts.HDBSCANApts;
+import ca.ualberta.cs.hdbscanstar.CoreDistanceTable;
 import ca.ualberta.cs.hdbscanstar.HDBSCANStar;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
 import ca.ualberta.cs.model.Dataset;
@@ -26,6 +30,21 @@ public class ExperimentsSSClassificationCreateScenarios
 			int numberTrials, ArrayList<Integer> arrayPlab,
 			ArrayList<Integer> arrayMinPts,
 			String delimiter) throws Exception
+	{
+		generateInformation(fileName, fileFolder, outputFolder, labelSelection, distance, numberTrials, arrayPlab, arrayMinPts, 
+				delimiter, false);
+	}
+
+
+	/**
+	 * Generates the scenarios, constructing the minimum spanning trees with Boruvka's algorithm
+	 * (where the distance function allows it) instead of Prim's algorithm if boruvkaMST is true.
+	 */
+	public static void generateInformation(String fileName, String fileFolder, String outputFolder,
+			LabelSelection labelSelection, DistanceCalculator distance,
+			int numberTrials, ArrayList<Integer> arrayPlab,
+			ArrayList<Integer> arrayMinPts,
+			String delimiter, boolean boruvkaMST) throws Exception
 	{	
 
 		// Reading data set file
@@ -37,15 +56,31 @@ public class ExperimentsSSClassificationCreateScenarios
 		for(Instance inst: datasetExperiments.getObjects())
 			database[inst.getIndex()] = inst.getCoordinates();
 
+		/** The MSTs use packed fingerprints for tanimoto and normalized points for cosine and pearson */
+		double[][] distanceData = database;
+		DistanceCalculator dataDistance = distance;
+		if (PackedTanimotoSimilarity.canPack(database, distance)) {
+			distanceData = PackedTanimotoSimilarity.pack(database);
+			dataDistance = new PackedTanimotoSimilarity(database[0].length);
+		}
+		else if (NormalizedDotProduct.canNormalize(database, distance)) {
+			distanceData = NormalizedDotProduct.normalize(database, distance);
+			dataDistance = new NormalizedDotProduct(distance.getName());
+		}
+
 
 		HashMap<Integer, Graph> mKNN 			   		 = new HashMap<Integer, Graph>();
 		HashMap<Integer, UndirectedGraph> mstReach 	  	 = new HashMap<Integer, UndirectedGraph>();
 		HashMap<Integer, UndirectedGraph> mstAptsStore	 = new HashMap<Integer, UndirectedGraph>();
 
+		/** One neighbor search for the largest minPts gives the core distances for all of them */
+		CoreDistanceTable coreDistanceTable = HDBSCANStar.calculateCoreDistanceTable(distanceData, Collections.max(arrayMinPts), dataDistance);
+
 		for(Integer minPts: arrayMinPts)
 		{
-			double[] coreDistances = HDBSCANStar.calculateCoreDistances(database, minPts, distance);
-			UndirectedGraph mst = HDBSCANStar.constructMST(database, coreDistances, true, distance);
+			double[] coreDistances = coreDistanceTable.getCoreDistances(minPts);
+			UndirectedGraph mst = boruvkaMST ? HDBSCANStar.constructBoruvkaMST(distanceData, coreDistances, true, dataDistance, 1) 
+					: HDBSCANStar.constructMST(distanceData, coreDistances, true, dataDistance);
 			mstReach.put(minPts, mst);
 
 			Graph graph 		= GraphGenerator.generateGraph(database, distance, minPts);
@@ -53,8 +88,9 @@ public class ExperimentsSSClassificationCreateScenarios
 		}
 
 		/** Construction of the MST using the apts core distance and new mutual reachability distance*/
-		double[] coreDistances   = HDBSCANApts.calculateCoreDistances(database, distance);
-		UndirectedGraph mstApts  = HDBSCANApts.constructMST(database, coreDistances, true, distance);
+		double[] coreDistances   = HDBSCANApts.calculateCoreDistances(distanceData, dataDistance);
+		UndirectedGraph mstApts  = boruvkaMST ? HDBSCANApts.constructBoruvkaMST(distanceData, coreDistances, true, dataDistance, 1) 
+				: HDBSCANApts.constructMST(distanceData, coreDistances, true, dataDistance);
 
 		for(Integer minPts: arrayMinPts)
 			mstAptsStore.put(minPts, mstApts);
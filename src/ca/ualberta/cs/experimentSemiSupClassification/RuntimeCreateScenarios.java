@@ -10,6 +10,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.NormalizedDotProduct;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
 import ca.ualberta.cs.hdbscanApts.HDBSCANApts;
 import ca.ualberta.cs.hdbscanstar.HDBSCANStar;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
@@ -28,6 +30,20 @@ public class RuntimeCreateScenarios
 			int numberTrials,
 			ArrayList<Integer> arrayMinPts,
 			String delimiter) throws Exception
+	{
+		generateInformation(fileName, fileFolder, outputFolder, labelSelection, distance, numberTrials, arrayMinPts, delimiter, false);
+	}
+
+
+	/**
+	 * Generates the scenarios, constructing the minimum spanning trees with Boruvka's algorithm
+	 * (where the distance function allows it) instead of Prim's algorithm if boruvkaMST is true.
+	 */
+	public static void generateInformation(String fileName, String fileFolder, String outputFolder,
+			LabelSelection labelSelection, DistanceCalculator distance,
+			int numberTrials,
+			ArrayList<Integer> arrayMinPts,
+			String delimiter, boolean boruvkaMST) throws Exception
 	{	
 
 		long startTime;
@@ -41,6 +57,18 @@ public class RuntimeCreateScenarios
 		for(Instance inst: datasetExperiments.getObjects())
 			database[inst.getIndex()] = inst.getCoordinates();
 
+		/** The MSTs use packed fingerprints for tanimoto and normalized points for cosine and pearson */
+		double[][] distanceData = database;
+		DistanceCalculator dataDistance = distance;
+		if (PackedTanimotoSimilarity.canPack(database, distance)) {
+			distanceData = PackedTanimotoSimilarity.pack(database);
+			dataDistance = new PackedTanimotoSimilarity(database[0].length);
+		}
+		else if (NormalizedDotProduct.canNormalize(database, distance)) {
+			distanceData = NormalizedDotProduct.normalize(database, distance);
+			dataDistance = new NormalizedDotProduct(distance.getName());
+		}
+
 
 		HashMap<Integer, Pair<Double,Graph>> mKNN 			   		 = new HashMap<Integer, Pair<Double,Graph>>();
 		HashMap<Integer, Pair<Double,UndirectedGraph>> mstReach   	 = new HashMap<Integer, Pair<Double,UndirectedGraph>>();
@@ -49,8 +77,9 @@ public class RuntimeCreateScenarios
 		for(Integer minPts: arrayMinPts)
 		{
 			startTime = new Long(System.currentTimeMillis());
-			double[] coreDistances = HDBSCANStar.calculateCoreDistances(database, minPts, distance);
-			UndirectedGraph mst    = HDBSCANStar.constructMST(database, coreDistances, true, distance);
+			double[] coreDistances = HDBSCANStar.calculateCoreDistances(distanceData, minPts, dataDistance);
+			UndirectedGraph mst    = boruvkaMST ? HDBSCANStar.constructBoruvkaMST(distanceData, coreDistances, true, dataDistance, 1) 
+					: HDBSCANStar.constructMST(distanceData, coreDistances, true, dataDistance);
 			double timeToComputeMST = ((System.currentTimeMillis() - startTime)/1000.00);
 
 			mstReach.put(minPts, new Pair<Double, UndirectedGraph>(timeToComputeMST, mst));
@@ -63,8 +92,9 @@ public class RuntimeCreateScenarios
 
 		/** Construction of the MST using the apts core distance and new mutual reachability distance*/
 		startTime = new Long(System.currentTimeMillis());
-		double[] coreDistances   = HDBSCANApts.calculateCoreDistances(database, distance);
-		UndirectedGraph mstApts  = HDBSCANApts.constructMST(database, coreDistances, true, distance);
+		double[] coreDistances   = HDBSCANApts.calculateCoreDistances(distanceData, dataDistance);
+		UndirectedGraph mstApts  = boruvkaMST ? HDBSCANApts.constructBoruvkaMST(distanceData, coreDistances, true, dataDistance, 1) 
+				: HDBSCANApts.constructMST(distanceData, coreDistances, true, dataDistance);
 		double timeToComputeMST = ((System.currentTimeMillis() - startTime)/1000.00);
 		
 
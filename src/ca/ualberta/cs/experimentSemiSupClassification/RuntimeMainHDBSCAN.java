@@ -41,6 +41,7 @@ public class RuntimeMainHDBSCAN implements Serializable
 
 		int numberTrials	= 20;
 		String delimiter	= ",";
+		boolean boruvkaMST	= false;	//Construct the MSTs with Boruvka's algorithm instead of Prim's
 
 		//Parameters for the classification approach
 		double rho			= 50.0;
@@ -87,7 +88,7 @@ public class RuntimeMainHDBSCAN implements Serializable
 			}
 			
 			System.out.println("Dataset: " + inputName);
-			RuntimeCreateScenarios.generateInformation(inputName, dataFolder, outputFolder, methodLabelSelection, distance, numberTrials, arrayMinPts, delimiter);
+			RuntimeCreateScenarios.generateInformation(inputName, dataFolder, outputFolder, methodLabelSelection, distance, numberTrials, arrayMinPts, delimiter, boruvkaMST);
 
 //			RuntimeMstAllPoints.performIt(inputName, dataFolder, outputFolder, distance, rho, expoent, delimiter);
 //
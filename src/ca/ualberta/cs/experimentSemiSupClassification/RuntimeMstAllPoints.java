@@ -175,7 +175,7 @@ public class RuntimeMstAllPoints
 				
 				startTime= new Long(System.currentTimeMillis());
 				
-				result = UnifiedView.expandLabels(new UndirectedGraph(mstAp.get(minPts).getValue()), preLabeledDenBased, false);
+				result = UnifiedView.expandLabels(mstAp.get(minPts).getValue(), preLabeledDenBased, false);
 				
 				tPropTime  = ((System.currentTimeMillis() - startTime)/1000.00);
 				wholeTime  = timeToComputeGraph + tPropTime;
@@ -194,7 +194,7 @@ public class RuntimeMstAllPoints
 
 				startTime= new Long(System.currentTimeMillis());
 				
-				result = UnifiedView.expandWeighted(database, new UndirectedGraph(mstAp.get(minPts).getValue()), preLabeledDenBased, semi, distance, false);
+				result = UnifiedView.expandWeighted(database, mstAp.get(minPts).getValue(), preLabeledDenBased, semi, distance, false);
 
 				tPropTime  = ((System.currentTimeMillis() - startTime)/1000.00);
 				wholeTime  = timeToComputeGraph + tPropTime;
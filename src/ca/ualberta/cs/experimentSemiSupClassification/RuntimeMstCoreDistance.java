@@ -174,7 +174,7 @@ public class RuntimeMstCoreDistance
 				
 				startTime= new Long(System.currentTimeMillis());
 				
-				result = UnifiedView.expandLabels(new UndirectedGraph(mstCd.get(minPts).getValue()), preLabeledDenBased, false);
+				result = UnifiedView.expandLabels(mstCd.get(minPts).getValue(), preLabeledDenBased, false);
 				
 				tPropTime  = ((System.currentTimeMillis() - startTime)/1000.00);
 				wholeTime  = timeToComputeGraph + tPropTime;
@@ -193,7 +193,7 @@ public class RuntimeMstCoreDistance
 
 				startTime= new Long(System.currentTimeMillis());
 				
-				result = UnifiedView.expandWeighted(database, new UndirectedGraph(mstCd.get(minPts).getValue()), preLabeledDenBased, semi, distance, false);
+				result = UnifiedView.expandWeighted(database, mstCd.get(minPts).getValue(), preLabeledDenBased, semi, distance, false);
 
 				tPropTime  = ((System.currentTimeMillis() - startTime)/1000.00);
 				wholeTime  = timeToComputeGraph + tPropTime;
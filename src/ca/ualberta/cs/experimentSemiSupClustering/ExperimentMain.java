@@ -36,6 +36,8 @@ public class ExperimentMain implements Serializable
 
 		int numberTrials	= 20;
 		String delimiter	= ",";
+		boolean boruvkaMST	= false;	//Construct the MSTs with Boruvka's algorithm instead of Prim's
+		boolean sharedGraphMST	= false;	//Extract the MSTs of all minPts from one graph of the neighbors and the MST of the largest minPts
 
 		//Parameters for HISSCLU
 		double rho			= 10.0;
@@ -103,7 +105,7 @@ public class ExperimentMain implements Serializable
 			System.out.println("Dataset: " + inputName);
 			
 			// Create scenarios
-			SSClusteringCreateScenarios.generateInformation(inputName, dataFolder, outputFolder, methodLabelSelection, distance, numberTrials, arrayPlab, arrayMinPts, arrayMissed, delimiter);
+			SSClusteringCreateScenarios.generateInformation(inputName, dataFolder, outputFolder, methodLabelSelection, distance, numberTrials, arrayPlab, arrayMinPts, arrayMissed, delimiter, boruvkaMST, sharedGraphMST);
 
 			// Performance experiments
 //			RunHISSCLUAndSSDBSCAN.performIt(inputName, dataFolder, outputFolder, distance, rho, expoent, delimiter);
@@ -197,7 +197,7 @@ public class RunHISSCLUAndSSDBSCAN
 
 				// Apply SSDBSCAN
 				Util.resetDataset(datasetExperiments, false);
-				result = SSExtraction.expandSSDBSCAN(new UndirectedGraph(mstCd.get(minPts)),preLabeledDenBased);
+				result = SSExtraction.expandSSDBSCAN(mstCd.get(minPts),preLabeledDenBased);
 
 				for(Map.Entry<Integer, Integer> entries: result.entrySet())
 					datasetExperiments.getObjects()[entries.getKey()].setLabel(entries.getValue());
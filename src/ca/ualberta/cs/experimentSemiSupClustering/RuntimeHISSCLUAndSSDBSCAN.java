@@ -211,7 +211,7 @@ public class RuntimeHISSCLUAndSSDBSCAN
 				Util.resetDataset(datasetExperiments, false);
 
 				startTime = new Long(System.currentTimeMillis());
-				result = SSExtraction.expandSSDBSCAN(new UndirectedGraph(mstCd.get(minPts)),preLabeledDenBased);
+				result = SSExtraction.expandSSDBSCAN(mstCd.get(minPts),preLabeledDenBased);
 				timeToRegister = ((System.currentTimeMillis() - startTime)/1000.00);
 
 				report.get(parameters.wholeProcess).get(parameters.ssdbscan).get(pmc).get(plab).get(minPts).add(timeToRegister+timeMST.get(minPts));
@@ -6,13 +6,18 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 
 import SHM.HMatrix.HMatrix;
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.NormalizedDotProduct;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
 import ca.ualberta.cs.hdbscanApts.HDBSCANApts;
 import ca.ualberta.cs.hdbscanstar.Cluster;
+import ca.ualberta.cs.hdbscanstar.CoreDistanceTable;
 import ca.ualberta.cs.hdbscanstar.HDBSCANStar;
+import ca.ualberta.cs.hdbscanstar.MutualReachabilityGraph;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
 import ca.ualberta.cs.hdbscanstar.HDBSCANStarRunner.WrapInt;
 import ca.ualberta.cs.model.Dataset;
@@ -29,6 +34,41 @@ public class SSClusteringCreateScenarios
 			ArrayList<Integer> arrayMinPts,
 			ArrayList<Integer> numberOfMissedClasses,
 			String delimiter) throws Exception
+	{
+		generateInformation(fileName, fileFolder, outputFolder, labelSelection, distance, numberTrials, arrayPlab, arrayMinPts, 
+				numberOfMissedClasses, delimiter, false);
+	}
+
+
+	/**
+	 * Generates the scenarios, constructing the minimum spanning trees with Boruvka's algorithm
+	 * (where the distance function allows it) instead of Prim's algorithm if boruvkaMST is true.
+	 */
+	public static void generateInformation(String fileName, String fileFolder, String outputFolder,
+			LabelSelection labelSelection, DistanceCalculator distance,
+			int numberTrials, ArrayList<Integer> arrayPlab,
+			ArrayList<Integer> arrayMinPts,
+			ArrayList<Integer> numberOfMissedClasses,
+			String delimiter, boolean boruvkaMST) throws Exception
+	{
+		generateInformation(fileName, fileFolder, outputFolder, labelSelection, distance, numberTrials, arrayPlab, arrayMinPts, 
+				numberOfMissedClasses, delimiter, boruvkaMST, false);
+	}
+
+
+	/**
+	 * Generates the scenarios.  If sharedGraphMST is true, only the MST for the largest minPts is constructed
+	 * over all pairs of points, and the MSTs for the other values are extracted from a MutualReachabilityGraph
+	 * of that MST and the nearest neighbors of every point, which gives trees with the same weights.
+	 * When weights tie, those trees may have different edges than the ones of Prim's algorithm, so the
+	 * clusters may be numbered differently and the expanded labels may differ.
+	 */
+	public static void generateInformation(String fileName, String fileFolder, String outputFolder,
+			LabelSelection labelSelection, DistanceCalculator distance,
+			int numberTrials, ArrayList<Integer> arrayPlab,
+			ArrayList<Integer> arrayMinPts,
+			ArrayList<Integer> numberOfMissedClasses,
+			String delimiter, boolean boruvkaMST, boolean sharedGraphMST) throws Exception
 	{	
 
 		//  Reading data set file
@@ -40,6 +80,18 @@ public class SSClusteringCreateScenarios
 		for(Instance inst: datasetExperiments.getObjects())
 			database[inst.getIndex()] = inst.getCoordinates();
 
+		/** The MSTs use packed fingerprints for tanimoto and normalized points for cosine and pearson */
+		double[][] distanceData = database;
+		DistanceCalculator dataDistance = distance;
+		if (PackedTanimotoSimilarity.canPack(database, distance)) {
+			distanceData = PackedTanimotoSimilarity.pack(database);
+			dataDistance = new PackedTanimotoSimilarity(database[0].length);
+		}
+		else if (NormalizedDotProduct.canNormalize(database, distance)) {
+			distanceData = NormalizedDotProduct.normalize(database, distance);
+			dataDistance = new NormalizedDotProduct(distance.getName());
+		}
+
 		HashMap<Integer, UndirectedGraph> mstReach 	  	 = new HashMap<Integer, UndirectedGraph>();
 		HashMap<Integer, UndirectedGraph> mstAptsStore	 = new HashMap<Integer, UndirectedGraph>();
 
@@ -56,17 +108,40 @@ public class SSClusteringCreateScenarios
 		
 
 		
+		/** One neighbor search for the largest minPts gives the core distances for all of them */
+		startTime = System.currentTimeMillis();
+		CoreDistanceTable coreDistanceTable = HDBSCANStar.calculateCoreDistanceTable(distanceData, Collections.max(arrayMinPts), dataDistance);
+		double timeCoreDistanceTable = ((System.currentTimeMillis() - startTime)/1000.00);
+
+		/** Optionally, one quadratic MST for the largest minPts and the neighbors of each point contain the MSTs for all of them */
+		MutualReachabilityGraph mutualReachabilityGraph = null;
+		if (sharedGraphMST) {
+			startTime = System.currentTimeMillis();
+			int maxMinPts = coreDistanceTable.getMaxMinPts();
+			double[] coreDistances = coreDistanceTable.getCoreDistances(maxMinPts);
+			UndirectedGraph maxMinPtsMST = boruvkaMST ? HDBSCANStar.constructBoruvkaMST(distanceData, coreDistances, false, dataDistance, 1) 
+					: HDBSCANStar.constructMST(distanceData, coreDistances, false, dataDistance);
+
+			mutualReachabilityGraph = new MutualReachabilityGraph(distanceData, dataDistance, coreDistanceTable, maxMinPtsMST);
+			timeCoreDistanceTable += ((System.currentTimeMillis() - startTime)/1000.00);
+		}
+
 		for(Integer minPts: arrayMinPts)
 		{
 			startTime = new Long(System.currentTimeMillis());
-			double[] coreDistances = HDBSCANStar.calculateCoreDistances(database, minPts, distance);
-			UndirectedGraph mst = HDBSCANStar.constructMST(database, coreDistances, true, distance);
+			double[] coreDistances = coreDistanceTable.getCoreDistances(minPts);
+			UndirectedGraph mst = null;
+			if (sharedGraphMST)
+				mst = mutualReachabilityGraph.constructMST(minPts, true);
+			else
+				mst = boruvkaMST ? HDBSCANStar.constructBoruvkaMST(distanceData, coreDistances, true, dataDistance, 1) 
+						: HDBSCANStar.constructMST(distanceData, coreDistances, true, dataDistance);
 			
-			double timeMST = ((System.currentTimeMillis() - startTime)/1000.00);
+			double timeMST = timeCoreDistanceTable + ((System.currentTimeMillis() - startTime)/1000.00);
 			timeMSTCoreDistance.put(minPts, timeMST);
 			
-			mst.quicksortByEdgeWeight();
-			mstReach.put(minPts, new UndirectedGraph(mst));
+			mst.sortByEdgeWeight(1);
+			mstReach.put(minPts, mst);
 
 			ArrayList<Cluster> clusters	= null;
 			double[] pointNoiseLevels 	= new double[numPoints];
@@ -77,7 +152,7 @@ public class SSClusteringCreateScenarios
 			WrapInt lineCount 			= new WrapInt(0);
 
 			clusters = HDBSCANApts.computeHierarchyAndClusterTree(mst, minPts, false, null, " ", " ", ",", pointNoiseLevels, pointLastClusters, "shm", matrix, lineCount);
-			double timeToConstructTree = ((System.currentTimeMillis() - startTime)/1000.00);
+			double timeToConstructTree = timeCoreDistanceTable + ((System.currentTimeMillis() - startTime)/1000.00);
 
 			timeCoreDistance.put(minPts, timeToConstructTree);
 			clustersCoreDistance.put(minPts, clusters);
@@ -87,9 +162,10 @@ public class SSClusteringCreateScenarios
 
 		/** Construction of the MST using the apts core distance and new mutual reachability distance*/
 		startTime = new Long(System.currentTimeMillis());
-		double[] coreDistances   = HDBSCANApts.calculateCoreDistances(database, distance);
-		UndirectedGraph mstApts  = HDBSCANApts.constructMST(database, coreDistances, true, distance);
-		mstApts.quicksortByEdgeWeight();
+		double[] coreDistances   = HDBSCANApts.calculateCoreDistances(distanceData, dataDistance);
+		UndirectedGraph mstApts  = boruvkaMST ? HDBSCANApts.constructBoruvkaMST(distanceData, coreDistances, true, dataDistance, 1) 
+				: HDBSCANApts.constructMST(distanceData, coreDistances, true, dataDistance);
+		mstApts.sortByEdgeWeight(1);
 		double timeToConstructTree = ((System.currentTimeMillis() - startTime)/1000.00);
 
 		for(Integer minPts: arrayMinPts)
@@ -110,7 +186,7 @@ public class SSClusteringCreateScenarios
 			HMatrix matrix			    = new HMatrix();
 			WrapInt lineCount 			= new WrapInt(0);
 			
-			clusters = HDBSCANApts.computeHierarchyAndClusterTree(new UndirectedGraph(mstApts), minPts, false, null, " ", " ", ",", pointNoiseLevels, pointLastClusters, "shm", matrix, lineCount);
+			clusters = HDBSCANApts.computeHierarchyAndClusterTree(mstApts, minPts, false, null, " ", " ", ",", pointNoiseLevels, pointLastClusters, "shm", matrix, lineCount);
 			timeToConstructTree = ((System.currentTimeMillis() - startTime)/1000.00);
 			
 			timeAllPoints.put(minPts, timeAllPoints.get(minPts)+timeToConstructTree);
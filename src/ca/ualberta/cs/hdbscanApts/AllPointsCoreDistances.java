@@ -0,0 +1,278 @@
+package ca.ualberta.cs.hdbscanApts;
+
+import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
+import ca.ualberta.cs.hdbscanstar.ParallelExecution;
+
+import ssExtraction.SemiWeight;
+
+/**
+ * Accumulates the all points core distances of a data set,
+ * apts(x) = ((sum over y != x of (1/d(x,y))^dim) / (n-1))^(-1/dim).
+ * <p>
+ * Computing (1/d)^dim directly overflows or underflows for high dimensional data, and needs a call
+ * to Math.pow for each pair of points.  Instead, for each point the smallest distance m found so far
+ * is kept together with the scaled sum T = sum of (m/d)^dim, whose terms are all in (0, 1] and are
+ * computed by repeated squaring.  When a distance smaller than m is found, T is rescaled once.  The
+ * core distance is then m * (T/(n-1))^(-1/dim), which is equal to the definition above.
+ * <p>
+ * A point with a duplicate (a distance of 0, or a negative distance caused by rounding) has a core
+ * distance of 0, infinite distances add nothing to the sum, and NaN distances give a NaN core distance,
+ * as with the direct computation.
+ */
+public class AllPointsCoreDistances {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int numObjects;
+	private int dimension;
+	private double[] nearestDistances;	//Smallest positive, finite distance found so far for each point
+	private double[] scaledSums;		//Sum of (nearestDistance/distance)^dimension for each point
+	private boolean[] zeroDistances;	//If a distance of 0 was found for each point
+	private boolean[] undefinedDistances;	//If a NaN distance was found for each point
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int BLOCK_SIZE = 64;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates an empty accumulator.
+	 * @param numObjects The number of points in the data set
+	 * @param dimension The number of attributes of the points, used as the exponent
+	 */
+	public AllPointsCoreDistances(int numObjects, int dimension) {
+		this.numObjects = numObjects;
+		this.dimension = dimension;
+		this.nearestDistances = new double[numObjects];
+		this.scaledSums = new double[numObjects];
+		this.zeroDistances = new boolean[numObjects];
+		this.undefinedDistances = new boolean[numObjects];
+
+		for (int point = 0; point < numObjects; point++) {
+			this.nearestDistances[point] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Calculates the all points core distances for each point in the data set, splitting the points
+	 * across several threads.  The distances of each point are accumulated in order of neighbor index,
+	 * so the result does not depend on the number of threads.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param numThreads The number of threads to use
+	 * @return An array of core distances
+	 */
+	public static double[] calculate(final double[][] dataSet, final DistanceCalculator distanceFunction, int numThreads) {
+		final AllPointsCoreDistances accumulator = new AllPointsCoreDistances(dataSet.length, getDimension(dataSet, distanceFunction));
+
+		ParallelExecution.forEachRange(dataSet.length, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				double[] distances = new double[BLOCK_SIZE * BLOCK_SIZE];
+
+				//Distances are computed for square blocks of points which fit in cache:
+				for (int rowStart = start; rowStart < end; rowStart+= BLOCK_SIZE) {
+					int rowEnd = Math.min(rowStart + BLOCK_SIZE, end);
+
+					for (int blockStart = 0; blockStart < dataSet.length; blockStart+= BLOCK_SIZE) {
+						int blockEnd = Math.min(blockStart + BLOCK_SIZE, dataSet.length);
+						int blockWidth = blockEnd - blockStart;
+						distanceFunction.computeDistances(dataSet, rowStart, rowEnd, dataSet, blockStart, blockEnd, distances);
+
+						for (int point = rowStart; point < rowEnd; point++) {
+							for (int neighbor = blockStart; neighbor < blockEnd; neighbor++) {
+								if (point == neighbor)
+									continue;
+								accumulator.addDistance(point, distances[(point - rowStart)*blockWidth + neighbor - blockStart]);
+							}
+						}
+					}
+				}
+			}
+		});
+
+		return accumulator.getCoreDistances();
+	}
+
+
+	/**
+	 * Calculates the all points core distances for each point in the data set using distances weighted
+	 * by a SemiWeight, splitting the points across several threads.  The result does not depend on the
+	 * number of threads.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param semi A SemiWeight which weights the distance between each pair of points
+	 * @param numThreads The number of threads to use
+	 * @return An array of core distances
+	 */
+	public static double[] calculateWeighted(final double[][] dataSet, final DistanceCalculator distanceFunction, 
+			final SemiWeight semi, int numThreads) {
+		final AllPointsCoreDistances accumulator = new AllPointsCoreDistances(dataSet.length, getDimension(dataSet, distanceFunction));
+
+		ParallelExecution.forEachRange(dataSet.length, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				double[] distances = new double[dataSet.length];
+
+				for (int point = start; point < end; point++) {
+					distanceFunction.computeDistances(dataSet, point, point+1, dataSet, 0, dataSet.length, distances);
+
+					for (int neighbor = 0; neighbor < dataSet.length; neighbor++) {
+						if (point == neighbor)
+							continue;
+						double distance = distances[neighbor]*
+								semi.computeWeight(dataSet[point], dataSet[neighbor], point, neighbor);
+						accumulator.addDistance(point, distance);
+					}
+				}
+			}
+		});
+
+		return accumulator.getCoreDistances();
+	}
+
+
+	/**
+	 * Calculates the all points core distances for each point in the data set on a single thread,
+	 * computing the distance between each pair of points only once.  Pairs are visited in square blocks
+	 * of points which fit in cache.  Since the distances of a point are accumulated in a different order
+	 * than in calculate, the results may differ from it in the last bits.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A symmetric DistanceCalculator to compute distances between points
+	 * @return An array of core distances
+	 */
+	public static double[] calculateBlocked(double[][] dataSet, DistanceCalculator distanceFunction) {
+		AllPointsCoreDistances accumulator = new AllPointsCoreDistances(dataSet.length, getDimension(dataSet, distanceFunction));
+		double[] distances = new double[BLOCK_SIZE * BLOCK_SIZE];
+
+		for (int rowStart = 0; rowStart < dataSet.length; rowStart+= BLOCK_SIZE) {
+			int rowEnd = Math.min(rowStart + BLOCK_SIZE, dataSet.length);
+
+			for (int columnStart = rowStart; columnStart < dataSet.length; columnStart+= BLOCK_SIZE) {
+				int columnEnd = Math.min(columnStart + BLOCK_SIZE, dataSet.length);
+				int blockWidth = columnEnd - columnStart;
+				distanceFunction.computeDistances(dataSet, rowStart, rowEnd, dataSet, columnStart, columnEnd, distances);
+
+				for (int point = rowStart; point < rowEnd; point++) {
+					for (int neighbor = Math.max(columnStart, point + 1); neighbor < columnEnd; neighbor++) {
+						double distance = distances[(point - rowStart)*blockWidth + neighbor - columnStart];
+						accumulator.addDistance(point, distance);
+						accumulator.addDistance(neighbor, distance);
+					}
+				}
+			}
+		}
+
+		return accumulator.getCoreDistances();
+	}
+
+
+	/**
+	 * Adds the distance from a point to one of its neighbors to the point's sum.  Different threads
+	 * may add distances at the same time as long as they do so for different points.
+	 * @param point The index of the point
+	 * @param distance The distance from the point to the neighbor
+	 */
+	public void addDistance(int point, double distance) {
+		if (Double.isNaN(distance)) {
+			this.undefinedDistances[point] = true;
+			return;
+		}
+
+		//Once a duplicate is found, the core distance is 0 whatever the other distances are:
+		if (this.zeroDistances[point])
+			return;
+
+		if (distance <= 0) {
+			this.zeroDistances[point] = true;
+			return;
+		}
+
+		//(1/d)^dim is 0 for an infinite distance:
+		if (distance == Double.POSITIVE_INFINITY)
+			return;
+
+		double nearestDistance = this.nearestDistances[point];
+
+		if (distance < nearestDistance) {
+			if (nearestDistance == Double.POSITIVE_INFINITY)
+				this.scaledSums[point] = 1;
+			else
+				this.scaledSums[point] = this.scaledSums[point] * power(distance / nearestDistance, this.dimension) + 1;
+			this.nearestDistances[point] = distance;
+		}
+		else
+			this.scaledSums[point]+= power(nearestDistance / distance, this.dimension);
+	}
+
+
+	/**
+	 * Returns the core distance of a point from the distances added so far.
+	 * @param point The index of the point
+	 * @return The all points core distance of the point
+	 */
+	public double getCoreDistance(int point) {
+		if (this.undefinedDistances[point] || this.numObjects < 2)
+			return Double.NaN;
+
+		if (this.zeroDistances[point])
+			return 0;
+
+		//Every neighbor is infinitely far, so the sum of (1/d)^dim is 0:
+		if (this.nearestDistances[point] == Double.POSITIVE_INFINITY)
+			return Double.POSITIVE_INFINITY;
+
+		return this.nearestDistances[point] * Math.pow(this.scaledSums[point]/(this.numObjects-1), -(1.0/this.dimension));
+	}
+
+
+	/**
+	 * Returns the core distances of all points from the distances added so far.
+	 * @return An array of core distances
+	 */
+	public double[] getCoreDistances() {
+		double[] coreDistances = new double[this.numObjects];
+
+		for (int point = 0; point < this.numObjects; point++) {
+			coreDistances[point] = getCoreDistance(point);
+		}
+
+		return coreDistances;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Returns the dimension used as the exponent, which for packed fingerprints is the number of
+	 * attributes before packing.
+	 */
+	private static int getDimension(double[][] dataSet, DistanceCalculator distanceFunction) {
+		if (distanceFunction instanceof PackedTanimotoSimilarity)
+			return ((PackedTanimotoSimilarity)distanceFunction).getNumAttributes();
+		else
+			return dataSet[0].length;
+	}
+
+
+	/**
+	 * Raises a base in [0, 1] to a non-negative integer exponent by repeated squaring.
+	 */
+	private static double power(double base, int exponent) {
+		double result = 1;
+
+		while (exponent > 0) {
+			if ((exponent & 1) != 0)
+				result*= base;
+			exponent >>= 1;
+			if (exponent > 0)
+				base*= base;
+		}
+
+		return result;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
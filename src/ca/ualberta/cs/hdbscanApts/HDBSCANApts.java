@@ -1,39 +1,49 @@
 package ca.ualberta.cs.hdbscanApts;
 
-import Colorize.WaveLength;
 import SHM.HMatrix.HMatrix;
-import javafx.util.Pair;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Stack;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
-import SHM.HMatrix.ObjInstance;
 import SHM.Structure.Structure;
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.MinkowskiDistance;
+import ca.ualberta.cs.hdbscanstar.AsyncFileOutputStream;
+import ca.ualberta.cs.hdbscanstar.BinaryHierarchyReader;
+import ca.ualberta.cs.hdbscanstar.BinaryHierarchyWriter;
+import ca.ualberta.cs.hdbscanstar.BoruvkaMST;
 import ca.ualberta.cs.hdbscanstar.Cluster;
+import ca.ualberta.cs.hdbscanstar.ClusterSplit;
+import ca.ualberta.cs.hdbscanstar.ClusterTreeCSVSink;
 import ca.ualberta.cs.hdbscanstar.Constraint;
 import ca.ualberta.cs.hdbscanstar.Constraint.CONSTRAINT_TYPE;
+import ca.ualberta.cs.hdbscanstar.EdgeListOverlay;
+import ca.ualberta.cs.hdbscanstar.HMatrixSink;
+import ca.ualberta.cs.hdbscanstar.HierarchyCSVSink;
+import ca.ualberta.cs.hdbscanstar.HierarchyReader;
+import ca.ualberta.cs.hdbscanstar.HierarchySink;
 import ca.ualberta.cs.hdbscanstar.HDBSCANStarRunner.WrapInt;
+import ca.ualberta.cs.hdbscanstar.MappedHierarchyReader;
 import ca.ualberta.cs.hdbscanstar.OutlierScore;
+import ca.ualberta.cs.hdbscanstar.ParallelPrim;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
-
-import java.awt.Color;
+import ca.ualberta.cs.hdbscanstar.UnionFindHierarchy;
 
 import ssExtraction.SemiWeight;
 
@@ -178,29 +188,22 @@ public class HDBSCANApts implements Serializable
 	 */
 	public static double[] calculateCoreDistances(double[][] dataSet, DistanceCalculator distanceFunction) 
 	{
-		double[] coreDistances = new double[dataSet.length];
-		int dimension          = dataSet[0].length;
-		int numObjects         = dataSet.length;
-
-		for (int point = 0; point < dataSet.length; point++) 
-		{
-			double aptsDistance = 0;
-
-			for (int neighbor = 0; neighbor < dataSet.length; neighbor++) 
-			{
-
-				if (point == neighbor)
-					continue;
-
-				double distance = distanceFunction.computeDistance(dataSet[point], dataSet[neighbor]);
-				aptsDistance   += Math.pow(1.0/distance, (double)dimension);
-			}
-			aptsDistance         = Math.pow((aptsDistance/(numObjects-1)), -(1.0/dimension));
-			coreDistances[point] = aptsDistance;
-		}
-
+		return calculateCoreDistances(dataSet, distanceFunction, 1);
+	}
 
-		return coreDistances;
+	/**
+	 * Calculates the all points core distances for each point in the data set, splitting the points
+	 * across several threads.  The sums are accumulated by AllPointsCoreDistances, which avoids the
+	 * overflow of (1/d)^dim for high dimensional data, and the result does not depend on the number
+	 * of threads.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param numThreads The number of threads to use
+	 * @return An array of core distances
+	 */
+	public static double[] calculateCoreDistances(double[][] dataSet, DistanceCalculator distanceFunction, int numThreads) 
+	{
+		return AllPointsCoreDistances.calculate(dataSet, distanceFunction, numThreads);
 	}
 
 	/**
@@ -212,30 +215,22 @@ public class HDBSCANApts implements Serializable
 	 */
 	public static double[] calculateWeightedCoreDistances(double[][] dataSet, DistanceCalculator distanceFunction, SemiWeight semi) 
 	{
-		double[] coreDistances = new double[dataSet.length];
-		int dimension          = dataSet[0].length;
-		int numObjects         = dataSet.length;
-
-		for (int point = 0; point < dataSet.length; point++) 
-		{
-			double aptsDistance = 0;
-
-			for (int neighbor = 0; neighbor < dataSet.length; neighbor++) 
-			{
-
-				if (point == neighbor)
-					continue;
-
-				double distance = distanceFunction.computeDistance(dataSet[point], dataSet[neighbor])*
-						semi.computeWeight(dataSet[point], dataSet[neighbor], point, neighbor);
-				aptsDistance   += Math.pow(1.0/distance, (double)dimension);
-			}
-			aptsDistance         = Math.pow((aptsDistance/(numObjects-1)), -(1.0/dimension));
-			coreDistances[point] = aptsDistance;
-		}
-
+		return calculateWeightedCoreDistances(dataSet, distanceFunction, semi, 1);
+	}
 
-		return coreDistances;
+	/**
+	 * Calculates the all points core distances for each point in the data set (WEIGHTED VERSION),
+	 * splitting the points across several threads.  The result does not depend on the number of threads.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param semi A SemiWeight which weights the distance between each pair of points
+	 * @param numThreads The number of threads to use
+	 * @return An array of core distances
+	 */
+	public static double[] calculateWeightedCoreDistances(double[][] dataSet, DistanceCalculator distanceFunction, 
+			SemiWeight semi, int numThreads) 
+	{
+		return AllPointsCoreDistances.calculateWeighted(dataSet, distanceFunction, semi, numThreads);
 	}
 
 
@@ -254,69 +249,82 @@ public class HDBSCANApts implements Serializable
 	public static UndirectedGraph constructMST(double[][] dataSet, double[] coreDistances, 
 			boolean selfEdges, DistanceCalculator distanceFunction)
 	{
+		return constructMST(dataSet, coreDistances, selfEdges, distanceFunction, 1);
+	}
+
+
+	/**
+	 * Constructs the minimum spanning tree of mutual reachability distances for the data set, given
+	 * the core distances for each point, relaxing the distances of different points in parallel.  The
+	 * tree is identical to the one constructed with a single thread.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param coreDistances An array of core distances for each data point
+	 * @param selfEdges If each point should have an edge to itself with weight equal to core distance
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param numThreads The number of threads to use
+	 * @return An MST for the data set using the mutual reachability distances
+	 */
+	public static UndirectedGraph constructMST(final double[][] dataSet, final double[] coreDistances, 
+			boolean selfEdges, final DistanceCalculator distanceFunction, int numThreads)
+	{
 
 		int selfEdgeCapacity = 0;
 		if (selfEdges)
 			selfEdgeCapacity = dataSet.length;
 
-		//One bit is set (true) for each attached point, or unset (false) for unattached points:
-		BitSet attachedPoints = new BitSet(dataSet.length);
-
 		//Each point has a current neighbor point in the tree, and a current nearest distance:
-		int[] nearestMRDNeighbors = new int[dataSet.length-1 + selfEdgeCapacity];
-		double[] nearestMRDDistances = new double[dataSet.length-1 + selfEdgeCapacity];
+		final int[] nearestMRDNeighbors    = new int[dataSet.length-1 + selfEdgeCapacity];
+		final double[] nearestMRDDistances = new double[dataSet.length-1 + selfEdgeCapacity];
 
 		for (int i = 0; i < dataSet.length-1; i++) 
 		{
 			nearestMRDDistances[i] = Double.MAX_VALUE;
 		}
 
-		//The MST is expanded starting with the last point in the data set:
-		int currentPoint      = dataSet.length-1;
-		int numAttachedPoints = 1;
-		attachedPoints.set(dataSet.length-1);
-
-		//Continue attaching points to the MST until all points are attached:
-		while (numAttachedPoints < dataSet.length)
+		//The MST is expanded starting with the last point in the data set, attaching the closest point in each iteration:
+		ParallelPrim.run(dataSet.length, nearestMRDDistances, numThreads, new ParallelPrim.Relaxation()
 		{
-			int nearestMRDPoint = -1;
-			double nearestMRDDistance = Double.MAX_VALUE;
-
-			//Iterate through all unattached points, updating distances using the current point:
-			for (int neighbor = 0; neighbor < dataSet.length; neighbor++)
+			public void relax(int currentPoint, int[] unattachedPoints, int numUnattachedPoints, 
+					int[] candidatePoints, double[] upperBounds, double[] distances)
 			{
-				if (currentPoint == neighbor)
-					continue;
+				//Find the unattached points whose nearest distances the current point could still improve.  A
+				//core distance not smaller than the nearest distance rules the point out, and a distance
+				//larger than it does not need to be computed in full:
+				int numCandidatePoints = 0;
+				for (int position = 0; position < numUnattachedPoints; position++)
+				{
+					int neighbor = unattachedPoints[position];
 
-				if (attachedPoints.get(neighbor) == true)
-					continue;
+					if (coreDistances[currentPoint] >= nearestMRDDistances[neighbor] || 
+							coreDistances[neighbor] >= nearestMRDDistances[neighbor])
+						continue;
 
-				double distance = distanceFunction.computeDistance(dataSet[currentPoint], dataSet[neighbor]);
-				//				double mutualReachabiltiyDistance = ((coreDistances[currentPoint] + coreDistances[neighbor]) /2.0) + distance;
+					candidatePoints[numCandidatePoints] = neighbor;
+					upperBounds[numCandidatePoints]     = nearestMRDDistances[neighbor];
+					numCandidatePoints++;
+				}
+				distanceFunction.computeDistances(dataSet[currentPoint], dataSet, candidatePoints, numCandidatePoints, 
+						upperBounds, distances);
 
-				double mutualReachabiltiyDistance = Double.max(coreDistances[currentPoint], coreDistances[neighbor]);
-				mutualReachabiltiyDistance = Double.max(distance, mutualReachabiltiyDistance);
+				//Update the candidate points' distances using the current point:
+				for (int position = 0; position < numCandidatePoints; position++)
+				{
+					int neighbor    = candidatePoints[position];
+					double distance = distances[position];
+					//				double mutualReachabiltiyDistance = ((coreDistances[currentPoint] + coreDistances[neighbor]) /2.0) + distance;
 
+					double mutualReachabiltiyDistance = Double.max(coreDistances[currentPoint], coreDistances[neighbor]);
+					mutualReachabiltiyDistance = Double.max(distance, mutualReachabiltiyDistance);
 
-				if (mutualReachabiltiyDistance < nearestMRDDistances[neighbor]) 
-				{
-					nearestMRDDistances[neighbor] = mutualReachabiltiyDistance;
-					nearestMRDNeighbors[neighbor] = currentPoint;
-				}
 
-				//Check if the unattached point being updated is the closest to the tree:
-				if (nearestMRDDistances[neighbor] <= nearestMRDDistance) 
-				{
-					nearestMRDDistance = nearestMRDDistances[neighbor];
-					nearestMRDPoint = neighbor;
+					if (mutualReachabiltiyDistance < nearestMRDDistances[neighbor]) 
+					{
+						nearestMRDDistances[neighbor] = mutualReachabiltiyDistance;
+						nearestMRDNeighbors[neighbor] = currentPoint;
+					}
 				}
 			}
-
-			//Attach the closest point found in this iteration to the tree:
-			attachedPoints.set(nearestMRDPoint);
-			numAttachedPoints++;
-			currentPoint = nearestMRDPoint;
-		}
+		});
 
 		//Create an array for vertices in the tree that each point attached to:
 		int[] otherVertexIndices = new int[dataSet.length-1 + selfEdgeCapacity];
@@ -341,6 +349,33 @@ public class HDBSCANApts implements Serializable
 	}
 
 
+	/**
+	 * Constructs the minimum spanning tree of mutual reachability distances for the data set with
+	 * Boruvka's algorithm over a k-d tree (see BoruvkaMST), which is much faster than Prim's algorithm
+	 * for large, low dimensional data sets.  If the distance function is not a MinkowskiDistance, an
+	 * attribute or core distance is not finite, or a distance overflows to infinity, Prim's algorithm
+	 * is used instead.  When edges have the same weight, the hierarchy has the same structure as with
+	 * Prim's algorithm, but its clusters may be numbered differently.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param coreDistances An array of core distances for each data point
+	 * @param selfEdges If each point should have an edge to itself with weight equal to core distance
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param numThreads The number of threads to use if Prim's algorithm is used
+	 * @return An MST for the data set using the mutual reachability distances
+	 */
+	public static UndirectedGraph constructBoruvkaMST(double[][] dataSet, double[] coreDistances, 
+			boolean selfEdges, DistanceCalculator distanceFunction, int numThreads)
+	{
+		if (BoruvkaMST.canConstruct(dataSet, coreDistances, distanceFunction)) {
+			UndirectedGraph mst = BoruvkaMST.construct(dataSet, coreDistances, selfEdges, (MinkowskiDistance)distanceFunction);
+			if (mst != null)
+				return mst;
+		}
+
+		return constructMST(dataSet, coreDistances, selfEdges, distanceFunction, numThreads);
+	}
+
+
 
 
 	/**
@@ -348,12 +383,13 @@ public class HDBSCANApts implements Serializable
 	 * and returns the cluster tree.  Additionally, the level at which each point becomes noise is
 	 * computed.  Note that the minimum spanning tree may also have self edges (meaning it is not
 	 * a true MST).
-	 * @param mst A minimum spanning tree which has been sorted by edge weight in descending order
+	 * @param mst A minimum spanning tree which has been sorted by edge weight in ascending order, and which is not modified
 	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
 	 * @param compactHierarchy Indicates if hierarchy should include all levels or only levels at 
 	 * which clusters first appear
 	 * @param constraints An optional ArrayList of Constraints to calculate cluster constraint satisfaction
-	 * @param hierarchyOutputFile The path to the hierarchy output file
+	 * @param hierarchyOutputFile The path to the hierarchy output file, which is written in the binary
+	 * format of BinaryHierarchyWriter if it has the BinaryHierarchyWriter.BINARY_HIERARCHY_EXTENSION
 	 * @param treeOutputFile The path to the cluster tree output file
 	 * @param delimiter The delimiter to be used while writing both files
 	 * @param pointNoiseLevels A double[] to be filled with the levels at which each point becomes noise
@@ -369,423 +405,306 @@ public class HDBSCANApts implements Serializable
 			String hierarchyOutputFile, String treeOutputFile, String delimiter, 
 			double[] pointNoiseLevels, int[] pointLastClusters, String outType, SHM.HMatrix.HMatrix HMatrix, WrapInt lineCount) throws IOException 
 	{
+		return computeHierarchyAndClusterTree(mst, minClusterSize, compactHierarchy, constraints, hierarchyOutputFile, 
+				treeOutputFile, delimiter, pointNoiseLevels, pointLastClusters, outType, HMatrix, lineCount, 1);
+	}
 
 
-		BufferedWriter hierarchyWriter = null;
-		BufferedWriter treeWriter = null;
+	/**
+	 * Computes the hierarchy and cluster tree from the minimum spanning tree, writing both to file, 
+	 * and returns the cluster tree.  Additionally, the level at which each point becomes noise is
+	 * computed.  Note that the minimum spanning tree may also have self edges (meaning it is not
+	 * a true MST).
+	 * @param mst A minimum spanning tree which has been sorted by edge weight in ascending order, and which is not modified
+	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
+	 * @param compactHierarchy Indicates if hierarchy should include all levels or only levels at 
+	 * which clusters first appear
+	 * @param constraints An optional ArrayList of Constraints to calculate cluster constraint satisfaction
+	 * @param hierarchyOutputFile The path to the hierarchy output file, which is written in the binary
+	 * format of BinaryHierarchyWriter if it has the BinaryHierarchyWriter.BINARY_HIERARCHY_EXTENSION
+	 * @param treeOutputFile The path to the cluster tree output file
+	 * @param delimiter The delimiter to be used while writing both files
+	 * @param pointNoiseLevels A double[] to be filled with the levels at which each point becomes noise
+	 * @param pointLastClusters An int[] to be filled with the last label each point had before becoming noise
+	 * @param outType The outputExtension to be generated by the HDBSCAN (i.e. .shm and/or (.csv and .vis)
+	 * @param HMatrix The hierarchy matrix using the SHM structure.
+	 * @param lineCount Integer used to count the lines written on the hierarchy file.
+	 * @param numThreads The number of threads on which the clusters affected by the edges removed at 
+	 * each level are explored (they are disjoint, and the splits are applied in the serial order, so
+	 * the results do not depend on the number of threads)
+	 * @return The cluster tree
+	 * @throws IOException If any errors occur opening or writing to the files
+	 */
+	public static ArrayList<Cluster> computeHierarchyAndClusterTree(UndirectedGraph mst,
+			int minClusterSize, boolean compactHierarchy, ArrayList<Constraint> constraints, 
+			String hierarchyOutputFile, String treeOutputFile, String delimiter, 
+			double[] pointNoiseLevels, int[] pointLastClusters, String outType, SHM.HMatrix.HMatrix HMatrix, WrapInt lineCount, 
+			int numThreads) throws IOException 
+	{
+		ArrayList<HierarchySink> sinks = new ArrayList<HierarchySink>();
+		HierarchyCSVSink hierarchySink = null;
+		BinaryHierarchyWriter binaryHierarchySink = null;
+		HMatrixSink matrixSink = null;
+
+		if (!outType.equals(HDBSCANAptsRunner.SHM_OUT)) {
+			if (BinaryHierarchyWriter.isBinaryHierarchyFile(hierarchyOutputFile)) {
+				binaryHierarchySink = new BinaryHierarchyWriter(hierarchyOutputFile, mst.getNumVertices());
+				sinks.add(binaryHierarchySink);
+			}
+			else {
+				hierarchySink = new HierarchyCSVSink(hierarchyOutputFile, delimiter, mst.getNumVertices());
+				sinks.add(hierarchySink);
+			}
+		}
 
-		if(outType!=HDBSCANAptsRunner.SHM_OUT)
-		{
-			hierarchyWriter = new BufferedWriter(new FileWriter(hierarchyOutputFile), FILE_BUFFER_SIZE);
-			treeWriter = new BufferedWriter(new FileWriter(treeOutputFile), FILE_BUFFER_SIZE);
+		//If it outputs the .shm file, the objects are added to the matrix:
+		if (!outType.equals(HDBSCANAptsRunner.VIS_OUT)) {
+			matrixSink = new HMatrixSink(HMatrix, mst.getNumVertices());
+			sinks.add(matrixSink);
 		}
 
-		long hierarchyCharsWritten = 0;
+		//The tree is written after the hierarchy sink has assigned the file offsets:
+		if (!outType.equals(HDBSCANAptsRunner.SHM_OUT))
+			sinks.add(new ClusterTreeCSVSink(treeOutputFile, delimiter, constraints));
 
-		//this maps the last clusterID that was read on the file for each object.
-		// These values should be inserted into the matrix only when the clusterID changes, reducing the number of insertions on ObjInstance.
-		// On the .shm structure only the level where the clusters die is saved
-		HashMap<Integer, Pair<Double, Integer>> lastValues = new HashMap<Integer, Pair<Double, Integer>>();
+		ArrayList<Cluster> clusters = computeHierarchyAndClusterTree(mst, minClusterSize, compactHierarchy, constraints, 
+				pointNoiseLevels, pointLastClusters, sinks, numThreads);
 
-		//If it outputs the .shm file, adding the objects to the structure.
-		if((!outType.equals(HDBSCANAptsRunner.VIS_OUT)))
-		{
-			for(int id = 0; id < mst.getNumVertices(); id++)
-			{
-				ObjInstance obj = new ObjInstance(id);
-				HMatrix.add(obj);
-				lastValues.put(id, new Pair<Double, Integer>(-1.0, 1));	//the first line of the hierarchy will surely be different than -1. But since the cluster will surelly be 1, the density -1 will be overwriten.
-			}
-		}
+		//The number of lines written into the hierarchy file (or of levels in the matrix if there is no file):
+		if (hierarchySink != null)
+			lineCount.setValue(hierarchySink.getNumLines());
+		else if (binaryHierarchySink != null)
+			lineCount.setValue(binaryHierarchySink.getNumLevels());
+		else if (matrixSink != null)
+			lineCount.setValue(matrixSink.getNumLevels());
+		else
+			lineCount.setValue(0);
 
-		lineCount.setValue(0); //Indicates the number of lines written into hierarchyFile.
+		return clusters;
+	}
 
-		//The current edge being removed from the MST:
-		int currentEdgeIndex = mst.getNumEdges()-1;
 
-		int nextClusterLabel = 2;
-		boolean nextLevelSignificant = true;
+	/**
+	 * Computes the hierarchy and cluster tree from the minimum spanning tree, and returns the cluster
+	 * tree.  Additionally, the level at which each point becomes noise is computed.  The outputs are
+	 * produced by the sinks, in their order, from the levels of the hierarchy and the births of the
+	 * clusters: with no sinks, the levels are not tracked at all, and only the cluster tree and the
+	 * noise levels are computed.  Note that the minimum spanning tree may also have self edges
+	 * (meaning it is not a true MST).
+	 * @param mst A minimum spanning tree which has been sorted by edge weight in ascending order, and which is not modified
+	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
+	 * @param compactHierarchy Indicates if hierarchy should include all levels or only levels at 
+	 * which clusters first appear
+	 * @param constraints An optional ArrayList of Constraints to calculate cluster constraint satisfaction
+	 * @param pointNoiseLevels A double[] to be filled with the levels at which each point becomes noise
+	 * @param pointLastClusters An int[] to be filled with the last label each point had before becoming noise
+	 * @param sinks The HierarchySinks which receive the hierarchy (may be empty)
+	 * @param numThreads The number of threads on which the clusters affected by the edges removed at 
+	 * each level are explored (they are disjoint, and the splits are applied in the serial order, so
+	 * the results do not depend on the number of threads)
+	 * @return The cluster tree
+	 * @throws IOException If any errors occur in the sinks, in which case (as for any other exception) 
+	 * the sinks which have not finished are aborted
+	 */
+	public static ArrayList<Cluster> computeHierarchyAndClusterTree(UndirectedGraph mst,
+			int minClusterSize, boolean compactHierarchy, ArrayList<Constraint> constraints, 
+			double[] pointNoiseLevels, int[] pointLastClusters, ArrayList<HierarchySink> sinks, 
+			int numThreads) throws IOException 
+	{
+		ForkJoinPool pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
 
-		//The previous and current cluster numbers of each point in the data set:
-		int[] previousClusterLabels = new int[mst.getNumVertices()];
-		int[] currentClusterLabels = new int[mst.getNumVertices()];
-		for (int i = 0; i < currentClusterLabels.length; i++) 
-		{
-			currentClusterLabels[i] = 1;
-			previousClusterLabels[i] = 1;
-		}
+		//If an error occurs, the sinks which have not finished are aborted, so that their files are closed:
+		int numFinishedSinks = 0;
+		try {
+			//The edges are removed from an overlay, so that the minimum spanning tree is not modified:
+			EdgeListOverlay edgeLists = new EdgeListOverlay(mst);
 
-		//A list of clusters in the cluster tree, with the 0th cluster (noise) null:
-		ArrayList<Cluster> clusters = new ArrayList<Cluster>();
-		clusters.add(null);
-		clusters.add(new Cluster(1, null, Double.MAX_VALUE, mst.getNumVertices()));
+			//The current edge being removed from the MST:
+			int currentEdgeIndex = mst.getNumEdges()-1;
 
-		//Calculate number of constraints satisfied for cluster 1:
-		TreeSet<Integer> clusterOne = new TreeSet<Integer>();
-		clusterOne.add(1);
-		calculateNumConstraintsSatisfied(clusterOne, clusters, constraints, currentClusterLabels);		
+			int nextClusterLabel = 2;
+			boolean nextLevelSignificant = true;
 
-		//Sets for the clusters and vertices that are affected by the edge(s) being removed:
-		TreeSet<Integer> affectedClusterLabels = new TreeSet<Integer>();
-		TreeSet<Integer> affectedVertices = new TreeSet<Integer>();
+			//The previous and current cluster numbers of each point in the data set:
+			int[] previousClusterLabels = new int[mst.getNumVertices()];
+			int[] currentClusterLabels = new int[mst.getNumVertices()];
+			for (int i = 0; i < currentClusterLabels.length; i++) 
+			{
+				currentClusterLabels[i] = 1;
+				previousClusterLabels[i] = 1;
+			}
 
-		while(currentEdgeIndex >= 0) {
-			double currentEdgeWeight = mst.getEdgeWeightAtIndex(currentEdgeIndex);
-			ArrayList<Cluster> newClusters = new ArrayList<Cluster>();
+			//A list of clusters in the cluster tree, with the 0th cluster (noise) null:
+			ArrayList<Cluster> clusters = new ArrayList<Cluster>();
+			clusters.add(null);
+			clusters.add(new Cluster(1, null, Double.MAX_VALUE, mst.getNumVertices()));
 
-//			System.err.println(String.format(Locale.CANADA, "Current edge weight %.20f ", currentEdgeWeight));
+			//Calculate number of constraints satisfied for cluster 1:
+			TreeSet<Integer> clusterOne = new TreeSet<Integer>();
+			clusterOne.add(1);
+			calculateNumConstraintsSatisfied(clusterOne, clusters, constraints, currentClusterLabels);		
 
-			//Remove all edges tied with the current edge weight, and store relevant clusters and vertices:
-			while (currentEdgeIndex >= 0 && mst.getEdgeWeightAtIndex(currentEdgeIndex) == currentEdgeWeight)
-			{
-				int firstVertex = mst.getFirstVertexAtIndex(currentEdgeIndex);
-				int secondVertex = mst.getSecondVertexAtIndex(currentEdgeIndex);
-				mst.getEdgeListForVertex(firstVertex).remove((Integer)secondVertex);
-				mst.getEdgeListForVertex(secondVertex).remove((Integer)firstVertex);
-				
-//				System.out.println(String.format(Locale.CANADA, "Removing edge with weight %.20f. First vertex %d, second vertex %d", currentEdgeWeight, firstVertex, secondVertex));
+			//Sets for the clusters and vertices that are affected by the edge(s) being removed:
+			TreeSet<Integer> affectedClusterLabels = new TreeSet<Integer>();
+			TreeSet<Integer> affectedVertices = new TreeSet<Integer>();
+
+			while(currentEdgeIndex >= 0) {
+				double currentEdgeWeight = mst.getEdgeWeightAtIndex(currentEdgeIndex);
+				ArrayList<Cluster> newClusters = new ArrayList<Cluster>();
 
-				if (currentClusterLabels[firstVertex] == 0)
+	//			System.err.println(String.format(Locale.CANADA, "Current edge weight %.20f ", currentEdgeWeight));
+
+				//Remove all edges tied with the current edge weight, and store relevant clusters and vertices:
+				while (currentEdgeIndex >= 0 && mst.getEdgeWeightAtIndex(currentEdgeIndex) == currentEdgeWeight)
 				{
+					int firstVertex = mst.getFirstVertexAtIndex(currentEdgeIndex);
+					int secondVertex = mst.getSecondVertexAtIndex(currentEdgeIndex);
+					edgeLists.removeEdge(firstVertex, secondVertex);
+				
+	//				System.out.println(String.format(Locale.CANADA, "Removing edge with weight %.20f. First vertex %d, second vertex %d", currentEdgeWeight, firstVertex, secondVertex));
+
+					if (currentClusterLabels[firstVertex] == 0)
+					{
+						currentEdgeIndex--;
+						continue;
+					}
+
+					affectedVertices.add(firstVertex);
+					affectedVertices.add(secondVertex);
+					affectedClusterLabels.add(currentClusterLabels[firstVertex]);
 					currentEdgeIndex--;
-					continue;
 				}
 
-				affectedVertices.add(firstVertex);
-				affectedVertices.add(secondVertex);
-				affectedClusterLabels.add(currentClusterLabels[firstVertex]);
-				currentEdgeIndex--;
-			}
-
-			if (affectedClusterLabels.isEmpty())
-				continue;
+				if (affectedClusterLabels.isEmpty())
+					continue;
 
-			//Check each cluster affected for a possible split:
-			while (!affectedClusterLabels.isEmpty()) {
-				int examinedClusterLabel = affectedClusterLabels.last();
-				affectedClusterLabels.remove(examinedClusterLabel);
-				TreeSet<Integer> examinedVertices = new TreeSet<Integer>();
+				//Get the affected vertices of each affected cluster, from the highest label down:
+				ArrayList<Integer> examinedClusterLabels = new ArrayList<Integer>(affectedClusterLabels.descendingSet());
+				ArrayList<TreeSet<Integer>> examinedVertices = new ArrayList<TreeSet<Integer>>(examinedClusterLabels.size());
+				HashMap<Integer, TreeSet<Integer>> examinedVerticesByLabel = new HashMap<Integer, TreeSet<Integer>>();
+				for (int examinedClusterLabel : examinedClusterLabels) {
+					TreeSet<Integer> vertices = new TreeSet<Integer>();
+					examinedVertices.add(vertices);
+					examinedVerticesByLabel.put(examinedClusterLabel, vertices);
+				}
+				affectedClusterLabels.clear();
 
-				//Get all affected vertices that are members of the cluster currently being examined:
 				Iterator<Integer> vertexIterator = affectedVertices.iterator();
 				while (vertexIterator.hasNext()) {
 					int vertex = vertexIterator.next();
+					TreeSet<Integer> vertices = examinedVerticesByLabel.get(currentClusterLabels[vertex]);
 
-					if (currentClusterLabels[vertex] == examinedClusterLabel) {
-						examinedVertices.add(vertex);
+					if (vertices != null) {
+						vertices.add(vertex);
 						vertexIterator.remove();
 					}
 				}
 
-				TreeSet<Integer> firstChildCluster = null;
-				LinkedList<Integer> unexploredFirstChildClusterPoints = null;
-				int numChildClusters = 0;
-
-				/*
-				 * Check if the cluster has split or shrunk by exploring the graph from each affected
-				 * vertex.  If there are two or more valid child clusters (each has >= minClusterSize
-				 * points), the cluster has split.
-				 * Note that firstChildCluster will only be fully explored if there is a cluster
-				 * split, otherwise, only spurious components are fully explored, in order to label 
-				 * them noise.
-				 */
-				while (!examinedVertices.isEmpty()) {
-					TreeSet<Integer> constructingSubCluster = new TreeSet<Integer>();
-					LinkedList<Integer> unexploredSubClusterPoints = new LinkedList<Integer>();
-					boolean anyEdges = false;
-					boolean incrementedChildCount = false;
-
-					int rootVertex = examinedVertices.last();
-					constructingSubCluster.add(rootVertex);
-					unexploredSubClusterPoints.add(rootVertex);
-					examinedVertices.remove(rootVertex);
-
-					//Explore this potential child cluster as long as there are unexplored points:
-					while (!unexploredSubClusterPoints.isEmpty()) {
-						int vertexToExplore = unexploredSubClusterPoints.poll();
-
-						for (int neighbor : mst.getEdgeListForVertex(vertexToExplore)) {
-							anyEdges = true;
-							if (constructingSubCluster.add(neighbor)) {
-								unexploredSubClusterPoints.add(neighbor);
-								examinedVertices.remove(neighbor);
-							}	
-						}
-
-						//Check if this potential child cluster is a valid cluster:
-						if (!incrementedChildCount && constructingSubCluster.size() >= minClusterSize && anyEdges ) {
-							incrementedChildCount = true;
-							numChildClusters++;
-
-							//If this is the first valid child cluster, stop exploring it:
-							if (firstChildCluster == null) {
-								firstChildCluster = constructingSubCluster;
-								unexploredFirstChildClusterPoints = unexploredSubClusterPoints;
-								break;
-							}	
-						}
-					}
+				//Explore the affected clusters (concurrently if there is a pool), then apply the splits in order:
+				ClusterSplit[] splits = ClusterSplit.exploreClusters(edgeLists, examinedClusterLabels, examinedVertices, minClusterSize, pool);
 
-					//If there could be a split, and this child cluster is valid:
-					if (numChildClusters >= 2 && constructingSubCluster.size() >= minClusterSize && anyEdges ) {
+				for (ClusterSplit split : splits) {
+					int examinedClusterLabel = split.getClusterLabel();
 
-						//Check this child cluster is not equal to the unexplored first child cluster:
-						int firstChildClusterMember = firstChildCluster.last();
-						if (constructingSubCluster.contains(firstChildClusterMember))
-							numChildClusters--;
+					for (int i = 0; i < split.getNumComponents(); i++) {
+						TreeSet<Integer> component = split.getComponent(i);
 
-						//Otherwise, create a new cluster:
-						else {
-							Cluster newCluster = createNewCluster(constructingSubCluster, currentClusterLabels, 
+						//Create a new cluster:
+						if (!split.isNoiseComponent(i)) {
+							Cluster newCluster = createNewCluster(component, currentClusterLabels, 
 									clusters.get(examinedClusterLabel), nextClusterLabel, currentEdgeWeight);
 							newClusters.add(newCluster);
 							clusters.add(newCluster);
 							nextClusterLabel++;
-						}	
-					}
-
-					//If this child cluster is not valid cluster, assign it to noise:
-					else if (constructingSubCluster.size() < minClusterSize || !anyEdges){
-						createNewCluster(constructingSubCluster, currentClusterLabels, 
-								clusters.get(examinedClusterLabel), 0, currentEdgeWeight);
-
-						for (int point : constructingSubCluster) {
-							pointNoiseLevels[point] = currentEdgeWeight;
-							pointLastClusters[point] = examinedClusterLabel;
 						}
-					}
-				}
-
-				//Finish exploring and cluster the first child cluster if there was a split and it was not already clustered:
-				if (numChildClusters >= 2 && currentClusterLabels[firstChildCluster.first()] == examinedClusterLabel) {
 
-					while (!unexploredFirstChildClusterPoints.isEmpty()) {
-						int vertexToExplore = unexploredFirstChildClusterPoints.poll();
-
-						for (int neighbor : mst.getEdgeListForVertex(vertexToExplore)) {
-							if (firstChildCluster.add(neighbor))
-								unexploredFirstChildClusterPoints.add(neighbor);
-						}
-					}
-
-					Cluster newCluster = createNewCluster(firstChildCluster, currentClusterLabels, 
-							clusters.get(examinedClusterLabel), nextClusterLabel, currentEdgeWeight);
-					newClusters.add(newCluster);
-					clusters.add(newCluster);
-					nextClusterLabel++;
-				}
-			}
-
-			//Write out the current level of the hierarchy:
-			if (!compactHierarchy || nextLevelSignificant || !newClusters.isEmpty()) {
-				int outputLength = 0;
-
-				String output = currentEdgeWeight + delimiter;
-				if(!outType.equals(HDBSCANAptsRunner.SHM_OUT)) hierarchyWriter.write(output);
-
-				if(!outType.equals(HDBSCANAptsRunner.VIS_OUT))
-				{
-					//updating densities
-					HMatrix.getDensities().add(currentEdgeWeight);
-				}
+						//Or assign the component to noise:
+						else {
+							createNewCluster(component, currentClusterLabels, 
+									clusters.get(examinedClusterLabel), 0, currentEdgeWeight);
 
-				outputLength+=output.length();
+							for (int point : component) {
+								pointNoiseLevels[point] = currentEdgeWeight;
+								pointLastClusters[point] = examinedClusterLabel;
 
-				for (int i = 0; i < previousClusterLabels.length-1; i++) {
-					output = previousClusterLabels[i] + delimiter;
-					if(!outType.equals(HDBSCANAptsRunner.SHM_OUT)) hierarchyWriter.write(output);
-					if(!outType.equals(HDBSCANAptsRunner.VIS_OUT))
-					{
-						//checking if the cluster changed
-						Integer lastCluster = lastValues.get(i).getValue();
-						if(previousClusterLabels[i] != lastCluster)
-						{	
-							//Updating Object i
-							HMatrix.getMatrix().get(i).put(lastValues.get(i).getKey(), lastCluster);
-							if(lastCluster > HMatrix.getMaxClusterID())
-							{
-								HMatrix.setMaxClusterID(lastCluster);
+								for (HierarchySink sink : sinks) {
+									sink.pointBecameNoise(point, currentEdgeWeight, examinedClusterLabel);
+								}
 							}
 						}
-
-						//lastValues is updated anyway
-						lastValues.put(i, new Pair<Double, Integer>(currentEdgeWeight, previousClusterLabels[i]));
 					}
-					outputLength+=output.length();
-				}
 
-				output = previousClusterLabels[previousClusterLabels.length-1] + "\n";
-				if(!outType.equals(HDBSCANAptsRunner.SHM_OUT)) hierarchyWriter.write(output);
-				//last Collumn (i.e Object)
-				if(!outType.equals(HDBSCANAptsRunner.VIS_OUT))
-				{
-					//checking if the cluster changed
-					Integer lastCluster = lastValues.get(previousClusterLabels.length-1).getValue();
-					if(previousClusterLabels[previousClusterLabels.length-1] != lastCluster)
-					{	
-						//Updating Object i
-						HMatrix.getMatrix().get(previousClusterLabels.length-1).put(lastValues.get(previousClusterLabels.length-1).getKey(), lastCluster);
-						if(lastCluster > HMatrix.getMaxClusterID())
-						{
-							HMatrix.setMaxClusterID(lastCluster);
-						}
+					//Cluster the first child cluster if there was a split and it was not already clustered:
+					TreeSet<Integer> firstChildCluster = split.getFirstChildCluster();
+					if (firstChildCluster != null && currentClusterLabels[firstChildCluster.first()] == examinedClusterLabel) {
+						Cluster newCluster = createNewCluster(firstChildCluster, currentClusterLabels, 
+								clusters.get(examinedClusterLabel), nextClusterLabel, currentEdgeWeight);
+						newClusters.add(newCluster);
+						clusters.add(newCluster);
+						nextClusterLabel++;
 					}
-
-					//lastValues is updated anyway
-					lastValues.put(previousClusterLabels.length-1, new Pair<Double, Integer>(currentEdgeWeight, previousClusterLabels[previousClusterLabels.length-1]));
 				}
 
-				outputLength+=output.length();
-
-				lineCount.inc();
-
-				hierarchyCharsWritten+=outputLength;
-			}
-
-			//Assign file offsets and calculate the number of constraints satisfied:
-			TreeSet<Integer> newClusterLabels = new TreeSet<Integer>();
-			for (Cluster newCluster : newClusters) {
-				newCluster.setFileOffset(hierarchyCharsWritten);
-				newClusterLabels.add(newCluster.getLabel());
-			}
-			if (!newClusterLabels.isEmpty())
-				calculateNumConstraintsSatisfied(newClusterLabels, clusters, constraints, currentClusterLabels);
-
-			for (int i = 0; i < previousClusterLabels.length; i++) {
-				previousClusterLabels[i] = currentClusterLabels[i];
-			}
-
-			if (newClusters.isEmpty())
-				nextLevelSignificant = false;
-			else
-				nextLevelSignificant = true;
-		}
-
-		//Write out the final level of the hierarchy (all points noise):
-		if(!outType.equals(HDBSCANAptsRunner.SHM_OUT))
-		{
-			hierarchyWriter.write(0 + delimiter);
-			for (int i = 0; i < previousClusterLabels.length-1; i++) {
-				hierarchyWriter.write(0 + delimiter);
-			}
-			hierarchyWriter.write(0 + "\n");
-			lineCount.inc();
-		}
-
-		if(!outType.equals(HDBSCANAptsRunner.VIS_OUT))
-		{
-			HMatrix.getDensities().add(0.0);
-			for(int i = 0; i < HMatrix.getMatrix().size(); i++)
-			{
-				if(!lastValues.get(i).getValue().equals(0)) //only updates if the clusterID isn't noise (i.e. different than 0)
-				{
-					HMatrix.getObjInstance(i).put(lastValues.get(i).getKey(), lastValues.get(i).getValue());
+				//Emit the current level of the hierarchy (the levels are only tracked if there are sinks):
+				if (!sinks.isEmpty() && (!compactHierarchy || nextLevelSignificant || !newClusters.isEmpty())) {
+					for (HierarchySink sink : sinks) {
+						sink.levelEmitted(currentEdgeWeight, previousClusterLabels);
+					}
 				}
-				HMatrix.getObjInstance(i).put(0.0, 0);   
-			}
-
-			//Ordering Hierarchy
-			HMatrix.lexicographicSort();
-
-			//Updating lastClusters
-			HMatrix.updateLastClusters();
 
-		}
-
-		//Write out the cluster tree:
-		if(!outType.equals(HDBSCANAptsRunner.SHM_OUT))
-		{
-			for (Cluster cluster : clusters) {
-				if (cluster == null)
-					continue;
-
-				treeWriter.write(cluster.getLabel() + delimiter);
-				treeWriter.write(cluster.getBirthLevel() + delimiter);
-				treeWriter.write(cluster.getDeathLevel() + delimiter);
-				treeWriter.write(cluster.getStability() + delimiter);
-
-				if (constraints != null) {
-					treeWriter.write((0.5 * cluster.getNumConstraintsSatisfied() / constraints.size()) + delimiter);
-					treeWriter.write((0.5 * cluster.getPropagatedNumConstraintsSatisfied() / constraints.size()) + delimiter);
-				}
-				else {
-					treeWriter.write(0 + delimiter);
-					treeWriter.write(0 + delimiter);
+				//Announce the new clusters (the sinks assign file offsets) and calculate the number of constraints satisfied:
+				TreeSet<Integer> newClusterLabels = new TreeSet<Integer>();
+				for (Cluster newCluster : newClusters) {
+					for (HierarchySink sink : sinks) {
+						sink.clusterBorn(newCluster);
+					}
+					newClusterLabels.add(newCluster.getLabel());
 				}
+				if (!newClusterLabels.isEmpty())
+					calculateNumConstraintsSatisfied(newClusterLabels, clusters, constraints, currentClusterLabels);
 
-				treeWriter.write(cluster.getFileOffset() + delimiter);
+				if (!sinks.isEmpty())
+					System.arraycopy(currentClusterLabels, 0, previousClusterLabels, 0, currentClusterLabels.length);
 
-				if (cluster.getParent() != null)
-					treeWriter.write(cluster.getParent().getLabel() + "\n");
+				if (newClusters.isEmpty())
+					nextLevelSignificant = false;
 				else
-					treeWriter.write(0 + "\n");
-			}                       
-
-		}   
-
-		//Generating colors
-		if(!outType.equals(HDBSCANAptsRunner.VIS_OUT))
-		{
-			Color[] colors = new Color[HMatrix.getMaxClusterID()+1];
-
-			ArrayList<Double> colorAUX = new ArrayList<Double>(); //responsible for the time-to-live values of the colors
-			int[] colorRNA = new int[HMatrix.getMaxClusterID()+1];          //responsible by assign the colorID to a cluster. The +1 is the noise value.
-
-
-			colorAUX.add(clusters.get(1).getDeathLevel());
-			//colorRNA[0] is noise, so we start from index 1.
-			colorRNA[1] = 0;
-
-			//the file has one line for each clusterID counting from 1
-			for(int i = 2; i <= HMatrix.getMaxClusterID(); i++)
-			{
-				double bornVal = clusters.get(i).getBirthLevel();
-				double deathVal = clusters.get(i).getDeathLevel();
-
-				colorRNA[i] = -1;
-				//Given that exists a color to be reutilized, searches for the first one that can be reutilized.
-				for(int j = 0; j < colorAUX.size(); j++)
-				{
-					if(colorAUX.get(j) > bornVal)
-					{
-						colorAUX.set(j, deathVal);
-						colorRNA[i] = j;
-						break;
-					}    
-				}
-
-				//If no color could be reutilized. Assigns to a new color.
-				if(colorRNA[i] == -1)
-				{
-					colorAUX.add(deathVal);
-					colorRNA[i] = colorAUX.size()-1;
-				}
-
+					nextLevelSignificant = true;
 			}
 
-			//converting integers to actual colors.
-
-			//0 is always noise and always white.
-			colors[0] = (new Color(255,255,255));
-			//dividing the space between the colors
-			double step = (double)1/(colorAUX.size()+1);
-
-			for(int i = 1 ; i < colorRNA.length; i++)
-			{
-				colors[i] = (WaveLength.toRGB(step*colorRNA[i] + 0.5));
+			for (HierarchySink sink : sinks) {
+				sink.hierarchyFinished(clusters);
+				numFinishedSinks++;
 			}
 
-			HMatrix.setColor(colors);
+			return clusters;
 		}
-		//End color generation
+		finally {
+			if (pool != null)
+				pool.shutdown();
 
-		if(hierarchyWriter != null)
-		{
-			hierarchyWriter.close();
-			treeWriter.close();
+			for (int i = numFinishedSinks; i < sinks.size(); i++) {
+				sinks.get(i).hierarchyAborted();
+			}
 		}
+	}
 
-		return clusters;
+	/**
+	 * Computes the same cluster tree, point noise levels and last clusters as 
+	 * computeHierarchyAndClusterTree(), bottom up with a union-find over the edges in ascending 
+	 * order (see UnionFindHierarchy), without writing the hierarchy or modifying the minimum 
+	 * spanning tree, which need not be sorted.  The file offsets of the clusters are left at 0.
+	 * @param mst A minimum spanning tree, possibly with self edges, which must connect all vertices
+	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
+	 * @param constraints An optional ArrayList of Constraints to calculate cluster constraint satisfaction
+	 * @param pointNoiseLevels A double[] to be filled with the levels at which each point becomes noise
+	 * @param pointLastClusters An int[] to be filled with the last label each point had before becoming noise
+	 * @return The cluster tree
+	 */
+	public static ArrayList<Cluster> computeClusterTree(UndirectedGraph mst, int minClusterSize, 
+			ArrayList<Constraint> constraints, double[] pointNoiseLevels, int[] pointLastClusters) {
+		return UnionFindHierarchy.computeClusterTree(mst, minClusterSize, constraints, pointNoiseLevels, pointLastClusters, 
+				Double.MAX_VALUE, true);
 	}
 
 	/**
@@ -866,7 +785,8 @@ public class HDBSCANApts implements Serializable
 	 * Produces a flat clustering result using constraint satisfaction and cluster stability, and 
 	 * returns an array of labels.  propagateTree() must be called before calling this method.
 	 * @param clusters A list of Clusters forming a cluster tree which has already been propagated
-	 * @param hierarchyFile The path to the hierarchy input file
+	 * @param hierarchyFile The path to the hierarchy input file (CSV, or binary if it has the
+	 * BinaryHierarchyWriter.BINARY_HIERARCHY_EXTENSION)
 	 * @param flatOutputFile The path to the flat clustering output file
 	 * @param delimiter The delimiter for both files
 	 * @param numPoints The number of points in the original data set
@@ -882,46 +802,20 @@ public class HDBSCANApts implements Serializable
 		//Take the list of propagated clusters from the root cluster:
 		ArrayList<Cluster> solution = clusters.get(1).getPropagatedDescendants();
 
-		BufferedReader reader = new BufferedReader(new FileReader(hierarchyFile));
 		int[] flatPartitioning = new int[numPoints];
-		long currentOffset = 0;
-
-		//Store all the file offsets at which to find the birth points for the flat clustering:
-		TreeMap<Long, ArrayList<Integer>> significantFileOffsets = new TreeMap<Long, ArrayList<Integer>>();
-		for (Cluster cluster: solution) {
-			ArrayList<Integer> clusterList = significantFileOffsets.get(cluster.getFileOffset());
 
-			if (clusterList == null) {
-				clusterList = new ArrayList<Integer>();
-				significantFileOffsets.put(cluster.getFileOffset(), clusterList);
-			}
-
-			clusterList.add(cluster.getLabel());
-		}
-
-		//Go through the hierarchy file, setting labels for the flat clustering:
-		while (!significantFileOffsets.isEmpty()) {
-			Map.Entry<Long, ArrayList<Integer>> entry = significantFileOffsets.pollFirstEntry();
-			ArrayList<Integer> clusterList = entry.getValue();
-			Long offset = entry.getKey();
-
-			reader.skip(offset - currentOffset);
-			String line = reader.readLine();
-
-			currentOffset = offset + line.length() + 1;
-			String[] lineContents = line.split(delimiter);
-
-			for (int i = 1; i < lineContents.length; i++) {
-				int label = Integer.parseInt(lineContents[i]);
-				if (clusterList.contains(label))
-					flatPartitioning[i-1] = label;
-			}
-		}
+		//Read the level at the file offset of each cluster of the solution:
+		HierarchyReader reader;
+		if (BinaryHierarchyWriter.isBinaryHierarchyFile(hierarchyFile))
+			reader = new BinaryHierarchyReader(hierarchyFile);
+		else
+			reader = new MappedHierarchyReader(hierarchyFile, delimiter);
 
+		reader.readClusterMembers(solution, flatPartitioning);
 		reader.close();
 
 		//Output the flat clustering result:
-		BufferedWriter writer = new BufferedWriter(new FileWriter(flatOutputFile), FILE_BUFFER_SIZE);
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new AsyncFileOutputStream(flatOutputFile)), FILE_BUFFER_SIZE);
 		if (infiniteStability)
 			writer.write(WARNING_MESSAGE + "\n");
 
@@ -1053,7 +947,7 @@ public class HDBSCANApts implements Serializable
 		if(!outType.equals(HDBSCANAptsRunner.SHM_OUT))
 		{
 			//Output the outlier scores:
-			BufferedWriter writer = new BufferedWriter(new FileWriter(outlierScoresOutputFile), FILE_BUFFER_SIZE);
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new AsyncFileOutputStream(outlierScoresOutputFile)), FILE_BUFFER_SIZE);
 			if (infiniteStability)
 				writer.write(WARNING_MESSAGE + "\n");
 
@@ -12,12 +12,15 @@ import ca.ualberta.cs.distance.CosineSimilarity;
 import ca.ualberta.cs.distance.DistanceCalculator;
 import ca.ualberta.cs.distance.EuclideanDistance;
 import ca.ualberta.cs.distance.ManhattanDistance;
+import ca.ualberta.cs.distance.NormalizedDotProduct;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
 import ca.ualberta.cs.distance.PearsonCorrelation;
 import ca.ualberta.cs.distance.SupremumDistance;
 import ca.ualberta.cs.distance.TanimotoSimilarity;
 import ca.ualberta.cs.hdbscanstar.Cluster;
 import ca.ualberta.cs.hdbscanstar.Constraint;
 import ca.ualberta.cs.hdbscanstar.HDBSCANStarRunner;
+import ca.ualberta.cs.hdbscanstar.ParallelExecution;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
 import static ca.ualberta.cs.hdbscanApts.HDBSCANApts.WARNING_MESSAGE;
 
@@ -100,6 +103,19 @@ public class HDBSCANAptsRunner {
 			}
 		}
 
+		//Binary fingerprints are packed into words, which gives the same tanimoto distances:
+		if (PackedTanimotoSimilarity.canPack(dataSet, parameters.distanceFunction)) {
+			parameters.distanceFunction = new PackedTanimotoSimilarity(dataSet[0].length);
+			dataSet = PackedTanimotoSimilarity.pack(dataSet);
+			System.out.println("Packed binary fingerprints into " + (dataSet[0].length-1) + " words per point.");
+		}
+
+		//Normalize the points for cosine and pearson:
+		else if (NormalizedDotProduct.canNormalize(dataSet, parameters.distanceFunction)) {
+			dataSet = NormalizedDotProduct.normalize(dataSet, parameters.distanceFunction);
+			parameters.distanceFunction = new NormalizedDotProduct(parameters.distanceFunction.getName());
+		}
+
 		//Compute core distances:
 		long startTime = System.currentTimeMillis();
 		double[] coreDistances = HDBSCANApts.calculateCoreDistances(dataSet, parameters.distanceFunction);
@@ -109,7 +125,7 @@ public class HDBSCANAptsRunner {
 		//Calculate minimum spanning tree:
 		startTime = System.currentTimeMillis();
 		UndirectedGraph mst = HDBSCANApts.constructMST(dataSet, coreDistances, true, parameters.distanceFunction);
-		mst.quicksortByEdgeWeight();
+		mst.sortByEdgeWeight(ParallelExecution.DEFAULT_NUM_THREADS);
 		System.out.println("Time to calculate MST (ms): " + (System.currentTimeMillis() - startTime));
 
                 //generating mst file (or updating structure) before freeing the mst data.
@@ -151,7 +167,8 @@ public class HDBSCANAptsRunner {
 			
 			clusters = HDBSCANApts.computeHierarchyAndClusterTree(mst, parameters.minClusterSize,
 				    parameters.compactHierarchy, constraints, parameters.hierarchyFile, 
-					parameters.clusterTreeFile, ",", pointNoiseLevels, pointLastClusters, parameters.outType ,HMatrix, lineCount);
+					parameters.clusterTreeFile, ",", pointNoiseLevels, pointLastClusters, parameters.outType ,HMatrix, lineCount, 
+					ParallelExecution.DEFAULT_NUM_THREADS);
 			
 			for(int i=0; i < coreDistances.length; i++)
 			{
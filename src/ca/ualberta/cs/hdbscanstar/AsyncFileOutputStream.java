@@ -0,0 +1,281 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A file output stream which writes to disk on a background thread, so that the output files of
+ * HDBSCAN* are written while the hierarchy, tree and outlier scores are still being computed.  The
+ * bytes written are copied into blocks, and each full block is handed to the background thread
+ * through a bounded queue: when the disk falls behind, writing blocks until the queue has room, so
+ * at most QUEUE_CAPACITY+2 blocks are ever allocated (written blocks are reused).  flush() waits
+ * until all bytes written so far are on disk, and close() also waits for the file to be closed.
+ * An IOException on the background thread is thrown by the next write, flush or close, which first
+ * stops the thread and closes the file (OutputStreamWriter does not close its stream when flushing
+ * it fails, so the file would otherwise stay open).
+ * <p>
+ * Text outputs wrap it as new BufferedWriter(new OutputStreamWriter(new AsyncFileOutputStream(fileName)), ...),
+ * which encodes the text with the default charset, as FileWriter does.
+ */
+public class AsyncFileOutputStream extends OutputStream {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private FileOutputStream outputStream;
+	private Thread writerThread;
+
+	private ArrayBlockingQueue<Block> fullBlocks;
+	private ArrayBlockingQueue<Block> emptyBlocks;
+	private Block currentBlock;
+
+	private long numBlocksQueued;
+	private long numBlocksWritten;		//Guarded by this
+	private volatile IOException writeException;
+	private boolean closed;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int BLOCK_SIZE = 65536;
+	private static final int QUEUE_CAPACITY = 16;
+
+	private static final Block END_OF_STREAM = new Block(0);
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates (or truncates) a file and starts the thread which writes to it.
+	 * @param fileName The path to the file
+	 * @throws IOException If the file cannot be opened
+	 */
+	public AsyncFileOutputStream(String fileName) throws IOException {
+		this.outputStream = new FileOutputStream(fileName);
+
+		this.fullBlocks = new ArrayBlockingQueue<Block>(QUEUE_CAPACITY);
+		this.emptyBlocks = new ArrayBlockingQueue<Block>(QUEUE_CAPACITY + 2);
+		this.currentBlock = new Block(BLOCK_SIZE);
+
+		this.numBlocksQueued = 0;
+		this.numBlocksWritten = 0;
+		this.writeException = null;
+		this.closed = false;
+
+		this.writerThread = new Thread(new Runnable() {
+			public void run() {
+				writeBlocks();
+			}
+		}, "AsyncFileOutputStream " + fileName);
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	@Override
+	public void write(int b) throws IOException {
+		if (this.closed)
+			throw new IOException("Stream closed");
+
+		if (this.currentBlock.length == this.currentBlock.data.length)
+			this.queueCurrentBlock();
+
+		this.currentBlock.data[this.currentBlock.length++] = (byte)b;
+	}
+
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (this.closed)
+			throw new IOException("Stream closed");
+
+		while (length > 0) {
+			if (this.currentBlock.length == this.currentBlock.data.length)
+				this.queueCurrentBlock();
+
+			int numBytes = Math.min(length, this.currentBlock.data.length - this.currentBlock.length);
+			System.arraycopy(bytes, offset, this.currentBlock.data, this.currentBlock.length, numBytes);
+			this.currentBlock.length += numBytes;
+
+			offset += numBytes;
+			length -= numBytes;
+		}
+	}
+
+
+	/**
+	 * Waits until all bytes written so far have been written to the file.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (this.closed)
+			return;
+
+		if (this.currentBlock.length > 0)
+			this.queueCurrentBlock();
+
+		try {
+			synchronized (this) {
+				while (this.numBlocksWritten < this.numBlocksQueued) {
+					this.wait();
+				}
+			}
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while flushing the file.");
+		}
+
+		this.checkWriteException();
+	}
+
+
+	/**
+	 * Writes the remaining bytes, and waits until the file is closed.  The file is closed even if
+	 * the remaining bytes cannot be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed)
+			return;
+
+		try {
+			if (this.currentBlock.length > 0)
+				this.queueCurrentBlock();
+		}
+		finally {
+			this.stopWriterThread();
+		}
+
+		this.checkWriteException();
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Hands the current block to the writer thread (waiting while the queue is full), and takes a
+	 * written block, or a new one if none has been written yet, as the current block.
+	 */
+	private void queueCurrentBlock() throws IOException {
+		this.checkWriteException();
+
+		try {
+			this.fullBlocks.put(this.currentBlock);
+		}
+		catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the file.");
+		}
+		this.numBlocksQueued++;
+
+		this.currentBlock = this.emptyBlocks.poll();
+		if (this.currentBlock == null)
+			this.currentBlock = new Block(BLOCK_SIZE);
+	}
+
+
+	/**
+	 * The loop of the writer thread, which writes the blocks in order until the end of the stream.
+	 */
+	private void writeBlocks() {
+		try {
+			while (true) {
+				Block block = this.fullBlocks.take();
+				if (block == END_OF_STREAM)
+					break;
+
+				//After an error, the remaining blocks are dropped:
+				if (this.writeException == null) {
+					try {
+						this.outputStream.write(block.data, 0, block.length);
+					}
+					catch (IOException ioe) {
+						this.writeException = ioe;
+					}
+				}
+
+				block.length = 0;
+				this.emptyBlocks.offer(block);
+
+				synchronized (this) {
+					this.numBlocksWritten++;
+					this.notifyAll();
+				}
+			}
+		}
+		catch (InterruptedException ie) {
+			this.writeException = new InterruptedIOException("The writer thread was interrupted.");
+		}
+
+		try {
+			this.outputStream.close();
+		}
+		catch (IOException ioe) {
+			if (this.writeException == null)
+				this.writeException = ioe;
+		}
+	}
+
+
+	/**
+	 * Queues the end of the stream and waits until the writer thread has closed the file.  The
+	 * shutdown is not abandoned if the calling thread is interrupted (it is interrupted again, and an
+	 * InterruptedIOException thrown, once the file is closed).
+	 */
+	private void stopWriterThread() throws IOException {
+		if (this.closed)
+			return;
+		this.closed = true;
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				this.fullBlocks.put(END_OF_STREAM);
+				break;
+			}
+			catch (InterruptedException ie) {
+				interrupted = true;
+			}
+		}
+		while (this.writerThread.isAlive()) {
+			try {
+				this.writerThread.join();
+			}
+			catch (InterruptedException ie) {
+				interrupted = true;
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing the file.");
+		}
+	}
+
+
+	/**
+	 * Throws the exception of the writer thread, if any, after stopping it.
+	 */
+	private void checkWriteException() throws IOException {
+		if (this.writeException == null)
+			return;
+
+		this.stopWriterThread();
+		throw new IOException("Error writing to file: " + this.writeException.getMessage(), this.writeException);
+	}
+
+
+	/**
+	 * A buffer of bytes, of which the first length are to be written.
+	 */
+	private static class Block {
+		private byte[] data;
+		private int length;
+
+		private Block(int size) {
+			this.data = new byte[size];
+			this.length = 0;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reads a hierarchy written by BinaryHierarchyWriter.  The level index is read when the file is
+ * opened, and the labels at a level are found by decoding the records from the closest keyframe
+ * at or before it, or from the last level read if it comes before the level and after that
+ * keyframe, so reading the levels in order decodes each record once.
+ */
+public class BinaryHierarchyReader extends HierarchyReader {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private RandomAccessFile file;
+	private int numPoints;
+	private int keyframeInterval;
+
+	private int numLevels;
+	private double[] levels;
+	private long[] recordOffsets;
+	private long indexOffset;
+
+	private int[] labels;			//The labels at currentLevel
+	private int currentLevel;
+	private byte[] buffer;
+	private int bufferPosition;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int FILE_BUFFER_SIZE = 32678;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Opens a binary hierarchy file and reads its level index.
+	 * @param fileName The path to the hierarchy file
+	 * @throws IOException If any errors occur opening or reading the file, or if it is not a binary hierarchy file
+	 */
+	public BinaryHierarchyReader(String fileName) throws IOException {
+		this.file = new RandomAccessFile(fileName, "r");
+
+		if (this.file.length() < BinaryHierarchyWriter.HEADER_SIZE + BinaryHierarchyWriter.FOOTER_SIZE ||
+				this.file.readInt() != BinaryHierarchyWriter.MAGIC) {
+			this.file.close();
+			throw new IOException(fileName + " is not a binary hierarchy file.");
+		}
+		this.numPoints = this.file.readInt();
+		this.keyframeInterval = this.file.readInt();
+
+		this.file.seek(this.file.length() - BinaryHierarchyWriter.FOOTER_SIZE);
+		this.indexOffset = this.file.readLong();
+		this.numLevels = this.file.readInt();
+		if (this.file.readInt() != BinaryHierarchyWriter.MAGIC) {
+			this.file.close();
+			throw new IOException(fileName + " is incomplete (it was not closed).");
+		}
+
+		byte[] index = new byte[16*this.numLevels];
+		this.file.seek(this.indexOffset);
+		this.file.readFully(index);
+
+		this.levels = new double[this.numLevels];
+		this.recordOffsets = new long[this.numLevels];
+		for (int i = 0; i < this.numLevels; i++) {
+			this.levels[i] = Double.longBitsToDouble(readLong(index, 16*i));
+			this.recordOffsets[i] = readLong(index, 16*i + 8);
+		}
+
+		this.labels = new int[this.numPoints];
+		this.currentLevel = -1;
+		this.buffer = new byte[FILE_BUFFER_SIZE];
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Reads the label of each point at a level of the hierarchy.
+	 * @param levelIndex The index of the level, from 0 for the first level written
+	 * @param levelLabels An int[] of numPoints to be filled with the labels
+	 * @throws IOException If any errors occur reading the file
+	 */
+	public void readLabels(int levelIndex, int[] levelLabels) throws IOException {
+		int keyframeLevel = levelIndex - (levelIndex % this.keyframeInterval);
+		int firstLevel = this.currentLevel + 1;
+
+		if (this.currentLevel < keyframeLevel || this.currentLevel > levelIndex)
+			firstLevel = keyframeLevel;
+
+		if (firstLevel <= levelIndex) {
+			long start = this.recordOffsets[firstLevel];
+			long end = (levelIndex+1 < this.numLevels) ? this.recordOffsets[levelIndex+1] : this.indexOffset;
+
+			if (this.buffer.length < end - start)
+				this.buffer = new byte[(int)(end - start)];
+			this.file.seek(start);
+			this.file.readFully(this.buffer, 0, (int)(end - start));
+
+			this.decodeRecords(levelIndex - firstLevel + 1);
+			this.currentLevel = levelIndex;
+		}
+
+		System.arraycopy(this.labels, 0, levelLabels, 0, this.numPoints);
+	}
+
+
+	/**
+	 * Reads the labels at a level, for which the file offset of a cluster is the index of the level.
+	 */
+	@Override
+	public void readClusterLabels(long fileOffset, int[] labels) throws IOException {
+		this.readLabels((int)fileOffset, labels);
+	}
+
+
+	/**
+	 * Writes a binary hierarchy file as the CSV hierarchy which HDBSCANStar would have written, so
+	 * that it can be opened by tools which only read the CSV format.
+	 * @param binaryFile The path to the binary hierarchy file
+	 * @param csvFile The path to the CSV hierarchy file
+	 * @param delimiter The delimiter to be used while writing the CSV file
+	 * @throws IOException If any errors occur reading or writing the files
+	 */
+	public static void convertToCSV(String binaryFile, String csvFile, String delimiter) throws IOException {
+		BinaryHierarchyReader reader = new BinaryHierarchyReader(binaryFile);
+		BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile), FILE_BUFFER_SIZE);
+		int[] levelLabels = new int[reader.getNumPoints()];
+
+		for (int level = 0; level < reader.getNumLevels(); level++) {
+			reader.readLabels(level, levelLabels);
+
+			//The last level, at which all points are noise, is written as 0:
+			if (level == reader.getNumLevels()-1)
+				writer.write(0 + delimiter);
+			else
+				writer.write(reader.getLevel(level) + delimiter);
+
+			for (int i = 0; i < levelLabels.length-1; i++) {
+				writer.write(levelLabels[i] + delimiter);
+			}
+			writer.write(levelLabels[levelLabels.length-1] + "\n");
+		}
+
+		writer.close();
+		reader.close();
+	}
+
+
+	/**
+	 * Converts a binary hierarchy file to a CSV hierarchy file.
+	 * @param args The binary hierarchy file and the CSV file to write
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: java -cp HDBSCANStar.jar ca.ualberta.cs.hdbscanstar.BinaryHierarchyReader " +
+					"<input>_hierarchy" + BinaryHierarchyWriter.BINARY_HIERARCHY_EXTENSION + " <input>_hierarchy.csv");
+			System.exit(0);
+		}
+
+		try {
+			convertToCSV(args[0], args[1], ",");
+		}
+		catch (IOException ioe) {
+			System.err.println("Error converting the binary hierarchy file: " + ioe.getMessage());
+			System.exit(-1);
+		}
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		this.file.close();
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Applies the records at the start of the buffer to the labels.
+	 */
+	private void decodeRecords(int numRecords) {
+		this.bufferPosition = 0;
+
+		for (int record = 0; record < numRecords; record++) {
+			byte type = this.buffer[this.bufferPosition];
+			this.bufferPosition += 9;		//The type and the level
+
+			if (type == BinaryHierarchyWriter.KEYFRAME_RECORD) {
+				for (int i = 0; i < this.numPoints; i++) {
+					this.labels[i] = this.readVarint();
+				}
+			}
+			else {
+				int numChanges = this.readVarint();
+
+				int point = -1;
+				for (int change = 0; change < numChanges; change++) {
+					point += this.readVarint() + 1;
+					this.labels[point] = this.readVarint();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Reads the varint at bufferPosition, and moves bufferPosition past it.
+	 */
+	private int readVarint() {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = this.buffer[this.bufferPosition++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		return value;
+	}
+
+
+	private static long readLong(byte[] buffer, int position) {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (buffer[position + i] & 0xFF);
+		}
+		return value;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.numPoints;
+	}
+
+	public int getNumLevels() {
+		return this.numLevels;
+	}
+
+	/**
+	 * Returns the level (edge weight) of the level with the given index.
+	 */
+	public double getLevel(int levelIndex) {
+		return this.levels[levelIndex];
+	}
+}
@@ -0,0 +1,266 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Writes an HDBSCAN* hierarchy in a binary change-log format, instead of a CSV line with the labels
+ * of all points for each level.  The record of a level holds only the points whose label changed
+ * since the previous level, as varint gaps between their indices, and their new labels as varints.
+ * Every keyframeInterval levels the record holds the labels of all points instead, so any level can
+ * be read by decoding at most keyframeInterval records, and an index with the offset of the record
+ * of each level is written at the end of the file.  Writing a level allocates nothing (apart from
+ * growing the index).
+ * <p>
+ * The layout of the file is (fixed width values are big-endian, as in DataOutputStream):
+ * <pre>
+ * header: int MAGIC, int numPoints, int keyframeInterval
+ * record: byte KEYFRAME_RECORD, double level, numPoints x varint label
+ *     or: byte CHANGE_RECORD, double level, varint numChanges, numChanges x (varint gap, varint label)
+ * index:  numLevels x (double level, long recordOffset)
+ * footer: long indexOffset, int numLevels, int MAGIC
+ * </pre>
+ * The gap of a change is the number of points between it and the previous change.  The files are
+ * recognized by their extension, and are read by BinaryHierarchyReader.  As a HierarchySink, the file
+ * offset of a cluster is the index of the first level after its birth.
+ */
+public class BinaryHierarchyWriter implements HierarchySink {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private OutputStream outputStream;
+	private byte[] buffer;
+	private int bufferPosition;
+	private long numBytesWritten;		//Including the bytes still in the buffer
+
+	private int keyframeInterval;
+	private int[] labels;				//The labels of the last level written
+
+	private int numLevels;
+	private double[] levels;
+	private long[] recordOffsets;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	public static final String BINARY_HIERARCHY_EXTENSION = ".hbin";
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+
+	static final int MAGIC = 0x48424831;
+	static final byte CHANGE_RECORD = 0;
+	static final byte KEYFRAME_RECORD = 1;
+	static final int HEADER_SIZE = 12;
+	static final int FOOTER_SIZE = 16;
+
+	private static final int BUFFER_SIZE = 32678;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates a binary hierarchy file with the default keyframe interval.
+	 * @param fileName The path to the hierarchy file
+	 * @param numPoints The number of points in the data set
+	 * @throws IOException If any errors occur opening or writing to the file
+	 */
+	public BinaryHierarchyWriter(String fileName, int numPoints) throws IOException {
+		this(fileName, numPoints, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Creates a binary hierarchy file.
+	 * @param fileName The path to the hierarchy file
+	 * @param numPoints The number of points in the data set
+	 * @param keyframeInterval The number of levels from one record with the labels of all points to the next
+	 * @throws IOException If any errors occur opening or writing to the file
+	 */
+	public BinaryHierarchyWriter(String fileName, int numPoints, int keyframeInterval) throws IOException {
+		this.outputStream = new AsyncFileOutputStream(fileName);
+		this.buffer = new byte[BUFFER_SIZE];
+		this.bufferPosition = 0;
+		this.numBytesWritten = 0;
+
+		this.keyframeInterval = keyframeInterval;
+		this.labels = new int[numPoints];
+
+		this.numLevels = 0;
+		this.levels = new double[16];
+		this.recordOffsets = new long[16];
+
+		this.writeInt(MAGIC);
+		this.writeInt(numPoints);
+		this.writeInt(keyframeInterval);
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Returns true if a hierarchy file should be written in the binary format, which is the case
+	 * when its name ends with BINARY_HIERARCHY_EXTENSION.
+	 */
+	public static boolean isBinaryHierarchyFile(String fileName) {
+		return fileName.endsWith(BINARY_HIERARCHY_EXTENSION);
+	}
+
+
+	/**
+	 * Writes the next level of the hierarchy.
+	 * @param level The level (edge weight) at which the points have these labels
+	 * @param levelLabels The label of each point at the level
+	 * @throws IOException If any errors occur writing to the file
+	 */
+	public void writeLevel(double level, int[] levelLabels) throws IOException {
+		if (this.numLevels == this.levels.length) {
+			this.levels = Arrays.copyOf(this.levels, 2*this.numLevels);
+			this.recordOffsets = Arrays.copyOf(this.recordOffsets, 2*this.numLevels);
+		}
+		this.levels[this.numLevels] = level;
+		this.recordOffsets[this.numLevels] = this.numBytesWritten;
+
+		if (this.numLevels % this.keyframeInterval == 0) {
+			this.writeByte(KEYFRAME_RECORD);
+			this.writeLong(Double.doubleToLongBits(level));
+
+			for (int i = 0; i < levelLabels.length; i++) {
+				this.writeVarint(levelLabels[i]);
+				this.labels[i] = levelLabels[i];
+			}
+		}
+		else {
+			int numChanges = 0;
+			for (int i = 0; i < levelLabels.length; i++) {
+				if (levelLabels[i] != this.labels[i])
+					numChanges++;
+			}
+
+			this.writeByte(CHANGE_RECORD);
+			this.writeLong(Double.doubleToLongBits(level));
+			this.writeVarint(numChanges);
+
+			int previousPoint = -1;
+			for (int i = 0; i < levelLabels.length; i++) {
+				if (levelLabels[i] != this.labels[i]) {
+					this.writeVarint(i - previousPoint - 1);
+					this.writeVarint(levelLabels[i]);
+					this.labels[i] = levelLabels[i];
+					previousPoint = i;
+				}
+			}
+		}
+
+		this.numLevels++;
+	}
+
+
+	public void pointBecameNoise(int point, double level, int lastClusterLabel) {
+	}
+
+
+	public void levelEmitted(double level, int[] labels) throws IOException {
+		this.writeLevel(level, labels);
+	}
+
+
+	public void clusterBorn(Cluster cluster) {
+		cluster.setFileOffset(this.numLevels);
+	}
+
+
+	/**
+	 * Writes the last level of the hierarchy (all points noise, at level 0) and closes the file.
+	 */
+	public void hierarchyFinished(ArrayList<Cluster> clusters) throws IOException {
+		this.writeLevel(0.0, new int[this.labels.length]);
+		this.close();
+	}
+
+
+	/**
+	 * Closes the file without the level index, which leaves a file that cannot be read.
+	 */
+	public void hierarchyAborted() {
+		try {
+			this.outputStream.close();
+		}
+		catch (IOException ioe) {
+			//The exception which aborted the hierarchy is reported instead.
+		}
+	}
+
+
+	/**
+	 * Writes the level index and closes the file, which is closed even if the index cannot be written.
+	 * @throws IOException If any errors occur writing to or closing the file
+	 */
+	public void close() throws IOException {
+		try {
+			long indexOffset = this.numBytesWritten;
+
+			for (int i = 0; i < this.numLevels; i++) {
+				this.writeLong(Double.doubleToLongBits(this.levels[i]));
+				this.writeLong(this.recordOffsets[i]);
+			}
+
+			this.writeLong(indexOffset);
+			this.writeInt(this.numLevels);
+			this.writeInt(MAGIC);
+
+			this.flushBuffer();
+		}
+		finally {
+			this.outputStream.close();
+		}
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	private void flushBuffer() throws IOException {
+		this.outputStream.write(this.buffer, 0, this.bufferPosition);
+		this.bufferPosition = 0;
+	}
+
+
+	private void writeByte(int value) throws IOException {
+		if (this.bufferPosition == this.buffer.length)
+			this.flushBuffer();
+
+		this.buffer[this.bufferPosition++] = (byte)value;
+		this.numBytesWritten++;
+	}
+
+
+	private void writeInt(int value) throws IOException {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			this.writeByte(value >>> shift);
+		}
+	}
+
+
+	private void writeLong(long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			this.writeByte((int)(value >>> shift));
+		}
+	}
+
+
+	/**
+	 * Writes a non-negative int in 7 bit groups, least significant first, with the high bit of
+	 * each byte set if more bytes follow.
+	 */
+	private void writeVarint(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			this.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		this.writeByte(value);
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	/**
+	 * Returns the number of levels written, which is also the index of the next level.
+	 */
+	public int getNumLevels() {
+		return this.numLevels;
+	}
+}
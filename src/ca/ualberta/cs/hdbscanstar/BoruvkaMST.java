@@ -0,0 +1,557 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.MinkowskiDistance;
+
+/**
+ * Constructs the minimum spanning tree of mutual reachability distances with Boruvka's algorithm,
+ * searching the shortest edge out of each component with a k-d tree instead of scanning all pairs
+ * of points.  Each node of the tree keeps the bounding box of its points, their smallest core
+ * distance and, once all of its points are in the same component, that component, so that most of
+ * the tree is skipped by each search.  For low dimensional data this takes roughly O(n log n) time
+ * in each of the O(log n) rounds, instead of the O(n^2) of Prim's algorithm.
+ *
+ * Edges are ordered by weight and then by their vertices, so the tree is a minimum spanning tree
+ * even when several edges have the same weight.  Edge weights are computed exactly as in
+ * HDBSCANStar.constructMST and the tree is returned in the same layout (rooted at the last point,
+ * with the edge of point i at index i), so when all weights are distinct the graph is identical to
+ * the one constructed by Prim's algorithm.  Ties may be broken differently, which gives a tree with
+ * the same total weight and a hierarchy with the same structure, but the clusters may be numbered
+ * differently, so the hierarchy, tree and partition files may differ from those of Prim's algorithm
+ * (up to a relabeling of the clusters).
+ */
+public class BoruvkaMST {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private double[][] dataSet;
+	private double[] coreDistances;
+	private MinkowskiDistance distanceFunction;
+	private int numAttributes;
+
+	private int[] pointIndices;		//Data set indices, ordered so that every node covers an interval
+	private int[] nodeStart;		//First position (inclusive) in pointIndices of each node
+	private int[] nodeEnd;			//Last position (exclusive) in pointIndices of each node
+	private int[] leftChild;		//Left child of each node, or -1 for leaves
+	private int[] rightChild;
+	private double[] nodeLowerBounds;	//Index [node*numAttributes + j] is the lowest value of attribute j in the node
+	private double[] nodeUpperBounds;	//Index [node*numAttributes + j] is the highest value of attribute j in the node
+	private double[] nodeMinCoreDistances;	//The smallest core distance of the points in each node
+	private int[] nodeMinIndices;		//The smallest data set index of the points in each node
+	private int[] nodeComponents;		//The component of all points in each node, or -1 if they are in several
+	private int numNodes;
+
+	private int[] parents;			//Union-find forest of the components
+	private int[] sizes;			//Number of points of the components, for their roots
+	private int[] components;		//Component (root) of each point in the current round
+
+	private double[] componentWeights;	//Weight of the shortest edge found out of each component in the current round
+	private int[] componentFirstVertices;	//Smaller vertex of that edge, or -1 if none was found
+	private int[] componentSecondVertices;	//Larger vertex of that edge
+
+	private double pointWeight;		//Weight of the shortest edge found out of the point being searched
+	private int pointNeighbor;		//Other vertex of that edge, or -1 if none was found
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int LEAF_SIZE = 32;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	private BoruvkaMST(double[][] dataSet, double[] coreDistances, MinkowskiDistance distanceFunction) {
+		this.dataSet = dataSet;
+		this.coreDistances = coreDistances;
+		this.distanceFunction = distanceFunction;
+		this.numAttributes = dataSet[0].length;
+
+		this.pointIndices = new int[dataSet.length];
+		for (int i = 0; i < dataSet.length; i++) {
+			this.pointIndices[i] = i;
+		}
+
+		//Every split leaves at least LEAF_SIZE/2 points on each side:
+		int maxNodes = 2 * (dataSet.length / (LEAF_SIZE/2) + 1);
+		this.nodeStart = new int[maxNodes];
+		this.nodeEnd = new int[maxNodes];
+		this.leftChild = new int[maxNodes];
+		this.rightChild = new int[maxNodes];
+		this.nodeLowerBounds = new double[maxNodes * this.numAttributes];
+		this.nodeUpperBounds = new double[maxNodes * this.numAttributes];
+		this.nodeMinCoreDistances = new double[maxNodes];
+		this.nodeMinIndices = new int[maxNodes];
+		this.nodeComponents = new int[maxNodes];
+		this.numNodes = 0;
+		buildNode(0, dataSet.length);
+
+		this.parents = new int[dataSet.length];
+		this.sizes = new int[dataSet.length];
+		this.components = new int[dataSet.length];
+		for (int i = 0; i < dataSet.length; i++) {
+			this.parents[i] = i;
+			this.sizes[i] = 1;
+		}
+
+		this.componentWeights = new double[dataSet.length];
+		this.componentFirstVertices = new int[dataSet.length];
+		this.componentSecondVertices = new int[dataSet.length];
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Checks whether the minimum spanning tree can be constructed with Boruvka's algorithm, which
+	 * is the case for MinkowskiDistance functions when all attributes and core distances are finite.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param coreDistances An array of core distances for each data point
+	 * @param distanceFunction The DistanceCalculator that would be used on the data set
+	 * @return true if construct can be used
+	 */
+	public static boolean canConstruct(double[][] dataSet, double[] coreDistances, DistanceCalculator distanceFunction) {
+		if (!(distanceFunction instanceof MinkowskiDistance) || dataSet.length == 0)
+			return false;
+
+		for (int i = 0; i < dataSet.length; i++) {
+			if (dataSet[i].length != dataSet[0].length)
+				return false;
+			if (Double.isNaN(coreDistances[i]) || Double.isInfinite(coreDistances[i]))
+				return false;
+			for (double value : dataSet[i]) {
+				if (Double.isNaN(value) || Double.isInfinite(value))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Constructs the minimum spanning tree of mutual reachability distances for the data set, given
+	 * the core distances for each point.  canConstruct must be true for the arguments.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param coreDistances An array of core distances for each data point
+	 * @param selfEdges If each point should have an edge to itself with weight equal to core distance
+	 * @param distanceFunction A MinkowskiDistance to compute distances between points
+	 * @return An MST for the data set using the mutual reachability distances, or null if some
+	 * components could not be connected (when distances between finite points overflow to infinity)
+	 */
+	public static UndirectedGraph construct(double[][] dataSet, double[] coreDistances, 
+			boolean selfEdges, MinkowskiDistance distanceFunction) {
+
+		int numPoints = dataSet.length;
+		int[] firstVertices = new int[numPoints-1];
+		int[] secondVertices = new int[numPoints-1];
+		double[] weights = new double[numPoints-1];
+
+		if (numPoints > 1 && !new BoruvkaMST(dataSet, coreDistances, distanceFunction).findEdges(firstVertices, secondVertices, weights))
+			return null;
+
+		return toGraph(numPoints, firstVertices, secondVertices, weights, coreDistances, selfEdges);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Runs rounds of Boruvka's algorithm, in each of which the shortest edge out of every component is
+	 * found and added to the tree, until a single component remains.
+	 * @return false if a round added no edge, which happens when all edges out of the components
+	 * have an infinite weight
+	 */
+	private boolean findEdges(int[] firstVertices, int[] secondVertices, double[] weights) {
+		int numPoints = this.dataSet.length;
+		int numEdges = 0;
+		double[] closest = new double[this.numAttributes];
+
+		while (numEdges < numPoints-1) {
+			int numEdgesBefore = numEdges;
+
+			for (int point = 0; point < numPoints; point++) {
+				this.components[point] = find(point);
+				this.componentWeights[point] = Double.POSITIVE_INFINITY;
+				this.componentFirstVertices[point] = -1;
+			}
+			updateNodeComponents();
+
+			//Find the shortest edge out of each point, keeping the shortest one of each component:
+			for (int point = 0; point < numPoints; point++) {
+				int component = this.components[point];
+				this.pointWeight = Double.POSITIVE_INFINITY;
+				this.pointNeighbor = -1;
+
+				searchNode(0, 0, point, this.dataSet[point], closest);
+
+				if (this.pointNeighbor == -1)
+					continue;
+
+				int firstVertex = Math.min(point, this.pointNeighbor);
+				int secondVertex = Math.max(point, this.pointNeighbor);
+				if (isShorter(this.pointWeight, firstVertex, secondVertex, this.componentWeights[component], 
+						this.componentFirstVertices[component], this.componentSecondVertices[component])) {
+					this.componentWeights[component] = this.pointWeight;
+					this.componentFirstVertices[component] = firstVertex;
+					this.componentSecondVertices[component] = secondVertex;
+				}
+			}
+
+			//Add the shortest edge out of each component, unless another component already added it:
+			for (int component = 0; component < numPoints; component++) {
+				if (this.components[component] != component || this.componentFirstVertices[component] == -1)
+					continue;
+
+				int firstVertex = this.componentFirstVertices[component];
+				int secondVertex = this.componentSecondVertices[component];
+				if (union(firstVertex, secondVertex)) {
+					firstVertices[numEdges] = firstVertex;
+					secondVertices[numEdges] = secondVertex;
+					weights[numEdges] = this.componentWeights[component];
+					numEdges++;
+				}
+			}
+
+			if (numEdges == numEdgesBefore)
+				return false;
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Searches a node for the shortest edge from a point to a point of another component, visiting
+	 * the closer child first.
+	 * @param lowerBound A lower bound on the mutual reachability distance from the point to the node
+	 */
+	private void searchNode(int node, double lowerBound, int point, double[] query, double[] closest) {
+		int component = this.components[point];
+
+		if (this.nodeComponents[node] == component || !mayImprove(node, lowerBound, component))
+			return;
+
+		if (this.leftChild[node] == -1) {
+			for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+				int neighbor = this.pointIndices[i];
+				if (this.components[neighbor] == component)
+					continue;
+
+				double upperBound = Math.min(this.pointWeight, this.componentWeights[component]);
+				if (this.coreDistances[point] > upperBound || this.coreDistances[neighbor] > upperBound)
+					continue;
+
+				double distance = this.distanceFunction.computeDistance(query, this.dataSet[neighbor], upperBound);
+				double mutualReachabiltiyDistance = distance;
+				if (this.coreDistances[point] > mutualReachabiltiyDistance)
+					mutualReachabiltiyDistance = this.coreDistances[point];
+				if (this.coreDistances[neighbor] > mutualReachabiltiyDistance)
+					mutualReachabiltiyDistance = this.coreDistances[neighbor];
+
+				if (mutualReachabiltiyDistance > this.componentWeights[component])
+					continue;
+				if (mutualReachabiltiyDistance < this.pointWeight || 
+						(mutualReachabiltiyDistance == this.pointWeight && neighbor < this.pointNeighbor)) {
+					this.pointWeight = mutualReachabiltiyDistance;
+					this.pointNeighbor = neighbor;
+				}
+			}
+			return;
+		}
+
+		int nearChild = this.leftChild[node];
+		int farChild = this.rightChild[node];
+		double nearBound = lowerBound(nearChild, point, query, closest);
+		double farBound = lowerBound(farChild, point, query, closest);
+
+		if (farBound < nearBound) {
+			int tempChild = nearChild;
+			nearChild = farChild;
+			farChild = tempChild;
+			double tempBound = nearBound;
+			nearBound = farBound;
+			farBound = tempBound;
+		}
+
+		searchNode(nearChild, nearBound, point, query, closest);
+		searchNode(farChild, farBound, point, query, closest);
+	}
+
+
+	/**
+	 * Decides whether a node may hold an edge shorter than the shortest ones found so far, out of
+	 * the point being searched and out of its component.  An edge of the same weight as the point's
+	 * shortest edge is shorter if its other vertex has a smaller index.
+	 */
+	private boolean mayImprove(int node, double lowerBound, int component) {
+		if (lowerBound > this.componentWeights[component] || lowerBound > this.pointWeight)
+			return false;
+		if (lowerBound == this.pointWeight && this.nodeMinIndices[node] > this.pointNeighbor)
+			return false;
+		return true;
+	}
+
+
+	/**
+	 * Computes a lower bound on the mutual reachability distance from a point to any point of a node,
+	 * from the distance to the closest point of the node's bounding box and the core distances.
+	 * @param closest A buffer which will hold the closest point of the box
+	 */
+	private double lowerBound(int node, int point, double[] query, double[] closest) {
+		int offset = node * this.numAttributes;
+
+		for (int j = 0; j < this.numAttributes; j++) {
+			double value = query[j];
+			if (value < this.nodeLowerBounds[offset + j])
+				value = this.nodeLowerBounds[offset + j];
+			else if (value > this.nodeUpperBounds[offset + j])
+				value = this.nodeUpperBounds[offset + j];
+			closest[j] = value;
+		}
+
+		double lowerBound = this.distanceFunction.computeDistance(query, closest);
+		lowerBound = Math.max(lowerBound, this.coreDistances[point]);
+		return Math.max(lowerBound, this.nodeMinCoreDistances[node]);
+	}
+
+
+	/**
+	 * Checks whether an edge comes before another in the order of the tree: by weight, then by the
+	 * smaller vertex, then by the larger vertex.  An edge without vertices (-1) comes after all others.
+	 */
+	private static boolean isShorter(double weight, int firstVertex, int secondVertex, 
+			double otherWeight, int otherFirstVertex, int otherSecondVertex) {
+		if (otherFirstVertex == -1)
+			return true;
+		if (weight != otherWeight)
+			return weight < otherWeight;
+		if (firstVertex != otherFirstVertex)
+			return firstVertex < otherFirstVertex;
+		return secondVertex < otherSecondVertex;
+	}
+
+
+	/**
+	 * Records the component of every node whose points are all in the same component.  Nodes are
+	 * numbered in preorder, so children are updated before their parents.
+	 */
+	private void updateNodeComponents() {
+		for (int node = this.numNodes-1; node >= 0; node--) {
+			if (this.leftChild[node] == -1) {
+				int component = this.components[this.pointIndices[this.nodeStart[node]]];
+				for (int i = this.nodeStart[node]+1; i < this.nodeEnd[node] && component != -1; i++) {
+					if (this.components[this.pointIndices[i]] != component)
+						component = -1;
+				}
+				this.nodeComponents[node] = component;
+			}
+			else if (this.nodeComponents[this.leftChild[node]] == this.nodeComponents[this.rightChild[node]])
+				this.nodeComponents[node] = this.nodeComponents[this.leftChild[node]];
+			else
+				this.nodeComponents[node] = -1;
+		}
+	}
+
+
+	/**
+	 * Finds the root of a point's component, halving the path to it.
+	 */
+	private int find(int point) {
+		while (this.parents[point] != point) {
+			this.parents[point] = this.parents[this.parents[point]];
+			point = this.parents[point];
+		}
+		return point;
+	}
+
+
+	/**
+	 * Merges the components of two points.
+	 * @return true if the points were in different components
+	 */
+	private boolean union(int pointOne, int pointTwo) {
+		int rootOne = find(pointOne);
+		int rootTwo = find(pointTwo);
+
+		if (rootOne == rootTwo)
+			return false;
+
+		if (this.sizes[rootOne] < this.sizes[rootTwo]) {
+			int tempRoot = rootOne;
+			rootOne = rootTwo;
+			rootTwo = tempRoot;
+		}
+		this.parents[rootTwo] = rootOne;
+		this.sizes[rootOne]+= this.sizes[rootTwo];
+		return true;
+	}
+
+
+	/**
+	 * Creates the node covering positions [start, end) of pointIndices, and its subtree.  Nodes are
+	 * split at the median of the attribute with the largest spread, until they hold at most
+	 * LEAF_SIZE points.
+	 * @return The index of the new node
+	 */
+	private int buildNode(int start, int end) {
+		int node = this.numNodes++;
+		this.nodeStart[node] = start;
+		this.nodeEnd[node] = end;
+		this.leftChild[node] = -1;
+		this.rightChild[node] = -1;
+
+		//Compute the bounding box, smallest core distance and smallest index of the node:
+		int offset = node * this.numAttributes;
+		for (int j = 0; j < this.numAttributes; j++) {
+			this.nodeLowerBounds[offset + j] = Double.POSITIVE_INFINITY;
+			this.nodeUpperBounds[offset + j] = Double.NEGATIVE_INFINITY;
+		}
+		this.nodeMinCoreDistances[node] = Double.POSITIVE_INFINITY;
+		this.nodeMinIndices[node] = Integer.MAX_VALUE;
+
+		for (int i = start; i < end; i++) {
+			int point = this.pointIndices[i];
+			double[] attributes = this.dataSet[point];
+			for (int j = 0; j < this.numAttributes; j++) {
+				if (attributes[j] < this.nodeLowerBounds[offset + j])
+					this.nodeLowerBounds[offset + j] = attributes[j];
+				if (attributes[j] > this.nodeUpperBounds[offset + j])
+					this.nodeUpperBounds[offset + j] = attributes[j];
+			}
+			this.nodeMinCoreDistances[node] = Math.min(this.nodeMinCoreDistances[node], this.coreDistances[point]);
+			this.nodeMinIndices[node] = Math.min(this.nodeMinIndices[node], point);
+		}
+
+		if (end - start <= LEAF_SIZE)
+			return node;
+
+		//Split on the attribute with the largest spread:
+		int splitAttribute = -1;
+		double largestSpread = 0;
+		for (int j = 0; j < this.numAttributes; j++) {
+			double spread = this.nodeUpperBounds[offset + j] - this.nodeLowerBounds[offset + j];
+			if (spread > largestSpread) {
+				largestSpread = spread;
+				splitAttribute = j;
+			}
+		}
+
+		//All points in the node are identical, so it stays a leaf:
+		if (splitAttribute == -1)
+			return node;
+
+		int middle = (start + end) >>> 1;
+		selectMedian(start, end, middle, splitAttribute);
+
+		this.leftChild[node] = buildNode(start, middle);
+		this.rightChild[node] = buildNode(middle, end);
+		return node;
+	}
+
+
+	/**
+	 * Reorders positions [start, end) of pointIndices so that position middle holds the point that
+	 * would be there if the interval were sorted by the given attribute, with no larger values
+	 * before it and no smaller values after it.
+	 */
+	private void selectMedian(int start, int end, int middle, int attribute) {
+		int left = start;
+		int right = end - 1;
+
+		while (left < right) {
+			double pivot = this.dataSet[this.pointIndices[(left + right) >>> 1]][attribute];
+			int i = left;
+			int j = right;
+
+			while (i <= j) {
+				while (this.dataSet[this.pointIndices[i]][attribute] < pivot)
+					i++;
+				while (this.dataSet[this.pointIndices[j]][attribute] > pivot)
+					j--;
+				if (i <= j) {
+					int temp = this.pointIndices[i];
+					this.pointIndices[i] = this.pointIndices[j];
+					this.pointIndices[j] = temp;
+					i++;
+					j--;
+				}
+			}
+
+			if (middle <= j)
+				right = j;
+			else if (middle >= i)
+				left = i;
+			else
+				break;
+		}
+	}
+
+
+	/**
+	 * Roots a spanning tree at the last point and lays it out as HDBSCANStar.constructMST does: the
+	 * edge at index i joins point i to its parent, followed by the self edges if required.  Also used
+	 * for the trees extracted from a MutualReachabilityGraph.
+	 */
+	static UndirectedGraph toGraph(int numPoints, int[] firstVertices, int[] secondVertices, 
+			double[] weights, double[] coreDistances, boolean selfEdges) {
+
+		int selfEdgeCapacity = 0;
+		if (selfEdges)
+			selfEdgeCapacity = numPoints;
+
+		//Store the edges of each point contiguously:
+		int[] edgeStarts = new int[numPoints+1];
+		for (int edge = 0; edge < numPoints-1; edge++) {
+			edgeStarts[firstVertices[edge]+1]++;
+			edgeStarts[secondVertices[edge]+1]++;
+		}
+		for (int point = 0; point < numPoints; point++) {
+			edgeStarts[point+1]+= edgeStarts[point];
+		}
+		int[] positions = edgeStarts.clone();
+		int[] adjacentEdges = new int[2 * (numPoints-1)];
+		for (int edge = 0; edge < numPoints-1; edge++) {
+			adjacentEdges[positions[firstVertices[edge]]++] = edge;
+			adjacentEdges[positions[secondVertices[edge]]++] = edge;
+		}
+
+		int[] nearestMRDNeighbors = new int[numPoints-1 + selfEdgeCapacity];
+		int[] otherVertexIndices = new int[numPoints-1 + selfEdgeCapacity];
+		double[] nearestMRDDistances = new double[numPoints-1 + selfEdgeCapacity];
+
+		//Visit the tree from the last point, attaching each point to the point it was reached from:
+		boolean[] visited = new boolean[numPoints];
+		int[] stack = new int[numPoints];
+		int stackSize = 0;
+		stack[stackSize++] = numPoints-1;
+		visited[numPoints-1] = true;
+
+		while (stackSize > 0) {
+			int point = stack[--stackSize];
+
+			for (int i = edgeStarts[point]; i < edgeStarts[point+1]; i++) {
+				int edge = adjacentEdges[i];
+				int neighbor = (firstVertices[edge] == point) ? secondVertices[edge] : firstVertices[edge];
+				if (visited[neighbor])
+					continue;
+
+				visited[neighbor] = true;
+				nearestMRDNeighbors[neighbor] = point;
+				otherVertexIndices[neighbor] = neighbor;
+				nearestMRDDistances[neighbor] = weights[edge];
+				stack[stackSize++] = neighbor;
+			}
+		}
+
+		//If necessary, attach self edges:
+		if (selfEdges) {
+			for (int i = numPoints-1; i < numPoints*2-1; i++) {
+				int vertex = i - (numPoints-1);
+				nearestMRDNeighbors[i] = vertex;
+				otherVertexIndices[i] = vertex;
+				nearestMRDDistances[i] = coreDistances[vertex];
+			}
+		}
+
+		return new UndirectedGraph(numPoints, nearestMRDNeighbors, otherVertexIndices, nearestMRDDistances);
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
@@ -0,0 +1,189 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The components found when a cluster affected by the removal of the edges at a level of the
+ * hierarchy is explored: the components which become noise and the new child clusters, in the
+ * order in which computeHierarchyAndClusterTree finds them, followed by the first valid child cluster
+ * if the cluster split.  The affected clusters of a level are disjoint components of the minimum
+ * spanning tree, so they can be explored concurrently, as long as the results are applied in
+ * descending order of label, which keeps the labels of the new clusters the same as in a serial run.
+ */
+public class ClusterSplit {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int clusterLabel;
+	private ArrayList<TreeSet<Integer>> components;
+	private ArrayList<Boolean> noiseComponents;
+	private TreeSet<Integer> firstChildCluster;	//Fully explored, or null if the cluster did not split
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	private ClusterSplit(int clusterLabel) {
+		this.clusterLabel = clusterLabel;
+		this.components = new ArrayList<TreeSet<Integer>>();
+		this.noiseComponents = new ArrayList<Boolean>();
+		this.firstChildCluster = null;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Explores each affected cluster of a level from its affected vertices, as
+	 * computeHierarchyAndClusterTree does, after all edges of the level have been removed from the
+	 * edge lists.  The edge lists are only read, and each cluster's set of affected vertices is
+	 * emptied by its own exploration, so the clusters can be explored by several threads.
+	 * @param edgeLists The edge lists of the minimum spanning tree, without the edges of the current level
+	 * @param examinedClusterLabels The labels of the affected clusters, in descending order
+	 * @param examinedVertices The affected vertices of each affected cluster
+	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
+	 * @param pool A ForkJoinPool on which to explore the clusters, or null to explore them on the calling thread
+	 * @return The ClusterSplit of each affected cluster, in the order of examinedClusterLabels
+	 */
+	public static ClusterSplit[] exploreClusters(final EdgeListOverlay edgeLists, final ArrayList<Integer> examinedClusterLabels,
+			final ArrayList<TreeSet<Integer>> examinedVertices, final int minClusterSize, ForkJoinPool pool) {
+
+		final ClusterSplit[] splits = new ClusterSplit[examinedClusterLabels.size()];
+
+		if (pool == null || splits.length < 2) {
+			for (int i = 0; i < splits.length; i++) {
+				splits[i] = explore(edgeLists, examinedClusterLabels.get(i), examinedVertices.get(i), minClusterSize);
+			}
+			return splits;
+		}
+
+		ParallelExecution.forEachRange(splits.length, pool, new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				for (int i = start; i < end; i++) {
+					splits[i] = explore(edgeLists, examinedClusterLabels.get(i), examinedVertices.get(i), minClusterSize);
+				}
+			}
+		});
+
+		return splits;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Checks if a cluster has split or shrunk by exploring the graph from each affected vertex.  If
+	 * there are two or more valid child clusters (each has >= minClusterSize points), the cluster
+	 * has split.  Note that the first child cluster will only be fully explored if there is a
+	 * cluster split, otherwise, only spurious components are fully explored, in order to label them
+	 * noise.
+	 */
+	private static ClusterSplit explore(EdgeListOverlay edgeLists, int examinedClusterLabel, TreeSet<Integer> examinedVertices,
+			int minClusterSize) {
+
+		ClusterSplit split = new ClusterSplit(examinedClusterLabel);
+
+		TreeSet<Integer> firstChildCluster = null;
+		LinkedList<Integer> unexploredFirstChildClusterPoints = null;
+		int numChildClusters = 0;
+
+		while (!examinedVertices.isEmpty()) {
+			TreeSet<Integer> constructingSubCluster = new TreeSet<Integer>();
+			LinkedList<Integer> unexploredSubClusterPoints = new LinkedList<Integer>();
+			boolean anyEdges = false;
+			boolean incrementedChildCount = false;
+
+			int rootVertex = examinedVertices.last();
+			constructingSubCluster.add(rootVertex);
+			unexploredSubClusterPoints.add(rootVertex);
+			examinedVertices.remove(rootVertex);
+
+			//Explore this potential child cluster as long as there are unexplored points:
+			while (!unexploredSubClusterPoints.isEmpty()) {
+				int vertexToExplore = unexploredSubClusterPoints.poll();
+
+				for (int neighbor : edgeLists.getEdgeListForVertex(vertexToExplore)) {
+					anyEdges = true;
+					if (constructingSubCluster.add(neighbor)) {
+						unexploredSubClusterPoints.add(neighbor);
+						examinedVertices.remove(neighbor);
+					}
+				}
+
+				//Check if this potential child cluster is a valid cluster:
+				if (!incrementedChildCount && constructingSubCluster.size() >= minClusterSize && anyEdges) {
+					incrementedChildCount = true;
+					numChildClusters++;
+
+					//If this is the first valid child cluster, stop exploring it:
+					if (firstChildCluster == null) {
+						firstChildCluster = constructingSubCluster;
+						unexploredFirstChildClusterPoints = unexploredSubClusterPoints;
+						break;
+					}
+				}
+			}
+
+			//If there could be a split, and this child cluster is valid:
+			if (numChildClusters >= 2 && constructingSubCluster.size() >= minClusterSize && anyEdges) {
+
+				//Check this child cluster is not equal to the unexplored first child cluster:
+				int firstChildClusterMember = firstChildCluster.last();
+				if (constructingSubCluster.contains(firstChildClusterMember))
+					numChildClusters--;
+
+				//Otherwise, it is a new cluster:
+				else
+					split.addComponent(constructingSubCluster, false);
+			}
+
+			//If this child cluster is not valid cluster, it is noise:
+			else if (constructingSubCluster.size() < minClusterSize || !anyEdges)
+				split.addComponent(constructingSubCluster, true);
+		}
+
+		//Finish exploring the first child cluster if there was a split:
+		if (numChildClusters >= 2) {
+			while (!unexploredFirstChildClusterPoints.isEmpty()) {
+				int vertexToExplore = unexploredFirstChildClusterPoints.poll();
+
+				for (int neighbor : edgeLists.getEdgeListForVertex(vertexToExplore)) {
+					if (firstChildCluster.add(neighbor))
+						unexploredFirstChildClusterPoints.add(neighbor);
+				}
+			}
+			split.firstChildCluster = firstChildCluster;
+		}
+
+		return split;
+	}
+
+
+	private void addComponent(TreeSet<Integer> component, boolean noise) {
+		this.components.add(component);
+		this.noiseComponents.add(noise);
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getClusterLabel() {
+		return this.clusterLabel;
+	}
+
+	public int getNumComponents() {
+		return this.components.size();
+	}
+
+	public TreeSet<Integer> getComponent(int index) {
+		return this.components.get(index);
+	}
+
+	public boolean isNoiseComponent(int index) {
+		return this.noiseComponents.get(index);
+	}
+
+	public TreeSet<Integer> getFirstChildCluster() {
+		return this.firstChildCluster;
+	}
+}
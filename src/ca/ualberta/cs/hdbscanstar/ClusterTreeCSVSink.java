@@ -0,0 +1,96 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+
+/**
+ * Writes the cluster tree file once the hierarchy is finished, with one line per cluster: its
+ * label, birth level, death level, stability, constraint satisfaction (own and propagated), file
+ * offset and parent label.  It must come after the sink which sets the file offsets.
+ */
+public class ClusterTreeCSVSink implements HierarchySink {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private String treeOutputFile;
+	private String delimiter;
+	private ArrayList<Constraint> constraints;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int FILE_BUFFER_SIZE = 32678;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * @param treeOutputFile The path to the cluster tree output file
+	 * @param delimiter The delimiter to be used while writing the file
+	 * @param constraints An optional ArrayList of Constraints, used to write the constraint satisfaction of the clusters
+	 */
+	public ClusterTreeCSVSink(String treeOutputFile, String delimiter, ArrayList<Constraint> constraints) {
+		this.treeOutputFile = treeOutputFile;
+		this.delimiter = delimiter;
+		this.constraints = constraints;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public void pointBecameNoise(int point, double level, int lastClusterLabel) {
+	}
+
+
+	public void levelEmitted(double level, int[] labels) {
+	}
+
+
+	public void clusterBorn(Cluster cluster) {
+	}
+
+
+	/**
+	 * Writes the cluster tree file.
+	 */
+	public void hierarchyFinished(ArrayList<Cluster> clusters) throws IOException {
+		BufferedWriter treeWriter = new BufferedWriter(new OutputStreamWriter(new AsyncFileOutputStream(this.treeOutputFile)), FILE_BUFFER_SIZE);
+
+		try {
+			for (Cluster cluster : clusters) {
+				if (cluster == null)
+					continue;
+
+				treeWriter.write(cluster.getLabel() + this.delimiter);
+				treeWriter.write(cluster.getBirthLevel() + this.delimiter);
+				treeWriter.write(cluster.getDeathLevel() + this.delimiter);
+				treeWriter.write(cluster.getStability() + this.delimiter);
+
+				if (this.constraints != null) {
+					treeWriter.write((0.5 * cluster.getNumConstraintsSatisfied() / this.constraints.size()) + this.delimiter);
+					treeWriter.write((0.5 * cluster.getPropagatedNumConstraintsSatisfied() / this.constraints.size()) + this.delimiter);
+				}
+				else {
+					treeWriter.write(0 + this.delimiter);
+					treeWriter.write(0 + this.delimiter);
+				}
+
+				treeWriter.write(cluster.getFileOffset() + this.delimiter);
+
+				if (cluster.getParent() != null)
+					treeWriter.write(cluster.getParent().getLabel() + "\n");
+				else
+					treeWriter.write(0 + "\n");
+			}
+		}
+		finally {
+			treeWriter.close();
+		}
+	}
+
+
+	/**
+	 * Nothing to release: the file is only opened (and always closed) by hierarchyFinished.
+	 */
+	public void hierarchyAborted() {
+	}
+}
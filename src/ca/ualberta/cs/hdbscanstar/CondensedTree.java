@@ -0,0 +1,459 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import ca.ualberta.cs.hdbscanstar.Constraint.CONSTRAINT_TYPE;
+
+/**
+ * The condensed tree of an HDBSCAN* hierarchy, kept in parallel primitive arrays of rows
+ * (parent, child, level, childSize): each row tells that a child left its parent cluster at a level,
+ * where the child is either a point which became noise (children 0 to numPoints-1) or a new cluster
+ * (child numPoints+label).  Levels are MST edge weights, so the lambda value of a row is 1/level.
+ * The cluster tree (parents, birth and death levels and sizes of the clusters) and the noise level
+ * and last cluster of each point are derived from the rows, which only take O(n) memory instead of
+ * the O(n x levels) of the hierarchy, and are the only arrays written when the tree is serialized,
+ * together with the birth levels and stabilities of the clusters.
+ * Flat clusterings, outlier scores and constraint satisfaction are calculated directly on the
+ * arrays, giving the same results as propagateTree, findProminentClusters and
+ * calculateOutlierScores of HDBSCANStar on the equivalent cluster tree.
+ */
+public class CondensedTree implements java.io.Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int numPoints;
+
+	private int[] rowParents;
+	private int[] rowChildren;
+	private double[] rowLevels;
+	private int[] rowChildSizes;
+
+	//Indexed by label (label 0 is unused, and the root has label 1):
+	private double[] birthLevels;
+	private double[] stabilities;
+
+	//Derived from the rows:
+	private transient int[] clusterParents;
+	private transient boolean[] clusterHasChildren;
+	private transient double[] deathLevels;
+	private transient int[] clusterSizes;
+	private transient double[] pointNoiseLevels;
+	private transient int[] pointLastClusters;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates the condensed tree of a cluster tree, with a row for each cluster but the root followed
+	 * by a row for each point which became noise.
+	 * @param clusters A list of Clusters forming a cluster tree, as computed by computeHierarchyAndClusterTree
+	 * @param pointNoiseLevels The levels at which each point becomes noise
+	 * @param pointLastClusters The last label each point had before becoming noise
+	 */
+	public CondensedTree(ArrayList<Cluster> clusters, double[] pointNoiseLevels, int[] pointLastClusters) {
+		this.numPoints = pointNoiseLevels.length;
+		int numLabels = clusters.size();
+
+		this.birthLevels = new double[numLabels];
+		this.stabilities = new double[numLabels];
+		int[] parents = new int[numLabels];
+		for (int label = 1; label < numLabels; label++) {
+			Cluster cluster = clusters.get(label);
+			this.birthLevels[label] = cluster.getBirthLevel();
+			this.stabilities[label] = cluster.getStability();
+			if (cluster.getParent() != null)
+				parents[label] = cluster.getParent().getLabel();
+		}
+
+		//Count the points of each cluster, from the points which became noise in it and its children:
+		int[] sizes = new int[numLabels];
+		int numRows = Math.max(numLabels - 2, 0);
+		for (int point = 0; point < this.numPoints; point++) {
+			if (pointLastClusters[point] != 0) {
+				sizes[pointLastClusters[point]]++;
+				numRows++;
+			}
+		}
+		for (int label = numLabels-1; label >= 2; label--) {
+			sizes[parents[label]]+= sizes[label];
+		}
+
+		this.rowParents = new int[numRows];
+		this.rowChildren = new int[numRows];
+		this.rowLevels = new double[numRows];
+		this.rowChildSizes = new int[numRows];
+		int row = 0;
+
+		for (int label = 2; label < numLabels; label++) {
+			this.rowParents[row] = parents[label];
+			this.rowChildren[row] = this.numPoints + label;
+			this.rowLevels[row] = this.birthLevels[label];
+			this.rowChildSizes[row] = sizes[label];
+			row++;
+		}
+		for (int point = 0; point < this.numPoints; point++) {
+			if (pointLastClusters[point] != 0) {
+				this.rowParents[row] = pointLastClusters[point];
+				this.rowChildren[row] = point;
+				this.rowLevels[row] = pointNoiseLevels[point];
+				this.rowChildSizes[row] = 1;
+				row++;
+			}
+		}
+
+		this.deriveClusterTree();
+	}
+
+
+	/**
+	 * Creates a condensed tree from its rows, in the order in which the points and clusters left
+	 * their parents.
+	 * @param numPoints The number of points in the data set
+	 * @param rowParents The parent cluster of each row
+	 * @param rowChildren The child of each row: a point, or numPoints plus the label of a cluster
+	 * @param rowLevels The level at which the child of each row left its parent
+	 * @param rowChildSizes The number of points of the child of each row
+	 * @param birthLevels The birth level of each cluster, by label
+	 * @param stabilities The stability of each cluster, by label
+	 */
+	CondensedTree(int numPoints, int[] rowParents, int[] rowChildren, double[] rowLevels, int[] rowChildSizes,
+			double[] birthLevels, double[] stabilities) {
+
+		this.numPoints = numPoints;
+		this.rowParents = rowParents;
+		this.rowChildren = rowChildren;
+		this.rowLevels = rowLevels;
+		this.rowChildSizes = rowChildSizes;
+		this.birthLevels = birthLevels;
+		this.stabilities = stabilities;
+
+		this.deriveClusterTree();
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Calculates the number of constraints satisfied by each cluster and by the virtual child of each
+	 * cluster (its points which became noise), as calculateNumConstraintsSatisfied of HDBSCANStar does
+	 * for the root and after each level of the hierarchy at which new clusters appear.  The labels of
+	 * the points at each of those levels are found from the arrays instead of the hierarchy.
+	 * @param constraints An ArrayList of Constraints, which may be null
+	 * @param numConstraintsSatisfied An int[] indexed by label to which the constraints satisfied by each cluster are added
+	 * @param virtualChildConstraintsSatisfied An int[] indexed by label to which the constraints satisfied by each virtual child are added
+	 */
+	public void calculateNumConstraintsSatisfied(ArrayList<Constraint> constraints, int[] numConstraintsSatisfied,
+			int[] virtualChildConstraintsSatisfied) {
+
+		if (constraints == null)
+			return;
+
+		//All points have label 1 when the root is examined:
+		for (Constraint constraint : constraints) {
+			if (constraint.getType() == CONSTRAINT_TYPE.MUST_LINK)
+				numConstraintsSatisfied[1]+= 2;
+		}
+
+		//The clusters which appear at the same level have consecutive labels:
+		int numLabels = this.birthLevels.length;
+		int[] parentStamps = new int[numLabels];
+		int firstLabel = 2;
+
+		while (firstLabel < numLabels) {
+			double level = this.birthLevels[firstLabel];
+			int lastLabel = firstLabel;
+			while (lastLabel+1 < numLabels && this.birthLevels[lastLabel+1] == level)
+				lastLabel++;
+
+			for (int label = firstLabel; label <= lastLabel; label++) {
+				parentStamps[this.clusterParents[label]] = firstLabel;
+			}
+
+			for (Constraint constraint : constraints) {
+				int labelA = this.getClusterLabel(constraint.getPointA(), level);
+				int labelB = this.getClusterLabel(constraint.getPointB(), level);
+				boolean newA = (labelA >= firstLabel && labelA <= lastLabel);
+				boolean newB = (labelB >= firstLabel && labelB <= lastLabel);
+
+				if (constraint.getType() == CONSTRAINT_TYPE.MUST_LINK && labelA == labelB) {
+					if (newA)
+						numConstraintsSatisfied[labelA]+= 2;
+				}
+
+				else if (constraint.getType() == CONSTRAINT_TYPE.CANNOT_LINK && (labelA != labelB || labelA == 0)) {
+					if (newA)
+						numConstraintsSatisfied[labelA]++;
+					if (newB)
+						numConstraintsSatisfied[labelB]++;
+
+					//A noise point is in the virtual child of its last cluster:
+					int parentA = this.pointLastClusters[constraint.getPointA()];
+					if (labelA == 0 && parentA != 0 && parentStamps[parentA] == firstLabel)
+						virtualChildConstraintsSatisfied[parentA]++;
+
+					int parentB = this.pointLastClusters[constraint.getPointB()];
+					if (labelB == 0 && parentB != 0 && parentStamps[parentB] == firstLabel)
+						virtualChildConstraintsSatisfied[parentB]++;
+				}
+			}
+
+			firstLabel = lastLabel+1;
+		}
+	}
+
+
+	/**
+	 * Produces a flat clustering result using constraint satisfaction and cluster stability, choosing
+	 * the same clusters as propagateTree and findProminentClusters of HDBSCANStar.  Each point is
+	 * labelled with the chosen cluster it belonged to, or 0 if it was noise in all of them.
+	 * @param rootTree The label of the cluster whose subtree is searched for the solution (1 for the whole tree)
+	 * @param constraints An optional ArrayList of Constraints
+	 * @return An array of labels for the flat clustering result
+	 */
+	public int[] findProminentClusters(int rootTree, ArrayList<Constraint> constraints) {
+		int numLabels = this.birthLevels.length;
+		int[] numConstraintsSatisfied = new int[numLabels];
+		int[] propagatedNumConstraintsSatisfied = new int[numLabels];
+		this.calculateNumConstraintsSatisfied(constraints, numConstraintsSatisfied, propagatedNumConstraintsSatisfied);
+
+		//Decide, from the leaves up, if each cluster propagates itself or its propagated descendants:
+		double[] propagatedStabilities = new double[numLabels];
+		boolean[] propagatesItself = new boolean[numLabels];
+
+		for (int label = numLabels-1; label >= 2; label--) {
+			int parent = this.clusterParents[label];
+
+			propagatesItself[label] = !this.clusterHasChildren[label]
+					|| numConstraintsSatisfied[label] > propagatedNumConstraintsSatisfied[label]
+					|| (numConstraintsSatisfied[label] == propagatedNumConstraintsSatisfied[label]
+						&& this.stabilities[label] >= propagatedStabilities[label]);
+
+			if (propagatesItself[label]) {
+				propagatedNumConstraintsSatisfied[parent]+= numConstraintsSatisfied[label];
+				propagatedStabilities[parent]+= this.stabilities[label];
+			}
+			else {
+				propagatedNumConstraintsSatisfied[parent]+= propagatedNumConstraintsSatisfied[label];
+				propagatedStabilities[parent]+= propagatedStabilities[label];
+			}
+		}
+
+		//Find the propagated descendants of rootTree, and the one each cluster belongs to (parents have lower labels):
+		boolean[] propagatedToRoot = new boolean[numLabels];
+		int[] solutionClusters = new int[numLabels];
+
+		for (int label = 2; label < numLabels; label++) {
+			int parent = this.clusterParents[label];
+			propagatedToRoot[label] = (parent == rootTree) || (propagatedToRoot[parent] && !propagatesItself[parent]);
+
+			if (propagatedToRoot[label] && propagatesItself[label])
+				solutionClusters[label] = label;
+			else
+				solutionClusters[label] = solutionClusters[parent];
+		}
+
+		int[] flatPartitioning = new int[this.numPoints];
+		for (int point = 0; point < this.numPoints; point++) {
+			flatPartitioning[point] = solutionClusters[this.pointLastClusters[point]];
+		}
+
+		return flatPartitioning;
+	}
+
+
+	/**
+	 * Calculates the GLOSH outlier score of each point, as calculateOutlierScores of HDBSCANStar does
+	 * after propagateTree: one minus the ratio between the lowest death level of any descendant of the
+	 * point's last cluster (or of that cluster itself) and the level at which the point became noise.
+	 * @return The outlier score of each point, by point
+	 */
+	public double[] calculateOutlierScores() {
+		int numLabels = this.birthLevels.length;
+		double[] propagatedLowestChildDeathLevels = new double[numLabels];
+		Arrays.fill(propagatedLowestChildDeathLevels, Double.MAX_VALUE);
+
+		for (int label = numLabels-1; label >= 2; label--) {
+			if (propagatedLowestChildDeathLevels[label] == Double.MAX_VALUE)
+				propagatedLowestChildDeathLevels[label] = this.deathLevels[label];
+
+			int parent = this.clusterParents[label];
+			if (propagatedLowestChildDeathLevels[label] < propagatedLowestChildDeathLevels[parent])
+				propagatedLowestChildDeathLevels[parent] = propagatedLowestChildDeathLevels[label];
+		}
+
+		double[] outlierScores = new double[this.numPoints];
+		for (int point = 0; point < this.numPoints; point++) {
+			double epsilon_max = propagatedLowestChildDeathLevels[this.pointLastClusters[point]];
+			double epsilon = this.pointNoiseLevels[point];
+
+			if (epsilon != 0)
+				outlierScores[point] = 1-(epsilon_max/epsilon);
+		}
+
+		return outlierScores;
+	}
+
+
+	/**
+	 * Finds the label of a point in the hierarchy once the edges with the given weight have been
+	 * removed: 0 if the point has become noise, and otherwise the deepest cluster it belonged to
+	 * which had appeared at that level.
+	 * @param point The index of the point
+	 * @param level An MST edge level
+	 * @return The label of the point at that level
+	 */
+	public int getClusterLabel(int point, double level) {
+		int label = this.pointLastClusters[point];
+		if (label == 0)
+			return 1;
+		if (this.pointNoiseLevels[point] >= level)
+			return 0;
+
+		while (this.clusterParents[label] != 0 && this.birthLevels[label] < level) {
+			label = this.clusterParents[label];
+		}
+		return label;
+	}
+
+
+	/**
+	 * Checks if any cluster has infinite stability, as propagateTree of HDBSCANStar does.
+	 * @return true if there are any clusters with infinite stability, false otherwise
+	 */
+	public boolean hasInfiniteStability() {
+		for (int label = 1; label < this.stabilities.length; label++) {
+			if (this.stabilities[label] == Double.POSITIVE_INFINITY)
+				return true;
+		}
+		return false;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Derives the parents, death levels and sizes of the clusters, and the noise levels and last
+	 * clusters of the points, from the rows.  A cluster dies at the lowest level of its rows.
+	 */
+	private void deriveClusterTree() {
+		int numLabels = this.birthLevels.length;
+		this.clusterParents = new int[numLabels];
+		this.clusterHasChildren = new boolean[numLabels];
+		this.deathLevels = new double[numLabels];
+		this.clusterSizes = new int[numLabels];
+		this.pointNoiseLevels = new double[this.numPoints];
+		this.pointLastClusters = new int[this.numPoints];
+
+		for (int row = 0; row < this.rowParents.length; row++) {
+			int parent = this.rowParents[row];
+			int child = this.rowChildren[row];
+			double level = this.rowLevels[row];
+
+			if (this.clusterSizes[parent] == 0 || level < this.deathLevels[parent])
+				this.deathLevels[parent] = level;
+			this.clusterSizes[parent]+= this.rowChildSizes[row];
+
+			if (child >= this.numPoints) {
+				this.clusterParents[child - this.numPoints] = parent;
+				this.clusterHasChildren[parent] = true;
+			}
+			else {
+				this.pointNoiseLevels[child] = level;
+				this.pointLastClusters[child] = parent;
+			}
+		}
+
+		//Only the root can have points which never became noise:
+		if (numLabels > 1) {
+			int numNoisePoints = 0;
+			for (int point = 0; point < this.numPoints; point++) {
+				if (this.pointLastClusters[point] != 0)
+					numNoisePoints++;
+			}
+			this.clusterSizes[1]+= this.numPoints - numNoisePoints;
+		}
+	}
+
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.deriveClusterTree();
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.numPoints;
+	}
+
+	public int getNumRows() {
+		return this.rowParents.length;
+	}
+
+	public int getRowParent(int row) {
+		return this.rowParents[row];
+	}
+
+	public int getRowChild(int row) {
+		return this.rowChildren[row];
+	}
+
+	public double getRowLevel(int row) {
+		return this.rowLevels[row];
+	}
+
+	public double getRowLambda(int row) {
+		return 1/this.rowLevels[row];
+	}
+
+	public int getRowChildSize(int row) {
+		return this.rowChildSizes[row];
+	}
+
+	public boolean isClusterRow(int row) {
+		return this.rowChildren[row] >= this.numPoints;
+	}
+
+	/**
+	 * @return The number of clusters, which have labels 1 to getNumClusters()
+	 */
+	public int getNumClusters() {
+		return this.birthLevels.length - 1;
+	}
+
+	public int getClusterParent(int label) {
+		return this.clusterParents[label];
+	}
+
+	public boolean clusterHasChildren(int label) {
+		return this.clusterHasChildren[label];
+	}
+
+	public double getBirthLevel(int label) {
+		return this.birthLevels[label];
+	}
+
+	public double getDeathLevel(int label) {
+		return this.deathLevels[label];
+	}
+
+	public double getStability(int label) {
+		return this.stabilities[label];
+	}
+
+	public int getClusterSize(int label) {
+		return this.clusterSizes[label];
+	}
+
+	public double getPointNoiseLevel(int point) {
+		return this.pointNoiseLevels[point];
+	}
+
+	public int getPointLastCluster(int point) {
+		return this.pointLastClusters[point];
+	}
+}
@@ -0,0 +1,141 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import ca.ualberta.cs.neighbors.NeighborSearch;
+
+/**
+ * The sorted distances from every point of a data set to its nearest neighbors, for a maximum value
+ * of minPts.  The table is filled with a single k nearest neighbor pass, after which the core
+ * distances for any minPts up to the maximum are read from it without computing any distance.
+ * The values read are identical to those returned by HDBSCANStar.calculateCoreDistances.
+ */
+public class CoreDistanceTable {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int numPoints;
+	private int maxMinPts;
+	private int numNeighbors;	//Columns of the table, maxMinPts-1 since a point is not its own neighbor
+	private double[] distances;	//Index [point*numNeighbors + i] is the distance to the (i+1)th nearest neighbor of point
+	private int[] neighbors;	//Index [point*numNeighbors + i] is the (i+1)th nearest neighbor of point, or -1
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Builds the table by searching the maxMinPts-1 nearest neighbors of every point.  Missing
+	 * neighbors (when a point has fewer candidates) are stored with a distance of Double.MAX_VALUE.
+	 * @param neighborSearch A NeighborSearch over the data set
+	 * @param maxMinPts The largest value of minPts that core distances will be read for
+	 */
+	public CoreDistanceTable(NeighborSearch neighborSearch, int maxMinPts) {
+		this(neighborSearch, maxMinPts, 1);
+	}
+
+
+	/**
+	 * Builds the table, searching the neighbors of different points in parallel.
+	 * @param neighborSearch A NeighborSearch over the data set
+	 * @param maxMinPts The largest value of minPts that core distances will be read for
+	 * @param numThreads The number of threads to use
+	 */
+	public CoreDistanceTable(final NeighborSearch neighborSearch, int maxMinPts, int numThreads) {
+		this.numPoints = neighborSearch.getNumPoints();
+		this.maxMinPts = maxMinPts;
+		this.numNeighbors = Math.max(maxMinPts - 1, 0);
+		this.distances = new double[this.numPoints * this.numNeighbors];
+		this.neighbors = new int[this.numPoints * this.numNeighbors];
+
+		if (this.numNeighbors == 0)
+			return;
+
+		ParallelExecution.forEachRange(this.numPoints, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				fillRows(neighborSearch, start, end);
+			}
+		});
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Reads the core distances of every point for some value of minPts.
+	 * @param minPts Each point's core distance will be it's distance to the minPts-th nearest neighbor
+	 * (counting the point itself), with 1 <= minPts <= getMaxMinPts()
+	 * @return An array of core distances
+	 */
+	public double[] getCoreDistances(int minPts) {
+		if (minPts < 1 || minPts > this.maxMinPts)
+			throw new IllegalArgumentException("minPts must be between 1 and " + this.maxMinPts + ": " + minPts);
+
+		double[] coreDistances = new double[this.numPoints];
+
+		if (minPts == 1)
+			return coreDistances;
+
+		for (int point = 0; point < this.numPoints; point++) {
+			coreDistances[point] = this.distances[point * this.numNeighbors + minPts - 2];
+		}
+
+		return coreDistances;
+	}
+
+
+	/**
+	 * Returns the distance from a point to one of its nearest neighbors.
+	 * @param point The index of the point
+	 * @param rank The rank of the neighbor, from 0 (nearest) to getMaxMinPts()-2
+	 * @return The distance, or Double.MAX_VALUE if the point has no neighbor of that rank
+	 */
+	public double getNeighborDistance(int point, int rank) {
+		return this.distances[point * this.numNeighbors + rank];
+	}
+
+
+	/**
+	 * Returns one of the nearest neighbors of a point.
+	 * @param point The index of the point
+	 * @param rank The rank of the neighbor, from 0 (nearest) to getMaxMinPts()-2
+	 * @return The index of the neighbor, or -1 if the point has no neighbor of that rank
+	 */
+	public int getNeighbor(int point, int rank) {
+		return this.neighbors[point * this.numNeighbors + rank];
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Searches the neighbors of the points in [start, end) and stores them in their rows of the table.
+	 */
+	private void fillRows(NeighborSearch neighborSearch, int start, int end) {
+		int[] kNNIndices = new int[this.numNeighbors];
+		double[] kNNDistances = new double[this.numNeighbors];
+
+		for (int point = start; point < end; point++) {
+			int numFound = neighborSearch.kNearestNeighbors(point, this.numNeighbors, kNNIndices, kNNDistances);
+			int offset = point * this.numNeighbors;
+
+			for (int i = 0; i < this.numNeighbors; i++) {
+				if (i < numFound) {
+					this.distances[offset + i] = kNNDistances[i];
+					this.neighbors[offset + i] = kNNIndices[i];
+				}
+				else {
+					this.distances[offset + i] = Double.MAX_VALUE;
+					this.neighbors[offset + i] = -1;
+				}
+			}
+		}
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.numPoints;
+	}
+
+
+	public int getMaxMinPts() {
+		return this.maxMinPts;
+	}
+}
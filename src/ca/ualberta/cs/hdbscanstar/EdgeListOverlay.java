@@ -0,0 +1,68 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.ArrayList;
+
+/**
+ * Edge lists over an UndirectedGraph from which edges can be removed without modifying the graph,
+ * as the hierarchy construction does while it removes the edges of the minimum spanning tree level
+ * by level.  The edge list of a vertex is copied from the graph when it is first requested, so only
+ * the vertices which are touched take memory, and any number of overlays (on any number of threads)
+ * can share one graph.  An overlay itself may be read by several threads as long as each vertex is
+ * only used by one of them.
+ */
+public class EdgeListOverlay {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private UndirectedGraph graph;
+	private ArrayList<ArrayList<Integer>> edgeLists;		//Each edge list is null until it is first requested
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates an overlay with all the edges of a graph.
+	 * @param graph The graph, which is never modified
+	 */
+	public EdgeListOverlay(UndirectedGraph graph) {
+		this.graph = graph;
+		this.edgeLists = new ArrayList<ArrayList<Integer>>(graph.getNumVertices());
+		for (int i = 0; i < graph.getNumVertices(); i++) {
+			this.edgeLists.add(null);
+		}
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Removes an edge from the edge lists of both of its vertices (once from a vertex with a self edge).
+	 * @param vertexOne One vertex of the edge
+	 * @param vertexTwo The other vertex of the edge
+	 */
+	public void removeEdge(int vertexOne, int vertexTwo) {
+		this.getEdgeListForVertex(vertexOne).remove((Integer)vertexTwo);
+		this.getEdgeListForVertex(vertexTwo).remove((Integer)vertexOne);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public UndirectedGraph getGraph() {
+		return this.graph;
+	}
+
+	/**
+	 * Returns the edges of a vertex which have not been removed.
+	 */
+	public ArrayList<Integer> getEdgeListForVertex(int vertex) {
+		ArrayList<Integer> edgeList = this.edgeLists.get(vertex);
+		if (edgeList == null) {
+			edgeList = this.graph.getEdgeListForVertex(vertex);
+			this.edgeLists.set(vertex, edgeList);
+		}
+
+		return edgeList;
+	}
+}
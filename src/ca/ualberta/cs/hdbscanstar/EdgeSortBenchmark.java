@@ -0,0 +1,85 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.Random;
+
+/**
+ * Compares UndirectedGraph.quicksortByEdgeWeight() with UndirectedGraph.sortByEdgeWeight(int) on 
+ * random graphs whose weights have many ties, and checks that both give the same weights and that 
+ * the radix sort keeps tied edges in their original order.
+ * Usage: EdgeSortBenchmark [numEdges] [numThreads] [numRepetitions]
+ */
+public class EdgeSortBenchmark {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int DEFAULT_NUM_EDGES = 1000000;
+	private static final int DEFAULT_NUM_REPETITIONS = 5;
+
+	//Weights are rounded to this many distinct values, so that ties are common as in real MSTs:
+	private static final int NUM_DISTINCT_WEIGHTS = 10000;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public static void main(String[] args) {
+		int numEdges = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUM_EDGES;
+		int numThreads = (args.length > 1) ? Integer.parseInt(args[1]) : ParallelExecution.DEFAULT_NUM_THREADS;
+		int numRepetitions = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_NUM_REPETITIONS;
+
+		System.out.println("Sorting " + numEdges + " edges, radix sort with " + numThreads + " thread(s):");
+		Random random = new Random(1);
+
+		for (int repetition = 0; repetition < numRepetitions; repetition++) {
+			double[] weights = new double[numEdges];
+			for (int i = 0; i < numEdges; i++) {
+				weights[i] = random.nextInt(NUM_DISTINCT_WEIGHTS) / (double)NUM_DISTINCT_WEIGHTS;
+			}
+
+			UndirectedGraph quicksorted = createPath(weights);
+			UndirectedGraph radixSorted = createPath(weights);
+
+			long startTime = System.nanoTime();
+			quicksorted.quicksortByEdgeWeight();
+			long quicksortTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			radixSorted.sortByEdgeWeight(numThreads);
+			long radixSortTime = System.nanoTime() - startTime;
+
+			boolean sameWeights = true;
+			boolean stable = true;
+			for (int i = 0; i < numEdges; i++) {
+				if (quicksorted.getEdgeWeightAtIndex(i) != radixSorted.getEdgeWeightAtIndex(i))
+					sameWeights = false;
+				if (i > 0 && radixSorted.getEdgeWeightAtIndex(i) == radixSorted.getEdgeWeightAtIndex(i-1) && 
+						radixSorted.getFirstVertexAtIndex(i) < radixSorted.getFirstVertexAtIndex(i-1))
+					stable = false;
+			}
+
+			System.out.println("Quicksort (ms): " + quicksortTime / 1000000 + ", radix sort (ms): " + radixSortTime / 1000000 + 
+					", same weights: " + sameWeights + ", stable: " + stable);
+		}
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Creates a path whose ith edge joins vertices i and i+1, so that the first vertex of each edge
+	 * is its original index.
+	 */
+	private static UndirectedGraph createPath(double[] weights) {
+		int[] verticesA = new int[weights.length];
+		int[] verticesB = new int[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			verticesA[i] = i;
+			verticesB[i] = i+1;
+		}
+		return new UndirectedGraph(weights.length+1, verticesA, verticesB, weights.clone());
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
@@ -12,9 +12,12 @@ import ca.ualberta.cs.distance.CosineSimilarity;
 import ca.ualberta.cs.distance.DistanceCalculator;
 import ca.ualberta.cs.distance.EuclideanDistance;
 import ca.ualberta.cs.distance.ManhattanDistance;
+import ca.ualberta.cs.distance.NormalizedDotProduct;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
 import ca.ualberta.cs.distance.PearsonCorrelation;
 import ca.ualberta.cs.distance.SupremumDistance;
 import ca.ualberta.cs.distance.TanimotoSimilarity;
+import ca.ualberta.cs.neighbors.NNDescentSearch;
 
 import static ca.ualberta.cs.hdbscanstar.HDBSCANStar.WARNING_MESSAGE;
 
@@ -31,12 +34,25 @@ public class HDBSCANStarRunner {
 	private static final String COMPACT_FLAG = "compact=";
 	private static final String DISTANCE_FUNCTION_FLAG = "dist_function=";
 	private static final String OUT_TYPE_FLAG = "outputExtension=";
+	private static final String THREADS_FLAG = "threads=";
+	private static final String APPROXIMATE_FLAG = "approximate=";
+	private static final String MST_FLAG = "mst=";
+	private static final String HIERARCHY_FORMAT_FLAG = "hierarchy_format=";
+
+	private static final int MIN_APPROXIMATE_GRAPH_SIZE = 16;
+	private static final int RECALL_SAMPLE_SIZE = 100;
 
 	protected static final String SHM_OUT = "shm";
 	protected static final String VIS_OUT = "vis";
 	protected static final String DEFAULT_OUT = "default";	//See checkInputParameters method for the default value
 	protected static final String BOTH_OUT = "both";
 
+	private static final String PRIM_MST = "prim";
+	private static final String BORUVKA_MST = "boruvka";
+
+	private static final String CSV_HIERARCHY = "csv";
+	private static final String BINARY_HIERARCHY = "binary";
+
 	private static final String EUCLIDEAN_DISTANCE = "euclidean";
 	private static final String COSINE_SIMILARITY = "cosine";
 	private static final String PEARSON_CORRELATION = "pearson";
@@ -73,7 +89,9 @@ public class HDBSCANStarRunner {
 		System.out.println("Running HDBSCAN* on " + parameters.inputFile + " with minPts=" + parameters.minPoints + 
 				", minClSize=" + parameters.minClusterSize + ", constraints=" + parameters.constraintsFile + 
 				", compact=" + parameters.compactHierarchy + ", dist_function=" + parameters.distanceFunction.getName() +
-				", outputExtension="+ parameters.outType);
+				", outputExtension="+ parameters.outType + ", threads=" + parameters.numThreads + 
+				", approximate=" + parameters.approximateSampleRate + ", mst=" + parameters.mstAlgorithm + 
+				", hierarchy_format=" + parameters.hierarchyFormat);
 
 		//Read in input file:
 		double[][] dataSet = null;
@@ -98,16 +116,50 @@ public class HDBSCANStarRunner {
 			}
 		}
 
+		//Binary fingerprints are packed into words, which gives the same tanimoto distances:
+		if (PackedTanimotoSimilarity.canPack(dataSet, parameters.distanceFunction)) {
+			parameters.distanceFunction = new PackedTanimotoSimilarity(dataSet[0].length);
+			dataSet = PackedTanimotoSimilarity.pack(dataSet);
+			System.out.println("Packed binary fingerprints into " + (dataSet[0].length-1) + " words per point.");
+		}
+
+		//Normalize the points for cosine and pearson:
+		else if (NormalizedDotProduct.canNormalize(dataSet, parameters.distanceFunction)) {
+			dataSet = NormalizedDotProduct.normalize(dataSet, parameters.distanceFunction);
+			parameters.distanceFunction = new NormalizedDotProduct(parameters.distanceFunction.getName());
+		}
+
 		//Compute core distances:
 		long startTime = System.currentTimeMillis();
-		double[] coreDistances = HDBSCANStar.calculateCoreDistances(dataSet, parameters.minPoints, parameters.distanceFunction);
-		System.out.println("Time to compute core distances (ms): " + (System.currentTimeMillis() - startTime));
+		double[] coreDistances = null;
+		if (parameters.approximateSampleRate == null) {
+			coreDistances = HDBSCANStar.calculateCoreDistances(dataSet, parameters.minPoints, parameters.distanceFunction, 
+					parameters.numThreads);
+			System.out.println("Time to compute core distances (ms): " + (System.currentTimeMillis() - startTime));
+		}
+		else {
+			NNDescentSearch search = new NNDescentSearch(dataSet, parameters.distanceFunction, 
+					Math.max(parameters.minPoints - 1, MIN_APPROXIMATE_GRAPH_SIZE), parameters.approximateSampleRate, 
+					NNDescentSearch.DEFAULT_MAX_ITERATIONS, NNDescentSearch.DEFAULT_TERMINATION_RATE, NNDescentSearch.DEFAULT_SEED);
+			coreDistances = HDBSCANStar.calculateCoreDistances(search, parameters.minPoints, parameters.numThreads);
+			System.out.println("Time to compute approximate core distances (ms): " + (System.currentTimeMillis() - startTime));
+
+			if (parameters.minPoints > 1)
+				System.out.println("Estimated recall of the approximate neighbors (" + RECALL_SAMPLE_SIZE + " points): " + 
+						search.estimateRecall(parameters.minPoints - 1, RECALL_SAMPLE_SIZE));
+		}
 
 		//Calculate minimum spanning tree:
 		startTime = System.currentTimeMillis();
-		UndirectedGraph mst = HDBSCANStar.constructMST(dataSet, coreDistances, true, parameters.distanceFunction);
+		UndirectedGraph mst = null;
+		if (parameters.mstAlgorithm.equals(BORUVKA_MST))
+			mst = HDBSCANStar.constructBoruvkaMST(dataSet, coreDistances, true, parameters.distanceFunction, 
+					parameters.numThreads);
+		else
+			mst = HDBSCANStar.constructMST(dataSet, coreDistances, true, parameters.distanceFunction, 
+					parameters.numThreads);
 		//		System.out.println(mst.toString());
-		mst.quicksortByEdgeWeight();
+		mst.sortByEdgeWeight(parameters.numThreads);
 		System.out.println("Time to calculate MST (ms): " + (System.currentTimeMillis() - startTime));
 
 		//generating mst file (or updating structure) before freeing the mst data.
@@ -149,7 +201,8 @@ public class HDBSCANStarRunner {
 
 			clusters = HDBSCANStar.computeHierarchyAndClusterTree(mst, parameters.minClusterSize,
 					parameters.compactHierarchy, constraints, parameters.hierarchyFile, 
-					parameters.clusterTreeFile, ",", pointNoiseLevels, pointLastClusters, parameters.outType ,HMatrix, lineCount);
+					parameters.clusterTreeFile, ",", pointNoiseLevels, pointLastClusters, parameters.outType ,HMatrix, lineCount, 
+					parameters.numThreads);
 
 			for(int i=0; i < coreDistances.length; i++)
 			{
@@ -325,6 +378,9 @@ public class HDBSCANStarRunner {
 
 		parameters.compactHierarchy = false;
 		parameters.outType = BOTH_OUT;	//default operation if NO flag was given.
+		parameters.numThreads = ParallelExecution.DEFAULT_NUM_THREADS;
+		parameters.mstAlgorithm = PRIM_MST;
+		parameters.hierarchyFormat = CSV_HIERARCHY;
 
 		//Read in the input arguments and assign them to variables:
 		for (String argument : args) {
@@ -404,6 +460,48 @@ public class HDBSCANStarRunner {
 					parameters.distanceFunction = null;
 
 			}
+			//Assign number of threads:
+			else if (argument.startsWith(THREADS_FLAG) && argument.length() > THREADS_FLAG.length()) {
+				try {
+					parameters.numThreads = Integer.parseInt(argument.substring(THREADS_FLAG.length()));
+				}
+				catch (NumberFormatException nfe) {
+					System.out.println("Illegal value for threads.");
+				}
+			}
+
+			//Assign sample rate of the approximate neighbor search:
+			else if (argument.startsWith(APPROXIMATE_FLAG) && argument.length() > APPROXIMATE_FLAG.length()) {
+				try {
+					double sampleRate = Double.parseDouble(argument.substring(APPROXIMATE_FLAG.length()));
+					if (sampleRate > 0 && sampleRate <= 1)
+						parameters.approximateSampleRate = sampleRate;
+					else
+						System.out.println("Illegal value for approximate.");
+				}
+				catch (NumberFormatException nfe) {
+					System.out.println("Illegal value for approximate.");
+				}
+			}
+
+			//Assign the algorithm which constructs the minimum spanning tree:
+			else if (argument.startsWith(MST_FLAG) && argument.length() > MST_FLAG.length()) {
+				String mstAlgorithm = argument.substring(MST_FLAG.length());
+				if (mstAlgorithm.equals(PRIM_MST) || mstAlgorithm.equals(BORUVKA_MST))
+					parameters.mstAlgorithm = mstAlgorithm;
+				else
+					System.out.println("Illegal value for mst.");
+			}
+
+			//Assign the format of the hierarchy file:
+			else if (argument.startsWith(HIERARCHY_FORMAT_FLAG) && argument.length() > HIERARCHY_FORMAT_FLAG.length()) {
+				String hierarchyFormat = argument.substring(HIERARCHY_FORMAT_FLAG.length());
+				if (hierarchyFormat.equals(CSV_HIERARCHY) || hierarchyFormat.equals(BINARY_HIERARCHY))
+					parameters.hierarchyFormat = hierarchyFormat;
+				else
+					System.out.println("Illegal value for hierarchy_format.");
+			}
+
 			//Assign output type file:
 			else if (argument.startsWith(OUT_TYPE_FLAG) && argument.length() > OUT_TYPE_FLAG.length())
 			{		
@@ -450,10 +548,14 @@ public class HDBSCANStarRunner {
 		if (parameters.inputFile.contains("."))
 			inputName = parameters.inputFile.substring(0, parameters.inputFile.lastIndexOf("."));
 
+		String hierarchyExtension = ".csv";
+		if (parameters.hierarchyFormat.equals(BINARY_HIERARCHY))
+			hierarchyExtension = BinaryHierarchyWriter.BINARY_HIERARCHY_EXTENSION;
+
 		if (parameters.compactHierarchy)
-			parameters.hierarchyFile = inputName + "_compact_hierarchy.csv";
+			parameters.hierarchyFile = inputName + "_compact_hierarchy" + hierarchyExtension;
 		else
-			parameters.hierarchyFile = inputName + "_hierarchy.csv";
+			parameters.hierarchyFile = inputName + "_hierarchy" + hierarchyExtension;
 		parameters.clusterTreeFile = inputName + "_tree.csv";
 		parameters.partitionFile = inputName + "_partition.csv";
 		parameters.outlierScoreFile = inputName + "_outlier_scores.csv";
@@ -477,7 +579,8 @@ public class HDBSCANStarRunner {
 		System.out.println("Usage: java -jar HDBSCANStar.jar file=<input file> minPts=<minPts value> " + 
 				"minClSize=<minClSize value> [constraints=<constraints file>] [compact={true,false}] " + 
 				"[dist_function=<distance function>]" +
-				"[outputExtension={both, shm, csv}]");
+				"[outputExtension={both, shm, csv}] [threads=<number of threads>] [approximate=<sample rate>] " + 
+				"[mst={prim, boruvka}] [hierarchy_format={csv, binary}]");
 		System.out.println("By default the hierarchy produced is non-compact (full), and euclidean distance is used.");
 		System.out.println("Example usage: \"java -jar HDBSCANStar.jar file=input.csv minPts=4 minClSize=4\"");
 		System.out.println("Example usage: \"java -jar HDBSCANStar.jar file=collection.csv minPts=6 minClSize=1 " + 
@@ -508,6 +611,14 @@ public class HDBSCANStarRunner {
 				"file at which the cluster first appears.");
 		System.out.println();
 
+		System.out.println("The optional hierarchy_format flag chooses how the hierarchy file is written: csv (the default), " + 
+				"or binary, which only records the objects whose labels change at each level, in the file <input>_hierarchy" + 
+				BinaryHierarchyWriter.BINARY_HIERARCHY_EXTENSION + ".");
+		System.out.println("For a binary hierarchy, <character_offset> is the zero-indexed level at which the cluster first appears. " + 
+				"Binary hierarchies can be converted to CSV with \"java -cp HDBSCANStar.jar " + 
+				"ca.ualberta.cs.hdbscanstar.BinaryHierarchyReader <binary hierarchy file> <CSV hierarchy file>\".");
+		System.out.println();
+
 		System.out.println("The final flat partitioning file will be named <input>_partition.csv");
 		System.out.println("The final flat partitioning file will have the following format on a single line:");
 		System.out.println("<label for object 1>,<label for object 2>,...,<label for object n>");
@@ -542,6 +653,24 @@ public class HDBSCANStarRunner {
 				"become noise, while the compact hierarchy only includes levels where clusters are born or die.");
 		System.out.println();
 
+		System.out.println("The optional threads flag sets how many threads are used to compute the core distances " + 
+				"(by default, one per available processor). The results do not depend on the number of threads.");
+		System.out.println();
+
+		System.out.println("The optional approximate flag computes the core distances from an approximate nearest " + 
+				"neighbor graph (NN-Descent), which is faster for high dimensional data sets.");
+		System.out.println("The sample rate, in (0, 1], trades recall for speed; 1 gives the best recall. " + 
+				"The recall measured on a sample of points is printed.");
+		System.out.println();
+
+		System.out.println("The optional mst flag chooses how the minimum spanning tree is constructed: prim (the default) " + 
+				"or boruvka, which uses a k-d tree and is much faster for large, low dimensional data sets.");
+		System.out.println("Boruvka's algorithm is only used with the euclidean, manhattan and supremum distances, and " + 
+				"Prim's algorithm is used otherwise.");
+		System.out.println("When several edges have the same weight, boruvka gives a hierarchy with the same structure, " + 
+				"but its clusters may be numbered differently, so the output files may differ from those of prim.");
+		System.out.println();
+
 		System.out.println("Possible values for the optional dist_function flag are:");
 		System.out.println("euclidean: Euclidean Distance, d = sqrt((x1-y1)^2 + (x2-y2)^2 + ... + (xn-yn)^2)");
 		System.out.println("cosine: Cosine Similarity, d = 1 - ((X.Y) / (||X||*||Y||))");
@@ -564,6 +693,10 @@ public class HDBSCANStarRunner {
 		public Integer minClusterSize;
 		public boolean compactHierarchy;
 		public DistanceCalculator distanceFunction;
+		public int numThreads;
+		public Double approximateSampleRate;	//null for exact neighbors
+		public String mstAlgorithm;
+		public String hierarchyFormat;
 
 		public String outType;
 		public String shmFile;
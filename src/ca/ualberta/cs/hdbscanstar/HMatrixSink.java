@@ -0,0 +1,169 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.awt.Color;
+import java.util.ArrayList;
+
+import Colorize.WaveLength;
+import SHM.HMatrix.ColumnarClusterIDs;
+import SHM.HMatrix.ColumnarObjInstance;
+import SHM.HMatrix.HMatrix;
+
+/**
+ * Builds the HMatrix of the .shm file from the levels of the hierarchy.  Only the levels at which
+ * the cluster of an object changes are stored (the last level at which it had the previous cluster),
+ * in a ColumnarClusterIDs shared by the ColumnarObjInstances of the matrix, and once the hierarchy
+ * is finished the matrix is sorted and the colors of the clusters are generated.
+ */
+public class HMatrixSink implements HierarchySink {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private HMatrix matrix;
+	private ColumnarClusterIDs columns;
+	private int numLevels;
+
+	//The last level and cluster of each object, which are put into the matrix only when the cluster changes:
+	private double[] lastLevels;
+	private int[] lastLabels;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Adds a ColumnarObjInstance for each point to the matrix.
+	 * @param matrix The hierarchy matrix using the SHM structure
+	 * @param numPoints The number of points in the data set
+	 */
+	public HMatrixSink(HMatrix matrix, int numPoints) {
+		this.matrix = matrix;
+		this.columns = new ColumnarClusterIDs(numPoints);
+		this.numLevels = 0;
+
+		this.lastLevels = new double[numPoints];
+		this.lastLabels = new int[numPoints];
+
+		for (int id = 0; id < numPoints; id++) {
+			this.matrix.add(new ColumnarObjInstance(id, this.columns));
+
+			//The first level will surely be different than -1, but since the cluster will surely be 1, the level -1 is overwritten:
+			this.lastLevels[id] = -1.0;
+			this.lastLabels[id] = 1;
+		}
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public void pointBecameNoise(int point, double level, int lastClusterLabel) {
+	}
+
+
+	public void levelEmitted(double level, int[] labels) {
+		this.matrix.getDensities().add(level);
+
+		for (int i = 0; i < labels.length; i++) {
+			if (labels[i] != this.lastLabels[i]) {
+				this.columns.add(i, this.lastLevels[i], this.lastLabels[i]);
+
+				if (this.lastLabels[i] > this.matrix.getMaxClusterID())
+					this.matrix.setMaxClusterID(this.lastLabels[i]);
+			}
+
+			this.lastLevels[i] = level;
+			this.lastLabels[i] = labels[i];
+		}
+
+		this.numLevels++;
+	}
+
+
+	public void clusterBorn(Cluster cluster) {
+	}
+
+
+	/**
+	 * Stores the last cluster and the noise level of each object, sorts the matrix and generates the
+	 * colors of the clusters.
+	 */
+	public void hierarchyFinished(ArrayList<Cluster> clusters) {
+		this.matrix.getDensities().add(0.0);
+
+		for (int i = 0; i < this.lastLabels.length; i++) {
+			//Only stored if the last cluster is not noise:
+			if (this.lastLabels[i] != 0)
+				this.columns.add(i, this.lastLevels[i], this.lastLabels[i]);
+
+			this.columns.add(i, 0.0, 0);
+		}
+		this.columns.pack();
+
+		this.matrix.lexicographicSort();
+		this.matrix.updateLastClusters();
+
+		this.matrix.setColor(generateColors(clusters, this.matrix.getMaxClusterID()));
+	}
+
+
+	/**
+	 * Nothing to release: the matrix is only held in memory, and is left incomplete.
+	 */
+	public void hierarchyAborted() {
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Assigns a color to each cluster, reusing the color of a cluster which died before the birth
+	 * of another one.  The color of noise (0) is always white.
+	 */
+	private static Color[] generateColors(ArrayList<Cluster> clusters, int maxClusterID) {
+		Color[] colors = new Color[maxClusterID+1];
+
+		ArrayList<Double> colorAUX = new ArrayList<Double>();	//responsible for the time-to-live values of the colors
+		int[] colorRNA = new int[maxClusterID+1];				//responsible by assign the colorID to a cluster. The +1 is the noise value.
+
+		colorAUX.add(clusters.get(1).getDeathLevel());
+		//colorRNA[0] is noise, so we start from index 1.
+		colorRNA[1] = 0;
+
+		for (int i = 2; i <= maxClusterID; i++) {
+			double bornVal = clusters.get(i).getBirthLevel();
+			double deathVal = clusters.get(i).getDeathLevel();
+
+			colorRNA[i] = -1;
+			//Given that exists a color to be reutilized, searches for the first one that can be reutilized.
+			for (int j = 0; j < colorAUX.size(); j++) {
+				if (colorAUX.get(j) > bornVal) {
+					colorAUX.set(j, deathVal);
+					colorRNA[i] = j;
+					break;
+				}
+			}
+
+			//If no color could be reutilized. Assigns to a new color.
+			if (colorRNA[i] == -1) {
+				colorAUX.add(deathVal);
+				colorRNA[i] = colorAUX.size()-1;
+			}
+		}
+
+		//0 is always noise and always white.
+		colors[0] = new Color(255,255,255);
+		//dividing the space between the colors
+		double step = (double)1/(colorAUX.size()+1);
+
+		for (int i = 1; i < colorRNA.length; i++) {
+			colors[i] = WaveLength.toRGB(step*colorRNA[i] + 0.5);
+		}
+
+		return colors;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	/**
+	 * Returns the number of levels put into the matrix (not counting the last level, at which all
+	 * points are noise).
+	 */
+	public int getNumLevels() {
+		return this.numLevels;
+	}
+}
@@ -0,0 +1,113 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+
+/**
+ * Writes the hierarchy as a CSV file, with one line per emitted level: the level followed by the
+ * label of each point, and a last line at which all points are noise.  The file offset of each
+ * cluster is set to the character offset of the first line after its birth.
+ */
+public class HierarchyCSVSink implements HierarchySink {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private BufferedWriter writer;
+	private String delimiter;
+	private int numPoints;
+	private long numCharsWritten;
+	private int numLines;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int FILE_BUFFER_SIZE = 32678;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates the hierarchy file.
+	 * @param hierarchyOutputFile The path to the hierarchy file
+	 * @param delimiter The delimiter to be used while writing the file
+	 * @param numPoints The number of points in the data set
+	 * @throws IOException If any errors occur opening the file
+	 */
+	public HierarchyCSVSink(String hierarchyOutputFile, String delimiter, int numPoints) throws IOException {
+		this.writer = new BufferedWriter(new OutputStreamWriter(new AsyncFileOutputStream(hierarchyOutputFile)), FILE_BUFFER_SIZE);
+		this.delimiter = delimiter;
+		this.numPoints = numPoints;
+		this.numCharsWritten = 0;
+		this.numLines = 0;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public void pointBecameNoise(int point, double level, int lastClusterLabel) {
+	}
+
+
+	public void levelEmitted(double level, int[] labels) throws IOException {
+		this.write(level + this.delimiter);
+
+		for (int i = 0; i < labels.length-1; i++) {
+			this.write(Integer.toString(labels[i]));
+			this.write(this.delimiter);
+		}
+		this.write(labels[labels.length-1] + "\n");
+
+		this.numLines++;
+	}
+
+
+	public void clusterBorn(Cluster cluster) {
+		cluster.setFileOffset(this.numCharsWritten);
+	}
+
+
+	/**
+	 * Writes the last line of the hierarchy (all points noise) and closes the file.
+	 */
+	public void hierarchyFinished(ArrayList<Cluster> clusters) throws IOException {
+		try {
+			this.writer.write(0 + this.delimiter);
+			for (int i = 0; i < this.numPoints-1; i++) {
+				this.writer.write(0 + this.delimiter);
+			}
+			this.writer.write(0 + "\n");
+			this.numLines++;
+		}
+		finally {
+			this.writer.close();
+		}
+	}
+
+
+	/**
+	 * Closes the file without its last line.
+	 */
+	public void hierarchyAborted() {
+		try {
+			this.writer.close();
+		}
+		catch (IOException ioe) {
+			//The exception which aborted the hierarchy is reported instead.
+		}
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	private void write(String output) throws IOException {
+		this.writer.write(output);
+		this.numCharsWritten += output.length();
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	/**
+	 * Returns the number of lines written to the hierarchy file.
+	 */
+	public int getNumLines() {
+		return this.numLines;
+	}
+}
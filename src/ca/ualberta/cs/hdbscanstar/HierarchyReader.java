@@ -0,0 +1,63 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Random access to the levels of a hierarchy file, by the file offsets which 
+ * computeHierarchyAndClusterTree assigns to the clusters: the offset of a cluster points to the 
+ * first level after its birth, at which its members have its label.
+ */
+public abstract class HierarchyReader {
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Reads the label of each point at the level of the hierarchy at a file offset.
+	 * @param fileOffset The file offset of a cluster
+	 * @param labels An int[] with one entry per point, to be filled with the labels
+	 * @throws IOException If any errors occur reading the file
+	 */
+	public abstract void readClusterLabels(long fileOffset, int[] labels) throws IOException;
+
+
+	public abstract void close() throws IOException;
+
+
+	/**
+	 * Labels the points of each cluster of a flat clustering with the label of its cluster, reading
+	 * each level once, in the order of the file offsets.
+	 * @param solution The clusters of the flat clustering
+	 * @param flatPartitioning An int[] with one entry per point, in which the labels are set
+	 * @throws IOException If any errors occur reading the file
+	 */
+	public void readClusterMembers(ArrayList<Cluster> solution, int[] flatPartitioning) throws IOException {
+
+		//Store all the file offsets at which to find the birth points for the flat clustering:
+		TreeMap<Long, BitSet> significantFileOffsets = new TreeMap<Long, BitSet>();
+		for (Cluster cluster : solution) {
+			BitSet clusterLabels = significantFileOffsets.get(cluster.getFileOffset());
+
+			if (clusterLabels == null) {
+				clusterLabels = new BitSet();
+				significantFileOffsets.put(cluster.getFileOffset(), clusterLabels);
+			}
+
+			clusterLabels.set(cluster.getLabel());
+		}
+
+		int[] labels = new int[flatPartitioning.length];
+		for (Map.Entry<Long, BitSet> entry : significantFileOffsets.entrySet()) {
+			BitSet clusterLabels = entry.getValue();
+			this.readClusterLabels(entry.getKey(), labels);
+
+			for (int i = 0; i < labels.length; i++) {
+				if (clusterLabels.get(labels[i]))
+					flatPartitioning[i] = labels[i];
+			}
+		}
+	}
+}
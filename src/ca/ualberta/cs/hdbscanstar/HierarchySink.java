@@ -0,0 +1,60 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Receives the events of the construction of an HDBSCAN* hierarchy from the minimum spanning tree.
+ * Each output of computeHierarchyAndClusterTree (the hierarchy file, the cluster tree file and the
+ * HMatrix of the .shm file) is a sink, and only the work of the sinks which are given is done: with
+ * no sinks, only the cluster tree and the noise levels of the points are computed.
+ */
+public interface HierarchySink {
+
+	/**
+	 * Called when a point becomes noise, while the clusters affected at a level are split.
+	 * @param point The point
+	 * @param level The level (edge weight) at which it becomes noise
+	 * @param lastClusterLabel The label of the last cluster it belonged to
+	 * @throws IOException If any errors occur writing the output
+	 */
+	public void pointBecameNoise(int point, double level, int lastClusterLabel) throws IOException;
+
+
+	/**
+	 * Called for each level of the hierarchy which is emitted, in descending order of level: every
+	 * level, or for a compact hierarchy, only the levels at which clusters are born and the levels
+	 * after them.  The labels are those of the points at the level, before the edges with its weight
+	 * are removed.
+	 * @param level The level (edge weight)
+	 * @param labels The label of each point, which must not be kept or modified
+	 * @throws IOException If any errors occur writing the output
+	 */
+	public void levelEmitted(double level, int[] labels) throws IOException;
+
+
+	/**
+	 * Called for each cluster born at a level, after the level is emitted.  The members of the
+	 * cluster have its label from the next emitted level on.
+	 * @param cluster The new cluster
+	 * @throws IOException If any errors occur writing the output
+	 */
+	public void clusterBorn(Cluster cluster) throws IOException;
+
+
+	/**
+	 * Called once all points are noise, with the complete cluster tree, in the order of the sinks.
+	 * @param clusters The cluster tree, with the 0th cluster (noise) null
+	 * @throws IOException If any errors occur writing or closing the output
+	 */
+	public void hierarchyFinished(ArrayList<Cluster> clusters) throws IOException;
+
+
+	/**
+	 * Called when the hierarchy cannot be finished, because an exception escaped its construction,
+	 * this sink or another sink: instead of hierarchyFinished, or after it threw.  The sink releases
+	 * its output (closing its files, which are left incomplete) without throwing, so that the
+	 * exception which aborted the hierarchy is the one reported.  It may be called more than once.
+	 */
+	public void hierarchyAborted();
+}
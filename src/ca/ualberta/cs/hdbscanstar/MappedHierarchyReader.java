@@ -0,0 +1,127 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the lines of a CSV hierarchy file at the character offsets of the clusters, through a
+ * memory-mapped window of the file instead of skipping through it with a Reader.  The labels are
+ * parsed from the bytes of a line directly, without building strings.  The window is moved (and
+ * grown for lines longer than it) as needed, so files larger than 2GB can be read.
+ */
+public class MappedHierarchyReader extends HierarchyReader {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long fileSize;
+	private byte delimiter;
+
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int WINDOW_SIZE = 64*1024*1024;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Opens a CSV hierarchy file.
+	 * @param fileName The path to the hierarchy file
+	 * @param delimiter The delimiter of the file, which must be a single character
+	 * @throws IOException If any errors occur opening the file
+	 */
+	public MappedHierarchyReader(String fileName, String delimiter) throws IOException {
+		if (delimiter.length() != 1)
+			throw new IllegalArgumentException("The delimiter of a mapped hierarchy file must be a single character.");
+
+		this.file = new RandomAccessFile(fileName, "r");
+		this.channel = this.file.getChannel();
+		this.fileSize = this.channel.size();
+		this.delimiter = (byte)delimiter.charAt(0);
+
+		this.window = null;
+		this.windowStart = 0;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Reads the labels on the line which starts at a character offset (the level at the start of
+	 * the line is skipped).
+	 */
+	@Override
+	public void readClusterLabels(long fileOffset, int[] labels) throws IOException {
+		if (this.window == null || fileOffset < this.windowStart || fileOffset >= this.windowStart + this.window.limit())
+			this.mapWindow(fileOffset, WINDOW_SIZE);
+
+		long windowSize = WINDOW_SIZE;
+		while (!this.parseLine((int)(fileOffset - this.windowStart), labels)) {
+			windowSize = Math.min(2*windowSize, Integer.MAX_VALUE);
+			this.mapWindow(fileOffset, windowSize);
+		}
+	}
+
+
+	@Override
+	public void close() throws IOException {
+		this.window = null;
+		this.channel.close();
+		this.file.close();
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	private void mapWindow(long start, long size) throws IOException {
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, this.fileSize - start));
+		this.windowStart = start;
+	}
+
+
+	/**
+	 * Parses the labels of the line which starts at a position of the window.
+	 * @return false if the line continues past the end of the window, which must then be grown
+	 * @throws IOException If the line has more labels than there are points
+	 */
+	private boolean parseLine(int position, int[] labels) throws IOException {
+		int limit = this.window.limit();
+		boolean endOfFile = (this.windowStart + limit == this.fileSize);
+
+		//Skip the level:
+		while (position < limit && this.window.get(position) != this.delimiter) {
+			position++;
+		}
+		position++;
+
+		int point = 0;
+		int label = 0;
+		for (; position < limit; position++) {
+			byte b = this.window.get(position);
+
+			if (b >= '0' && b <= '9')
+				label = 10*label + (b - '0');
+			else if (b == this.delimiter || b == '\n') {
+				if (point == labels.length)
+					throw new IOException("The hierarchy file has more labels on a line than there are points.");
+
+				labels[point++] = label;
+				label = 0;
+
+				if (b == '\n')
+					return true;
+			}
+		}
+
+		//The last line may end without a line break:
+		if (endOfFile && point < labels.length) {
+			labels[point] = label;
+			return true;
+		}
+
+		return endOfFile;
+	}
+}
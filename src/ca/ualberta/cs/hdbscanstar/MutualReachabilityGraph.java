@@ -0,0 +1,256 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import ca.ualberta.cs.distance.DistanceCalculator;
+
+/**
+ * A sparse graph which contains a minimum spanning tree of mutual reachability distances for every
+ * value of minPts up to a maximum, so that the trees for a sweep over minPts can be extracted with
+ * Kruskal's algorithm instead of running Prim's algorithm over all pairs of points for each value.
+ *
+ * The graph joins every point to its maxMinPts-1 nearest neighbors, plus the edges of the minimum
+ * spanning tree for maxMinPts.  An edge (p, q) outside the neighborhoods has d(p, q) at least as
+ * large as both core distances for maxMinPts, and so at least as large as the core distances for
+ * any smaller minPts, which makes its mutual reachability distance d(p, q) for every minPts.  Every
+ * edge on the path between p and q in the tree for maxMinPts weighs no more than d(p, q) for
+ * maxMinPts, and so for any smaller minPts, so (p, q) is never needed by a minimum spanning tree.
+ *
+ * The trees have the same weights as those constructed by HDBSCANStar.constructMST, and the same
+ * layout.  When all weights are distinct they are the same trees.  Kruskal's algorithm breaks ties by
+ * edge index rather than in the order of Prim's algorithm, and mutual reachability distances tie
+ * often (every edge of a point within its core distance weighs that core distance), so a tree may
+ * have different edges with the same total weight.  The hierarchy then has the same structure, but
+ * the clusters may be numbered differently, so the hierarchy, tree and partition files may differ
+ * from those of Prim's algorithm (up to a relabeling of the clusters), and so may any result which
+ * follows the edges of the tree, such as the label expansion over mstReach.  The neighbors must come
+ * from an exact NeighborSearch.
+ */
+public class MutualReachabilityGraph {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private CoreDistanceTable coreDistanceTable;
+	private int numPoints;
+	private int numEdges;
+	private int[] firstVertices;
+	private int[] secondVertices;
+	private double[] distances;		//The distance between the vertices of each edge
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Builds the graph from the nearest neighbors of every point and the minimum spanning tree for
+	 * the largest minPts.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param coreDistanceTable The CoreDistanceTable of the data set, searched with an exact NeighborSearch
+	 * @param mst The minimum spanning tree of mutual reachability distances for coreDistanceTable.getMaxMinPts(),
+	 * with or without self edges
+	 */
+	public MutualReachabilityGraph(double[][] dataSet, DistanceCalculator distanceFunction, 
+			CoreDistanceTable coreDistanceTable, UndirectedGraph mst) {
+
+		this.coreDistanceTable = coreDistanceTable;
+		this.numPoints = dataSet.length;
+		int numNeighbors = Math.max(coreDistanceTable.getMaxMinPts() - 1, 0);
+
+		int maxEdges = this.numPoints * numNeighbors + mst.getNumEdges();
+		this.firstVertices = new int[maxEdges];
+		this.secondVertices = new int[maxEdges];
+		this.distances = new double[maxEdges];
+		this.numEdges = 0;
+
+		//Add the edges to the nearest neighbors, once for neighbors of each other:
+		for (int point = 0; point < this.numPoints; point++) {
+			for (int rank = 0; rank < numNeighbors; rank++) {
+				int neighbor = coreDistanceTable.getNeighbor(point, rank);
+				if (neighbor == -1)
+					break;
+				if (neighbor < point && isNeighbor(neighbor, point, numNeighbors))
+					continue;
+				addEdge(point, neighbor, coreDistanceTable.getNeighborDistance(point, rank));
+			}
+		}
+
+		//Add the edges of the minimum spanning tree:
+		for (int edge = 0; edge < mst.getNumEdges(); edge++) {
+			int vertexOne = mst.getFirstVertexAtIndex(edge);
+			int vertexTwo = mst.getSecondVertexAtIndex(edge);
+			if (vertexOne != vertexTwo)
+				addEdge(vertexOne, vertexTwo, distanceFunction.computeDistance(dataSet[vertexOne], dataSet[vertexTwo]));
+		}
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Constructs the minimum spanning tree of mutual reachability distances for a value of minPts,
+	 * with Kruskal's algorithm over the edges of the graph.  Ties are broken by edge index, so the tree
+	 * may differ from the one constructed by HDBSCANStar.constructMST when weights tie.
+	 * @param minPts The value of minPts, with 1 <= minPts <= getMaxMinPts()
+	 * @param selfEdges If each point should have an edge to itself with weight equal to core distance
+	 * @return An MST for the data set using the mutual reachability distances
+	 */
+	public UndirectedGraph constructMST(int minPts, boolean selfEdges) {
+		double[] coreDistances = this.coreDistanceTable.getCoreDistances(minPts);
+
+		//Compute the mutual reachability distances as HDBSCANStar.constructMST does:
+		double[] weights = new double[this.numEdges];
+		int[] order = new int[this.numEdges];
+		for (int edge = 0; edge < this.numEdges; edge++) {
+			double mutualReachabiltiyDistance = this.distances[edge];
+			if (coreDistances[this.firstVertices[edge]] > mutualReachabiltiyDistance)
+				mutualReachabiltiyDistance = coreDistances[this.firstVertices[edge]];
+			if (coreDistances[this.secondVertices[edge]] > mutualReachabiltiyDistance)
+				mutualReachabiltiyDistance = coreDistances[this.secondVertices[edge]];
+
+			weights[edge] = mutualReachabiltiyDistance;
+			order[edge] = edge;
+		}
+		sort(order, weights, 0, this.numEdges - 1);
+
+		//Add the edges in order of weight, unless their vertices are already connected:
+		int[] parents = new int[this.numPoints];
+		for (int point = 0; point < this.numPoints; point++) {
+			parents[point] = point;
+		}
+
+		int[] treeFirstVertices = new int[Math.max(this.numPoints-1, 0)];
+		int[] treeSecondVertices = new int[Math.max(this.numPoints-1, 0)];
+		double[] treeWeights = new double[Math.max(this.numPoints-1, 0)];
+		int numTreeEdges = 0;
+
+		for (int position = 0; position < this.numEdges && numTreeEdges < this.numPoints-1; position++) {
+			int edge = order[position];
+			int rootOne = find(parents, this.firstVertices[edge]);
+			int rootTwo = find(parents, this.secondVertices[edge]);
+
+			if (rootOne == rootTwo)
+				continue;
+
+			parents[rootTwo] = rootOne;
+			treeFirstVertices[numTreeEdges] = this.firstVertices[edge];
+			treeSecondVertices[numTreeEdges] = this.secondVertices[edge];
+			treeWeights[numTreeEdges] = weights[edge];
+			numTreeEdges++;
+		}
+
+		if (numTreeEdges < this.numPoints-1)
+			throw new IllegalStateException("The graph does not span all points; the minimum spanning tree given was incomplete.");
+
+		return BoruvkaMST.toGraph(this.numPoints, treeFirstVertices, treeSecondVertices, treeWeights, coreDistances, selfEdges);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	private void addEdge(int vertexOne, int vertexTwo, double distance) {
+		this.firstVertices[this.numEdges] = vertexOne;
+		this.secondVertices[this.numEdges] = vertexTwo;
+		this.distances[this.numEdges] = distance;
+		this.numEdges++;
+	}
+
+
+	/**
+	 * Checks whether candidate is one of the nearest neighbors of point.
+	 */
+	private boolean isNeighbor(int point, int candidate, int numNeighbors) {
+		for (int rank = 0; rank < numNeighbors; rank++) {
+			int neighbor = this.coreDistanceTable.getNeighbor(point, rank);
+			if (neighbor == candidate)
+				return true;
+			if (neighbor == -1)
+				return false;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Finds the root of a point in a union-find forest, halving the path to it.
+	 */
+	private static int find(int[] parents, int point) {
+		while (parents[point] != point) {
+			parents[point] = parents[parents[point]];
+			point = parents[point];
+		}
+		return point;
+	}
+
+
+	/**
+	 * Sorts positions [startIndex, endIndex] of order by the weights of the edges, breaking ties by
+	 * the index of the edge so that the result does not depend on the sort.
+	 */
+	private static void sort(int[] order, double[] weights, int startIndex, int endIndex) {
+		while (endIndex - startIndex > 16) {
+			int middle = (startIndex + endIndex) >>> 1;
+			if (comesBefore(order[middle], order[startIndex], weights))
+				swap(order, middle, startIndex);
+			if (comesBefore(order[endIndex], order[startIndex], weights))
+				swap(order, endIndex, startIndex);
+			if (comesBefore(order[endIndex], order[middle], weights))
+				swap(order, endIndex, middle);
+			int pivot = order[middle];
+
+			int i = startIndex;
+			int j = endIndex;
+			while (i <= j) {
+				while (comesBefore(order[i], pivot, weights))
+					i++;
+				while (comesBefore(pivot, order[j], weights))
+					j--;
+				if (i <= j) {
+					swap(order, i, j);
+					i++;
+					j--;
+				}
+			}
+
+			//Recurse into the smaller side, and loop on the larger one:
+			if (j - startIndex < endIndex - i) {
+				sort(order, weights, startIndex, j);
+				startIndex = i;
+			}
+			else {
+				sort(order, weights, i, endIndex);
+				endIndex = j;
+			}
+		}
+
+		for (int i = startIndex + 1; i <= endIndex; i++) {
+			int edge = order[i];
+			int j = i - 1;
+			while (j >= startIndex && comesBefore(edge, order[j], weights)) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = edge;
+		}
+	}
+
+
+	private static boolean comesBefore(int edgeOne, int edgeTwo, double[] weights) {
+		int comparison = Double.compare(weights[edgeOne], weights[edgeTwo]);
+		return comparison < 0 || (comparison == 0 && edgeOne < edgeTwo);
+	}
+
+
+	private static void swap(int[] order, int indexOne, int indexTwo) {
+		int temp = order[indexOne];
+		order[indexOne] = order[indexTwo];
+		order[indexTwo] = temp;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumEdges() {
+		return this.numEdges;
+	}
+
+
+	public int getMaxMinPts() {
+		return this.coreDistanceTable.getMaxMinPts();
+	}
+}
@@ -0,0 +1,136 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs computations which are independent for each point of a data set on several threads, by
+ * splitting the points into ranges which are processed by a ForkJoinPool.  Each point is processed
+ * exactly once and in the same way regardless of the number of threads, so results which only depend
+ * on the point being processed are identical to those of a serial run.
+ */
+public class ParallelExecution {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	/**
+	 * The number of threads used when none is given: one per available processor.
+	 */
+	public static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+
+	//Points are split in more ranges than threads, so that threads which finish early can steal work:
+	private static final int RANGES_PER_THREAD = 8;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Processes the points [0, numPoints) in ranges.  With a single thread, the task is run once
+	 * for all points on the calling thread.
+	 * @param numPoints The number of points to process
+	 * @param numThreads The number of threads to use
+	 * @param task The RangeTask which processes a range of points
+	 */
+	public static void forEachRange(int numPoints, int numThreads, RangeTask task) {
+		if (numThreads <= 1 || numPoints <= 1) {
+			task.run(0, numPoints);
+			return;
+		}
+
+		int rangeSize = Math.max(1, numPoints / (numThreads * RANGES_PER_THREAD));
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+
+		try {
+			pool.invoke(new RangeAction(task, 0, numPoints, rangeSize));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+
+	/**
+	 * Processes the points [0, numPoints) in ranges on an existing ForkJoinPool, so that many small 
+	 * computations run one after the other do not each create a pool.
+	 * @param numPoints The number of points to process
+	 * @param pool The ForkJoinPool on which to process the ranges
+	 * @param task The RangeTask which processes a range of points
+	 */
+	public static void forEachRange(int numPoints, ForkJoinPool pool, RangeTask task) {
+		if (pool.getParallelism() <= 1 || numPoints <= 1) {
+			task.run(0, numPoints);
+			return;
+		}
+
+		int rangeSize = Math.max(1, numPoints / (pool.getParallelism() * RANGES_PER_THREAD));
+		pool.invoke(new RangeAction(task, 0, numPoints, rangeSize));
+	}
+
+
+	/**
+	 * Returns the number of threads to use for a computation over numPoints points, where each thread 
+	 * should process at least minPointsPerThread points to pay for its share of creating a ForkJoinPool. 
+	 * Computations which are too small for two threads are run serially.
+	 * @param numPoints The number of points to process
+	 * @param minPointsPerThread The smallest number of points worth processing on a thread of its own
+	 * @param numThreads The largest number of threads to use
+	 * @return The number of threads to use, at least 1
+	 */
+	public static int numThreadsFor(int numPoints, int minPointsPerThread, int numThreads) {
+		return Math.max(1, Math.min(numThreads, numPoints / minPointsPerThread));
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	/**
+	 * A computation over a range of points.  Ranges never overlap, but several ranges may be processed
+	 * at the same time, so a task should only write to the entries of its own points.
+	 */
+	public interface RangeTask {
+
+		/**
+		 * Processes the points in [start, end).
+		 * @param start The first point of the range (inclusive)
+		 * @param end The last point of the range (exclusive)
+		 */
+		public void run(int start, int end);
+	}
+
+
+	/**
+	 * Splits a range of points in halves until it is small enough to be processed directly.
+	 */
+	private static class RangeAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private RangeTask task;
+		private int start;
+		private int end;
+		private int rangeSize;
+
+		public RangeAction(RangeTask task, int start, int end, int rangeSize) {
+			this.task = task;
+			this.start = start;
+			this.end = end;
+			this.rangeSize = rangeSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start <= this.rangeSize) {
+				this.task.run(this.start, this.end);
+				return;
+			}
+
+			int middle = (this.start + this.end) >>> 1;
+			invokeAll(new RangeAction(this.task, this.start, middle, this.rangeSize),
+					new RangeAction(this.task, middle, this.end, this.rangeSize));
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.BitSet;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Prim's algorithm over the points of a data set.  The tree is expanded starting with the last point,
+ * and in each iteration the nearest distances of the unattached points are relaxed using the point
+ * attached last, after which the unattached point with the smallest nearest distance (the last one,
+ * in index order, if several tie) is attached to the tree.
+ *
+ * The points are split into contiguous ranges, one for each worker thread, and the threads are kept
+ * for the whole run.  Each worker relaxes and finds the closest point of its own range, and the
+ * closest points of the ranges are combined in range order at a barrier, so the tree is identical to
+ * that of a serial run regardless of the number of threads.
+ */
+public class ParallelPrim {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int numPoints;
+	private double[] nearestMRDDistances;
+	private Relaxation relaxation;
+	private int[] rangeStarts;			//Worker w handles the points in [rangeStarts[w], rangeStarts[w+1])
+
+	private BitSet attachedPoints;
+	private int currentPoint;
+	private int numAttachedPoints;
+	private int[] closestPoints;		//The closest point found by each worker in the current iteration, or -1
+	private double[] closestDistances;	//The nearest distance of the closest point found by each worker
+
+	private CyclicBarrier barrier;
+	private volatile RuntimeException runtimeFailure;
+	private volatile Error errorFailure;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	//Below this many points per thread, the time spent waiting at the barrier outweighs the gain:
+	private static final int MIN_POINTS_PER_THREAD = 1024;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	private ParallelPrim(int numPoints, double[] nearestMRDDistances, int numWorkers, Relaxation relaxation) {
+		this.numPoints = numPoints;
+		this.nearestMRDDistances = nearestMRDDistances;
+		this.relaxation = relaxation;
+
+		this.rangeStarts = new int[numWorkers + 1];
+		for (int worker = 0; worker <= numWorkers; worker++) {
+			this.rangeStarts[worker] = (int)((long)numPoints * worker / numWorkers);
+		}
+
+		this.attachedPoints = new BitSet(numPoints);
+		this.currentPoint = numPoints-1;
+		this.numAttachedPoints = 1;
+		this.attachedPoints.set(numPoints-1);
+		this.closestPoints = new int[numWorkers];
+		this.closestDistances = new double[numWorkers];
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Runs Prim's algorithm until all points are attached to the tree.  The Relaxation is responsible
+	 * for updating the nearest distances (and for recording which attached point each one was found
+	 * to), while the choice of the point to attach in each iteration is made here.
+	 * @param numPoints The number of points in the data set
+	 * @param nearestMRDDistances The nearest distance of each point to the tree, where the first
+	 * numPoints-1 entries must be initialized to Double.MAX_VALUE
+	 * @param numThreads The number of threads to use
+	 * @param relaxation The Relaxation which updates the nearest distances using the point attached last
+	 */
+	public static void run(int numPoints, double[] nearestMRDDistances, int numThreads, Relaxation relaxation) {
+		int numWorkers = Math.max(1, Math.min(numThreads, numPoints / MIN_POINTS_PER_THREAD));
+		new ParallelPrim(numPoints, nearestMRDDistances, numWorkers, relaxation).run();
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Runs the first worker on the calling thread and the others on threads of their own, which are
+	 * all kept until the last point is attached.
+	 */
+	private void run() {
+		final int numWorkers = this.closestPoints.length;
+
+		if (numWorkers == 1) {
+			work(0);
+			rethrowFailure();
+			return;
+		}
+
+		this.barrier = new CyclicBarrier(numWorkers, new Runnable() {
+			public void run() {
+				attachClosestPoint();
+			}
+		});
+
+		Thread[] threads = new Thread[numWorkers];
+		for (int worker = 1; worker < numWorkers; worker++) {
+			final int threadWorker = worker;
+			threads[worker] = new Thread(new Runnable() {
+				public void run() {
+					work(threadWorker);
+				}
+			}, "prim-worker-" + worker);
+			threads[worker].setDaemon(true);
+			threads[worker].start();
+		}
+
+		work(0);
+
+		for (int worker = 1; worker < numWorkers; worker++) {
+			try {
+				threads[worker].join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while constructing the MST.", e);
+			}
+		}
+
+		rethrowFailure();
+	}
+
+
+	private void rethrowFailure() {
+		if (this.runtimeFailure != null)
+			throw this.runtimeFailure;
+		if (this.errorFailure != null)
+			throw this.errorFailure;
+	}
+
+
+	/**
+	 * Repeatedly relaxes the points in the range of a worker and finds the closest of them to the tree.
+	 * A failure in one worker is recorded and ends the run at the next barrier, so that the other
+	 * workers are never left waiting.
+	 */
+	private void work(int worker) {
+		int start = this.rangeStarts[worker];
+		int end = this.rangeStarts[worker+1];
+
+		int[] unattachedPoints = new int[end - start];
+		int[] candidatePoints = new int[end - start];
+		double[] upperBounds = new double[end - start];
+		double[] distances = new double[end - start];
+
+		while (this.numAttachedPoints < this.numPoints) {
+			try {
+				int numUnattachedPoints = 0;
+				for (int neighbor = start; neighbor < end; neighbor++) {
+					if (this.currentPoint == neighbor)
+						continue;
+					if (this.attachedPoints.get(neighbor) == true)
+						continue;
+					unattachedPoints[numUnattachedPoints++] = neighbor;
+				}
+
+				this.relaxation.relax(this.currentPoint, unattachedPoints, numUnattachedPoints, 
+						candidatePoints, upperBounds, distances);
+
+				//Find the closest point of the range, keeping the last one if several tie:
+				int closestPoint = -1;
+				double closestDistance = Double.MAX_VALUE;
+				for (int position = 0; position < numUnattachedPoints; position++) {
+					int neighbor = unattachedPoints[position];
+					if (this.nearestMRDDistances[neighbor] <= closestDistance) {
+						closestDistance = this.nearestMRDDistances[neighbor];
+						closestPoint = neighbor;
+					}
+				}
+
+				this.closestPoints[worker] = closestPoint;
+				this.closestDistances[worker] = closestDistance;
+			}
+			catch (RuntimeException e) {
+				this.runtimeFailure = e;
+			}
+			catch (Error e) {
+				this.errorFailure = e;
+			}
+
+			if (this.barrier == null)
+				attachClosestPoint();
+			else
+				awaitBarrier();
+		}
+	}
+
+
+	/**
+	 * Combines the closest points found by the workers in range order (so that ties are broken as in
+	 * a serial scan) and attaches the closest one to the tree.  Called by a single thread while all
+	 * workers are waiting.
+	 */
+	private void attachClosestPoint() {
+		if (this.runtimeFailure != null || this.errorFailure != null) {
+			this.numAttachedPoints = this.numPoints;
+			return;
+		}
+
+		int nearestMRDPoint = -1;
+		double nearestMRDDistance = Double.MAX_VALUE;
+
+		for (int worker = 0; worker < this.closestPoints.length; worker++) {
+			if (this.closestPoints[worker] != -1 && this.closestDistances[worker] <= nearestMRDDistance) {
+				nearestMRDDistance = this.closestDistances[worker];
+				nearestMRDPoint = this.closestPoints[worker];
+			}
+		}
+
+		//Attach the closest point found in this iteration to the tree:
+		this.attachedPoints.set(nearestMRDPoint);
+		this.numAttachedPoints++;
+		this.currentPoint = nearestMRDPoint;
+	}
+
+
+	private void awaitBarrier() {
+		try {
+			this.barrier.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while constructing the MST.", e);
+		}
+		catch (BrokenBarrierException e) {
+			throw new IllegalStateException("A worker stopped while constructing the MST.", e);
+		}
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	/**
+	 * Updates the nearest distances of unattached points using their distances to the point attached
+	 * last.  The points given in one call all belong to the range of one worker, and calls for
+	 * different ranges may run at the same time, so only the entries of the given points should be
+	 * written.
+	 */
+	public interface Relaxation {
+
+		/**
+		 * Relaxes the nearest distances of some unattached points.
+		 * @param currentPoint The point attached to the tree last
+		 * @param unattachedPoints The unattached points, in increasing order, in [0, numUnattachedPoints)
+		 * @param numUnattachedPoints The number of unattached points
+		 * @param candidatePoints A buffer at least as long as numUnattachedPoints, for the relaxation's own use
+		 * @param upperBounds A buffer at least as long as numUnattachedPoints, for the relaxation's own use
+		 * @param distances A buffer at least as long as numUnattachedPoints, for the relaxation's own use
+		 */
+		public void relax(int currentPoint, int[] unattachedPoints, int numUnattachedPoints, 
+				int[] candidatePoints, double[] upperBounds, double[] distances);
+	}
+}
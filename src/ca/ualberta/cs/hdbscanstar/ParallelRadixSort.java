@@ -0,0 +1,158 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.Arrays;
+
+/**
+ * A stable least significant digit radix sort of doubles, which sorts the IEEE-754 bit patterns of 
+ * the values (mapped so that their unsigned order is the numeric order) 11 bits at a time.  Each pass
+ * splits the values into contiguous chunks which are counted and distributed on different threads, 
+ * and the buckets of each chunk are placed after those of the chunks before it, so the result does 
+ * not depend on the number of threads.
+ */
+public class ParallelRadixSort {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int RADIX_BITS = 11;
+	private static final int NUM_BUCKETS = 1 << RADIX_BITS;
+
+	//Chunks smaller than this are not worth a thread of their own:
+	private static final int MIN_VALUES_PER_CHUNK = 1 << 15;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Finds the order of an array of values from smallest to largest, with tied values kept in the 
+	 * order of their indices.  -0.0 comes before 0.0, and NaN after all other values.
+	 * @param values The values to sort, which are not modified
+	 * @param numThreads The number of threads to use
+	 * @return An array whose ith entry is the index of the ith smallest value
+	 */
+	public static int[] sortedOrder(final double[] values, int numThreads) {
+		final int numValues = values.length;
+		final int numChunks = Math.max(1, Math.min(numThreads, numValues / MIN_VALUES_PER_CHUNK));
+		final int chunkSize = numValues / numChunks + 1;
+
+		final long[] keys = new long[numValues];
+		final int[] order = new int[numValues];
+		final long[][] chunkBits = new long[numChunks][2];		//The OR and AND of the keys of each chunk
+
+		ParallelExecution.forEachRange(numChunks, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int startChunk, int endChunk) {
+				for (int chunk = startChunk; chunk < endChunk; chunk++) {
+					long orBits = 0;
+					long andBits = -1L;
+					for (int i = chunk * chunkSize; i < Math.min((chunk + 1) * chunkSize, numValues); i++) {
+						keys[i] = sortableBits(values[i]);
+						order[i] = i;
+						orBits |= keys[i];
+						andBits &= keys[i];
+					}
+					chunkBits[chunk][0] = orBits;
+					chunkBits[chunk][1] = andBits;
+				}
+			}
+		});
+
+		//Digits which are the same for every key are skipped:
+		long orBits = 0;
+		long andBits = -1L;
+		for (int chunk = 0; chunk < numChunks; chunk++) {
+			orBits |= chunkBits[chunk][0];
+			andBits &= chunkBits[chunk][1];
+		}
+		long differingBits = orBits ^ andBits;
+
+		long[] sourceKeys = keys;
+		int[] sourceOrder = order;
+		long[] targetKeys = null;
+		int[] targetOrder = null;
+		int[][] bucketPositions = new int[numChunks][NUM_BUCKETS];
+
+		for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+			if (((differingBits >>> shift) & (NUM_BUCKETS - 1)) == 0)
+				continue;
+
+			if (targetKeys == null) {
+				targetKeys = new long[numValues];
+				targetOrder = new int[numValues];
+			}
+
+			distribute(sourceKeys, sourceOrder, targetKeys, targetOrder, shift, chunkSize, bucketPositions, numThreads);
+
+			long[] tempKeys = sourceKeys;
+			sourceKeys = targetKeys;
+			targetKeys = tempKeys;
+			int[] tempOrder = sourceOrder;
+			sourceOrder = targetOrder;
+			targetOrder = tempOrder;
+		}
+
+		return sourceOrder;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Maps the bits of a double to a long whose unsigned order is the order of the doubles.
+	 */
+	private static long sortableBits(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return (bits < 0) ? ~bits : (bits | Long.MIN_VALUE);
+	}
+
+
+	/**
+	 * Moves the keys and indices from the source arrays to the target arrays, ordered by the digit at
+	 * the given shift.
+	 */
+	private static void distribute(final long[] sourceKeys, final int[] sourceOrder, final long[] targetKeys, 
+			final int[] targetOrder, final int shift, final int chunkSize, final int[][] bucketPositions, int numThreads) {
+
+		final int numValues = sourceKeys.length;
+		final int numChunks = bucketPositions.length;
+
+		//Count the keys in each bucket of each chunk:
+		ParallelExecution.forEachRange(numChunks, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int startChunk, int endChunk) {
+				for (int chunk = startChunk; chunk < endChunk; chunk++) {
+					int[] counts = bucketPositions[chunk];
+					Arrays.fill(counts, 0);
+					for (int i = chunk * chunkSize; i < Math.min((chunk + 1) * chunkSize, numValues); i++) {
+						counts[(int)(sourceKeys[i] >>> shift) & (NUM_BUCKETS - 1)]++;
+					}
+				}
+			}
+		});
+
+		//Turn the counts into the first position of each bucket of each chunk:
+		int position = 0;
+		for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				int count = bucketPositions[chunk][bucket];
+				bucketPositions[chunk][bucket] = position;
+				position += count;
+			}
+		}
+
+		ParallelExecution.forEachRange(numChunks, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int startChunk, int endChunk) {
+				for (int chunk = startChunk; chunk < endChunk; chunk++) {
+					int[] positions = bucketPositions[chunk];
+					for (int i = chunk * chunkSize; i < Math.min((chunk + 1) * chunkSize, numValues); i++) {
+						int targetPosition = positions[(int)(sourceKeys[i] >>> shift) & (NUM_BUCKETS - 1)]++;
+						targetKeys[targetPosition] = sourceKeys[i];
+						targetOrder[targetPosition] = sourceOrder[i];
+					}
+				}
+			}
+		});
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
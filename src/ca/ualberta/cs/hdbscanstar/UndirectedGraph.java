@@ -1,12 +1,19 @@
 package ca.ualberta.cs.hdbscanstar;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
 /**
  * An undirected graph, with weights assigned to each edge.  Vertices in the graph are 0 indexed.
+ * The neighbors of each vertex are kept in compressed sparse rows of primitive arrays, and the
+ * boxed edge lists and neighbor maps of the older interface are built from them on request.
+ * Once sorted, a graph is never modified, so one graph can be shared by any number of computations
+ * and threads: algorithms which remove edges as they go do so on an EdgeListOverlay.
  * @author zjullion 
  */
 public class UndirectedGraph implements java.io.Serializable
@@ -18,7 +25,24 @@ public class UndirectedGraph implements java.io.Serializable
 	private int[] verticesA;
 	private int[] verticesB;
 	private double[] edgeWeights;
-	private Object[] edges;		//Each Object in this array in an ArrayList<Integer>
+
+	/** The neighbors of vertex v are adjacentVertices[adjacencyOffsets[v]] to adjacentVertices[adjacencyOffsets[v+1]-1],
+	 * in the order of the edges when the graph was constructed, with a self edge listed once */
+	private int[] adjacencyOffsets;
+	private int[] adjacentVertices;
+	private double[] adjacentWeights;
+
+	//The neighbors in the current order of the edges and the edge of each, kept for reweight() until the graph is sorted:
+	private transient int[] edgeOrderAdjacentVertices;
+	private transient int[] edgeOrderAdjacentEdges;
+
+	//Indicates if the vertex arrays are shared between a graph and the graphs returned by its reweight(), so 
+	//that quicksortByEdgeWeight() must copy them before it permutes them:
+	private transient boolean vertexArraysShared;
+
+	//The position of each vertex in a breadth-first search from breadthFirstStart, kept for getBreadthFirstRanks():
+	private transient int breadthFirstStart;
+	private transient int[] breadthFirstRanks;
 
         /** 24/02/2016
          * @author fernando
@@ -29,14 +53,21 @@ public class UndirectedGraph implements java.io.Serializable
 	 * 
 	 * @author jadson
 	 * Saving a copy of the MST to use for the label expansion of semi supervised clustering algorithms
-	 * HashMap<Integer, Map<Integer, Double>>(); */
-	private Map<Integer, Map<Integer, Double>> hashMST;
+	 * HashMap<Integer, Map<Integer, Double>>(); 
+	 * The copy is now kept in the adjacency arrays, and getNeighbors() returns the map of one vertex. */
 
 
 //	// ------------------------------ CONSTANTS ------------------------------
 //
         private static final long serialVersionUID = 1L;
 
+	//A HashMap with at most this many keys keeps its initial 16 bins, none of which is turned into a tree:
+	private static final int MAP_ORDER_MAX_DEGREE = 8;
+	private static final int MAP_ORDER_NUM_BINS = 16;
+
+	//Copying the weights of fewer neighbors than this is faster on one thread than on a new ForkJoinPool:
+	private static final int MIN_NEIGHBORS_PER_THREAD = 1 << 20;
+
         // ------------------------------ CONSTRUCTORS ------------------------------
 
 	/**
@@ -53,31 +84,15 @@ public class UndirectedGraph implements java.io.Serializable
 		this.verticesA = verticesA;
 		this.verticesB = verticesB;
 		this.edgeWeights = edgeWeights;
-		this.hashMST = new HashMap<Integer, Map<Integer, Double>>();
-
-		this.edges = new Object[numVertices];
-		for (int i = 0; i < this.edges.length; i++) {
-			this.edges[i] = new ArrayList<Integer>(1 + edgeWeights.length/numVertices);
-			this.hashMST.put(i, new HashMap<Integer, Double>());
-		}
-
-		for (int i = 0; i < edgeWeights.length; i++) {
-			int vertexOne = this.verticesA[i];
-			int vertexTwo = this.verticesB[i];
-
-			this.hashMST.get((Integer)vertexOne).put(vertexTwo, edgeWeights[i]);
-			this.hashMST.get((Integer)vertexTwo).put(vertexOne, edgeWeights[i]);
 
-			((ArrayList<Integer>)(this.edges[vertexOne])).add(vertexTwo);
-			if (vertexOne != vertexTwo)
-				((ArrayList<Integer>)(this.edges[vertexTwo])).add(vertexOne);
-		}
+		this.buildAdjacency();
 	}
 
 	/**
 	 * @author jadson
 	 * Update edges weights of the minimum spanning tree to after execute HISSCLU algorithm
 	 * Mantain the same values on both structures: Arrays and HashMap
+	 * The arrays are copied, so the graph they come from keeps its weights and can be shared.
 	 * @param vertexOne
 	 * @param vertexTwo
 	 * @param weight
@@ -86,18 +101,9 @@ public class UndirectedGraph implements java.io.Serializable
 	{
 
 		this.numVertices = nVert;
-		this.verticesA   = vertA;
-		this.verticesB   = vertB;
-		this.edgeWeights = edgW;
-		this.edges= new Object[this.numVertices];
-		this.hashMST = new HashMap<Integer, Map<Integer, Double>>();
-
-		for (int i = 0; i < this.edges.length; i++) 
-		{
-			this.edges[i] = new ArrayList<Integer>(1 + edgeWeights.length/numVertices);
-			this.hashMST.put(i, new HashMap<Integer, Double>());
-		}	
-
+		this.verticesA   = vertA.clone();
+		this.verticesB   = vertB.clone();
+		this.edgeWeights = new double[edgW.length];
 
 		for(int i=0; i < edgeWeights.length; i++)
 		{
@@ -107,15 +113,9 @@ public class UndirectedGraph implements java.io.Serializable
 			double  newWeight = newEdgesWeights.get(vertexOne).get(vertexTwo);
 
 			edgeWeights[i]= newWeight;
-
-			this.hashMST.get(vertexOne).put(vertexTwo, newWeight);
-			this.hashMST.get(vertexTwo).put(vertexOne, newWeight);
-			
-			((ArrayList<Integer>)(this.edges[vertexOne])).add(vertexTwo);
-			if (vertexOne != vertexTwo)
-				((ArrayList<Integer>)(this.edges[vertexTwo])).add(vertexOne);
-
 		}
+
+		this.buildAdjacency();
 	}
 
 	/**
@@ -128,14 +128,6 @@ public class UndirectedGraph implements java.io.Serializable
 		this.verticesA 	 = new int[mst.getVertexA().length];
 		this.verticesB 	 = new int[mst.getVertexB().length];
 		this.edgeWeights = new double[mst.getEdgesWeights().length];
-		this.edges 		 = new Object[numVertices];
-		this.hashMST     = new HashMap<Integer, Map<Integer, Double>>();
-		
-		for (int i = 0; i < this.edges.length; i++) 
-		{
-			this.edges[i] = new ArrayList<Integer>(1 + edgeWeights.length/numVertices);
-			this.hashMST.put(i, new HashMap<Integer, Double>());
-		}
 		
 		for(int i=0; i< mst.getVertexA().length; i++)
 		{
@@ -144,18 +136,28 @@ public class UndirectedGraph implements java.io.Serializable
 			this.edgeWeights[i]= mst.getEdgeWeightAtIndex(i);
 		}
 
-		for (int i = 0; i < edgeWeights.length; i++) 
-		{
-			int vertexOne = this.verticesA[i];
-			int vertexTwo = this.verticesB[i];
+		this.buildAdjacency();
+	}
 
-			this.hashMST.get(vertexOne).put(vertexTwo, edgeWeights[i]);
-			this.hashMST.get(vertexTwo).put(vertexOne, edgeWeights[i]);
+	/**
+	 * A graph with new edge weights which shares the vertex and adjacency arrays of another graph.
+	 */
+	private UndirectedGraph(UndirectedGraph graph, double[] edgeWeights, double[] adjacentWeights)
+	{
+		this.numVertices = graph.numVertices;
+		this.verticesA = graph.verticesA;
+		this.verticesB = graph.verticesB;
+		this.edgeWeights = edgeWeights;
 
-			((ArrayList<Integer>)(this.edges[vertexOne])).add(vertexTwo);
-			if (vertexOne != vertexTwo)
-				((ArrayList<Integer>)(this.edges[vertexTwo])).add(vertexOne);
-		}
+		this.adjacencyOffsets = graph.adjacencyOffsets;
+		this.adjacentVertices = graph.edgeOrderAdjacentVertices;
+		this.adjacentWeights = adjacentWeights;
+
+		this.edgeOrderAdjacentVertices = graph.edgeOrderAdjacentVertices;
+		this.edgeOrderAdjacentEdges = graph.edgeOrderAdjacentEdges;
+
+		this.vertexArraysShared = true;
+		graph.vertexArraysShared = true;
 	}
 
 	
@@ -163,12 +165,22 @@ public class UndirectedGraph implements java.io.Serializable
 	// ------------------------------ PUBLIC METHODS ------------------------------
 
 	/**
-	 * Quicksorts the graph by edge weight in descending order.  This quicksort implementation is 
-	 * iterative and in-place.
+	 * Quicksorts the graph by edge weight in ascending order.  This quicksort implementation is 
+	 * iterative and in-place, except that vertex arrays shared with reweighted graphs (see reweight()) 
+	 * are copied first, so that the edges of those graphs keep their weights.
 	 */
 	public void quicksortByEdgeWeight() 
 	{
-		
+		this.edgeOrderAdjacentVertices = null;
+		this.edgeOrderAdjacentEdges = null;
+
+		if (this.vertexArraysShared) {
+			this.verticesA = Arrays.copyOf(this.verticesA, this.verticesA.length);
+			this.verticesB = Arrays.copyOf(this.verticesB, this.verticesB.length);
+			this.edgeWeights = Arrays.copyOf(this.edgeWeights, this.edgeWeights.length);
+			this.vertexArraysShared = false;
+		}
+
 		if (this.edgeWeights.length <= 1)
 			return;
 
@@ -201,6 +213,130 @@ public class UndirectedGraph implements java.io.Serializable
 		}
 	}
 	
+	/**
+	 * Sorts the graph by edge weight in ascending order, as quicksortByEdgeWeight() does, but with a 
+	 * parallel radix sort of the weights followed by one permutation of the vertex and weight arrays 
+	 * into new arrays, so that any graph which shares the old arrays (see reweight()) is not changed.
+	 * Edges with tied weights keep their relative order, so the result is the same for any number of
+	 * threads.
+	 * @param numThreads The number of threads to use
+	 */
+	public void sortByEdgeWeight(int numThreads) 
+	{
+		this.edgeOrderAdjacentVertices = null;
+		this.edgeOrderAdjacentEdges = null;
+
+		final int[] order = ParallelRadixSort.sortedOrder(this.edgeWeights, numThreads);
+		final int[] oldVerticesA = this.verticesA;
+		final int[] oldVerticesB = this.verticesB;
+		final double[] oldEdgeWeights = this.edgeWeights;
+		final int[] sortedVerticesA = new int[order.length];
+		final int[] sortedVerticesB = new int[order.length];
+		final double[] sortedEdgeWeights = new double[order.length];
+
+		ParallelExecution.forEachRange(order.length, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				for (int i = start; i < end; i++) {
+					sortedVerticesA[i] = oldVerticesA[order[i]];
+					sortedVerticesB[i] = oldVerticesB[order[i]];
+					sortedEdgeWeights[i] = oldEdgeWeights[order[i]];
+				}
+			}
+		});
+
+		this.verticesA = sortedVerticesA;
+		this.verticesB = sortedVerticesB;
+		this.edgeWeights = sortedEdgeWeights;
+		this.vertexArraysShared = false;
+	}
+	
+	/**
+	 * Returns a graph with the same edges as this one and new weights, as new UndirectedGraph(numVertices,
+	 * verticesA, verticesB, newEdgeWeights) would, but which shares the vertex and adjacency arrays of 
+	 * this graph instead of building its own: only the weights of the neighbors of each vertex are 
+	 * filled, in parallel.  The new weights are not copied.  Either graph may be sorted afterwards, 
+	 * which does not change the other one.
+	 * @param newEdgeWeights The new weight of each edge, by index
+	 * @param numThreads The number of threads to use
+	 * @return The reweighted graph
+	 */
+	public UndirectedGraph reweight(double[] newEdgeWeights, int numThreads)
+	{
+		return this.reweight(newEdgeWeights, null, numThreads);
+	}
+
+	/**
+	 * As reweight(newEdgeWeights, numThreads), but if reweightedGraph was returned by an earlier 
+	 * reweight() of this graph (and this graph was not sorted since), its weights are replaced and it is 
+	 * returned, so that reweighting the same graph again and again allocates nothing.  
+	 * @param newEdgeWeights The new weight of each edge, by index
+	 * @param reweightedGraph A graph returned by reweight() of this graph to reuse, or null
+	 * @param numThreads The number of threads to use
+	 * @return The reweighted graph, which is reweightedGraph if it could be reused
+	 */
+	public UndirectedGraph reweight(final double[] newEdgeWeights, UndirectedGraph reweightedGraph, int numThreads)
+	{
+		this.buildEdgeOrderAdjacency();
+		final int[] adjacentEdges = this.edgeOrderAdjacentEdges;
+		boolean reuse = (reweightedGraph != null && reweightedGraph != this && 
+				reweightedGraph.verticesA == this.verticesA && reweightedGraph.edgeOrderAdjacentEdges == adjacentEdges);
+		final double[] adjacentWeights = reuse ? reweightedGraph.adjacentWeights : new double[adjacentEdges.length];
+
+		ParallelExecution.forEachRange(adjacentEdges.length, 
+				ParallelExecution.numThreadsFor(adjacentEdges.length, MIN_NEIGHBORS_PER_THREAD, numThreads), 
+				new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				for (int position = start; position < end; position++) {
+					adjacentWeights[position] = newEdgeWeights[adjacentEdges[position]];
+				}
+			}
+		});
+
+		if (!reuse)
+			return new UndirectedGraph(this, newEdgeWeights, adjacentWeights);
+
+		reweightedGraph.edgeWeights = newEdgeWeights;
+		return reweightedGraph;
+	}
+
+	/**
+	 * Returns the position of each vertex in the order in which a breadth-first search from 
+	 * startVertex reaches them, exploring the neighbors of each vertex in adjacency order, or -1 for 
+	 * the vertices which cannot be reached.  The ranks of the last start vertex are kept, and the 
+	 * returned array must not be modified.
+	 * @param startVertex The vertex from which the search starts
+	 * @return The rank of each vertex
+	 */
+	public synchronized int[] getBreadthFirstRanks(int startVertex)
+	{
+		if (this.breadthFirstRanks != null && this.breadthFirstStart == startVertex)
+			return this.breadthFirstRanks;
+
+		int[] ranks = new int[this.numVertices];
+		Arrays.fill(ranks, -1);
+		int[] queue = new int[this.numVertices];
+		int numQueued = 0;
+
+		ranks[startVertex] = numQueued;
+		queue[numQueued++] = startVertex;
+
+		for (int head = 0; head < numQueued; head++) {
+			int vertex = queue[head];
+
+			for (int position = this.adjacencyOffsets[vertex]; position < this.adjacencyOffsets[vertex+1]; position++) {
+				int neighbor = this.adjacentVertices[position];
+				if (ranks[neighbor] == -1) {
+					ranks[neighbor] = numQueued;
+					queue[numQueued++] = neighbor;
+				}
+			}
+		}
+
+		this.breadthFirstStart = startVertex;
+		this.breadthFirstRanks = ranks;
+		return ranks;
+	}
+	
 	public String toString()
 	{
 		String s = "";
@@ -218,6 +354,97 @@ public class UndirectedGraph implements java.io.Serializable
 
 	// ------------------------------ PRIVATE METHODS ------------------------------
 
+	/**
+	 * Returns the bin of a vertex in a HashMap with MAP_ORDER_NUM_BINS bins, where the hash code of an 
+	 * Integer is its value, and its high bits are spread into the low ones.
+	 */
+	private static int mapBin(int vertex) {
+		return (vertex ^ (vertex >>> 16)) & (MAP_ORDER_NUM_BINS - 1);
+	}
+
+	/**
+	 * Builds the compressed sparse rows of neighbors from the vertex and edge weight arrays.  The 
+	 * neighbors of each vertex are listed in the order of the edges, as the edge lists have always been.
+	 */
+	private void buildAdjacency() {
+		this.adjacencyOffsets = new int[this.numVertices+1];
+
+		for (int i = 0; i < this.edgeWeights.length; i++) {
+			this.adjacencyOffsets[this.verticesA[i]+1]++;
+			if (this.verticesA[i] != this.verticesB[i])
+				this.adjacencyOffsets[this.verticesB[i]+1]++;
+		}
+
+		for (int vertex = 0; vertex < this.numVertices; vertex++) {
+			this.adjacencyOffsets[vertex+1] += this.adjacencyOffsets[vertex];
+		}
+
+		this.adjacentVertices = new int[this.adjacencyOffsets[this.numVertices]];
+		this.adjacentWeights = new double[this.adjacencyOffsets[this.numVertices]];
+		int[] nextPositions = new int[this.numVertices];
+		System.arraycopy(this.adjacencyOffsets, 0, nextPositions, 0, this.numVertices);
+
+		for (int i = 0; i < this.edgeWeights.length; i++) {
+			int vertexOne = this.verticesA[i];
+			int vertexTwo = this.verticesB[i];
+
+			this.adjacentVertices[nextPositions[vertexOne]] = vertexTwo;
+			this.adjacentWeights[nextPositions[vertexOne]] = this.edgeWeights[i];
+			nextPositions[vertexOne]++;
+
+			if (vertexOne != vertexTwo) {
+				this.adjacentVertices[nextPositions[vertexTwo]] = vertexOne;
+				this.adjacentWeights[nextPositions[vertexTwo]] = this.edgeWeights[i];
+				nextPositions[vertexTwo]++;
+			}
+		}
+	}
+
+
+	/**
+	 * Lists the neighbors of each vertex in the current order of the edges, as buildAdjacency() would 
+	 * now, with the index of the edge of each neighbor.
+	 */
+	private synchronized void buildEdgeOrderAdjacency() {
+		if (this.edgeOrderAdjacentEdges != null)
+			return;
+
+		int[] adjacentVertices = new int[this.adjacencyOffsets[this.numVertices]];
+		int[] adjacentEdges = new int[this.adjacencyOffsets[this.numVertices]];
+		int[] nextPositions = new int[this.numVertices];
+		System.arraycopy(this.adjacencyOffsets, 0, nextPositions, 0, this.numVertices);
+
+		for (int i = 0; i < this.edgeWeights.length; i++) {
+			int vertexOne = this.verticesA[i];
+			int vertexTwo = this.verticesB[i];
+
+			adjacentVertices[nextPositions[vertexOne]] = vertexTwo;
+			adjacentEdges[nextPositions[vertexOne]] = i;
+			nextPositions[vertexOne]++;
+
+			if (vertexOne != vertexTwo) {
+				adjacentVertices[nextPositions[vertexTwo]] = vertexOne;
+				adjacentEdges[nextPositions[vertexTwo]] = i;
+				nextPositions[vertexTwo]++;
+			}
+		}
+
+		this.edgeOrderAdjacentVertices = adjacentVertices;
+		this.edgeOrderAdjacentEdges = adjacentEdges;
+	}
+
+
+	/**
+	 * Rebuilds the neighbors of graphs which were serialized before they were kept in adjacency arrays.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+
+		if (this.adjacencyOffsets == null)
+			this.buildAdjacency();
+	}
+
+
 	/**
 	 * Quicksorts the graph in the interval [startIndex, endIndex] by edge weight.
 	 * @param startIndex The lowest index to be included in the sort
@@ -338,18 +565,110 @@ public class UndirectedGraph implements java.io.Serializable
 		return this.edgeWeights[index];
 	}
 
+	/**
+	 * Returns a new list of the neighbors of a vertex, in the order of the graph's edges.  Changing
+	 * the list does not change the graph: edges are removed from an EdgeListOverlay instead.
+	 */
 	public ArrayList<Integer> getEdgeListForVertex(int vertex) {
-		return (ArrayList<Integer>)this.edges[vertex];
+		ArrayList<Integer> edgeList = new ArrayList<Integer>(this.getDegree(vertex));
+		for (int position = this.adjacencyOffsets[vertex]; position < this.adjacencyOffsets[vertex+1]; position++) {
+			edgeList.add(this.adjacentVertices[position]);
+		}
+		return edgeList;
 	}
 
+	/**
+	 * Returns a new map from each neighbor of a vertex to the weight of their edge.  Loops over the 
+	 * neighbors should use getNeighborIndicesInMapOrder() (or getDegree()), getNeighborAtIndex() and 
+	 * getNeighborWeightAtIndex() instead, which do not build a map.
+	 */
 	public Map<Integer, Double> getNeighbors(int vertex)
 	{
-		return this.hashMST.get((Integer)vertex);
+		Map<Integer, Double> neighbors = new HashMap<Integer, Double>();
+		for (int position = this.adjacencyOffsets[vertex]; position < this.adjacencyOffsets[vertex+1]; position++) {
+			neighbors.put(this.adjacentVertices[position], this.adjacentWeights[position]);
+		}
+		return neighbors;
 	}
 
+	/**
+	 * Returns the weight of the edge between two vertices, in time linear in the degree of vertexOne.
+	 * If there is more than one edge between them, the weight of the last one is returned.
+	 */
 	public double getDistance(int vertexOne, int vertexTwo)
 	{
-		return this.hashMST.get((Integer)vertexOne).get((Integer)vertexTwo);
+		for (int position = this.adjacencyOffsets[vertexOne+1]-1; position >= this.adjacencyOffsets[vertexOne]; position--) {
+			if (this.adjacentVertices[position] == vertexTwo)
+				return this.adjacentWeights[position];
+		}
+		throw new IllegalArgumentException("There is no edge between vertices " + vertexOne + " and " + vertexTwo);
+	}
+
+	/**
+	 * Returns the number of neighbors of a vertex, counting the vertex itself once if it has a self edge.
+	 */
+	public int getDegree(int vertex) {
+		return this.adjacencyOffsets[vertex+1] - this.adjacencyOffsets[vertex];
+	}
+
+	/**
+	 * Lists the neighbors of a vertex in the order in which the map returned by getNeighbors() holds 
+	 * them, without building the map when the vertex has few edges.  The label expansions visit the 
+	 * neighbors in this order, which decides the order of edges of the same weight in their queues.
+	 * @param vertex The vertex
+	 * @param indices Filled with the index of each distinct neighbor (for getNeighborAtIndex() and 
+	 * getNeighborWeightAtIndex()) at its last edge, whose weight is the one held by the map.  An array 
+	 * of getNumVertices() elements always has room for them.
+	 * @return The number of distinct neighbors
+	 */
+	public int getNeighborIndicesInMapOrder(int vertex, int[] indices) {
+		int offset = this.adjacencyOffsets[vertex];
+		int degree = this.getDegree(vertex);
+		int numNeighbors = 0;
+
+		//Larger maps may be resized or have bins turned into trees, so their order is read from a map:
+		if (degree > MAP_ORDER_MAX_DEGREE) {
+			Map<Integer, Integer> lastIndices = new HashMap<Integer, Integer>();
+			for (int index = 0; index < degree; index++) {
+				lastIndices.put(this.adjacentVertices[offset + index], index);
+			}
+			for (Integer index : lastIndices.values()) {
+				indices[numNeighbors] = index;
+				numNeighbors++;
+			}
+			return numNeighbors;
+		}
+
+		//Otherwise the map holds its keys by bin, and by first insertion within a bin:
+		for (int index = 0; index < degree; index++) {
+			int neighbor = this.adjacentVertices[offset + index];
+			int position = 0;
+			while (position < numNeighbors && this.adjacentVertices[offset + indices[position]] != neighbor) {
+				position++;
+			}
+
+			if (position < numNeighbors) {
+				indices[position] = index;
+				continue;
+			}
+
+			int bin = mapBin(neighbor);
+			while (position > 0 && mapBin(this.adjacentVertices[offset + indices[position-1]]) > bin) {
+				indices[position] = indices[position-1];
+				position--;
+			}
+			indices[position] = index;
+			numNeighbors++;
+		}
+		return numNeighbors;
+	}
+
+	public int getNeighborAtIndex(int vertex, int index) {
+		return this.adjacentVertices[this.adjacencyOffsets[vertex] + index];
+	}
+
+	public double getNeighborWeightAtIndex(int vertex, int index) {
+		return this.adjacentWeights[this.adjacencyOffsets[vertex] + index];
 	}
 
 	public int[] getVertexA()
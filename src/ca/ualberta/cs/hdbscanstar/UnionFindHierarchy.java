@@ -0,0 +1,514 @@
+package ca.ualberta.cs.hdbscanstar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Computes the cluster tree of HDBSCAN* bottom up: the edges of the minimum spanning tree are joined
+ * in ascending order of weight with a union-find, which gives a single linkage dendrogram where all
+ * components joined by edges of the same weight become children of one node.  The splits of the 
+ * clusters are then replayed from the root of the dendrogram in the order in which 
+ * computeHierarchyAndClusterTree finds them, so that the cluster tree, stabilities, constraint 
+ * satisfaction, noise levels and last clusters of the points are the same, without exploring the
+ * graph again after each level and without modifying the minimum spanning tree.
+ * The hierarchy itself is not written, so the file offsets of the clusters are left at 0.  The splits
+ * can also be recorded as a CondensedTree, which does not need the sets of points of the clusters.
+ */
+public class UnionFindHierarchy {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int numVertices;
+	private int numNodes;
+	private int root;
+
+	//Nodes 0 to numVertices-1 are the vertices, and the other nodes are components of the dendrogram:
+	private double[] nodeLevels;		//The weight of the edges which joined the children of each node
+	private int[] nodeSizes;
+	private int[] firstChildren;
+	private int[] nextSiblings;
+	private int[] childKeys;			//The largest vertex of each node on an edge removed at the level of its parent
+	private double[] selfEdgeLevels;	//The lowest weight of a self edge of each vertex
+
+	//The vertices of each node are leafOrder[nodeStarts[node]] to leafOrder[nodeStarts[node]+nodeSizes[node]-1]:
+	private int[] leafOrder;
+	private int[] nodeStarts;
+
+	//Union-find over the vertices, and the node of the component of each root:
+	private int[] parents;
+	private int[] componentSizes;
+	private int[] componentNodes;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Builds the dendrogram of a minimum spanning tree.
+	 */
+	private UnionFindHierarchy(UndirectedGraph mst) {
+		this.numVertices = mst.getNumVertices();
+		int maxNodes = 2 * this.numVertices;
+
+		this.nodeLevels = new double[maxNodes];
+		this.nodeSizes = new int[maxNodes];
+		this.firstChildren = new int[maxNodes];
+		this.nextSiblings = new int[maxNodes];
+		this.childKeys = new int[maxNodes];
+		this.selfEdgeLevels = new double[this.numVertices];
+		Arrays.fill(this.firstChildren, -1);
+		Arrays.fill(this.selfEdgeLevels, Double.POSITIVE_INFINITY);
+
+		this.parents = new int[this.numVertices];
+		this.componentSizes = new int[this.numVertices];
+		this.componentNodes = new int[this.numVertices];
+		for (int vertex = 0; vertex < this.numVertices; vertex++) {
+			this.nodeSizes[vertex] = 1;
+			this.parents[vertex] = vertex;
+			this.componentSizes[vertex] = 1;
+			this.componentNodes[vertex] = vertex;
+		}
+		this.numNodes = this.numVertices;
+
+		//The representative vertex of each node, and stamps marking the nodes and roots seen at the current level:
+		int[] representatives = new int[maxNodes];
+		int[] nodeStamps = new int[maxNodes];
+		int[] rootStamps = new int[this.numVertices];
+		int[] joinedNodes = new int[maxNodes];
+		for (int vertex = 0; vertex < this.numVertices; vertex++) {
+			representatives[vertex] = vertex;
+		}
+
+		double[] weights = mst.getEdgesWeights();
+		int[] order = ParallelRadixSort.sortedOrder(weights, 1);
+		int start = 0;
+		int level = 0;
+
+		while (start < order.length) {
+			double weight = weights[order[start]];
+			if (Double.isNaN(weight))
+				throw new IllegalArgumentException("The edge weights of the minimum spanning tree cannot be NaN.");
+
+			int end = start + 1;
+			while (end < order.length && weights[order[end]] == weight)
+				end++;
+			level++;
+
+			//Find the nodes joined at this level, and the largest vertex of each on a removed edge:
+			int numJoinedNodes = 0;
+			for (int i = start; i < end; i++) {
+				int vertexOne = mst.getFirstVertexAtIndex(order[i]);
+				int vertexTwo = mst.getSecondVertexAtIndex(order[i]);
+				if (vertexOne == vertexTwo)
+					continue;
+
+				int[] vertices = {vertexOne, vertexTwo};
+				for (int vertex : vertices) {
+					int node = this.componentNodes[this.find(vertex)];
+					if (nodeStamps[node] != level) {
+						nodeStamps[node] = level;
+						this.childKeys[node] = vertex;
+						joinedNodes[numJoinedNodes++] = node;
+					}
+					else if (vertex > this.childKeys[node])
+						this.childKeys[node] = vertex;
+				}
+			}
+
+			//Self edges make their vertex affected at this level, and can make it a valid cluster above it:
+			for (int i = start; i < end; i++) {
+				int vertex = mst.getFirstVertexAtIndex(order[i]);
+				if (vertex != mst.getSecondVertexAtIndex(order[i]))
+					continue;
+
+				if (weight < this.selfEdgeLevels[vertex])
+					this.selfEdgeLevels[vertex] = weight;
+
+				int node = this.componentNodes[this.find(vertex)];
+				if (nodeStamps[node] == level && vertex > this.childKeys[node])
+					this.childKeys[node] = vertex;
+			}
+
+			for (int i = start; i < end; i++) {
+				int vertexOne = mst.getFirstVertexAtIndex(order[i]);
+				int vertexTwo = mst.getSecondVertexAtIndex(order[i]);
+				if (vertexOne != vertexTwo)
+					this.union(vertexOne, vertexTwo);
+			}
+
+			//Create a node for each new component, with the joined nodes as its children:
+			for (int i = 0; i < numJoinedNodes; i++) {
+				int child = joinedNodes[i];
+				int componentRoot = this.find(representatives[child]);
+
+				if (rootStamps[componentRoot] != level) {
+					rootStamps[componentRoot] = level;
+					int newNode = this.numNodes++;
+					this.nodeLevels[newNode] = weight;
+					representatives[newNode] = representatives[child];
+					this.componentNodes[componentRoot] = newNode;
+				}
+
+				int parent = this.componentNodes[componentRoot];
+				this.nextSiblings[child] = this.firstChildren[parent];
+				this.firstChildren[parent] = child;
+				this.nodeSizes[parent] += this.nodeSizes[child];
+			}
+
+			start = end;
+		}
+
+		if (this.numVertices == 0) {
+			this.root = -1;
+			return;
+		}
+
+		this.root = this.componentNodes[this.find(0)];
+		if (this.nodeSizes[this.root] != this.numVertices)
+			throw new IllegalArgumentException("The minimum spanning tree must connect all vertices.");
+
+		//Order the vertices so that the vertices of each node are contiguous:
+		this.leafOrder = new int[this.numVertices];
+		this.nodeStarts = new int[this.numNodes];
+		int[] stack = new int[this.numNodes];
+		int stackSize = 0;
+		int numLeaves = 0;
+		stack[stackSize++] = this.root;
+
+		while (stackSize > 0) {
+			int node = stack[--stackSize];
+			this.nodeStarts[node] = numLeaves;
+
+			if (node < this.numVertices)
+				this.leafOrder[numLeaves++] = node;
+
+			for (int child = this.firstChildren[node]; child != -1; child = this.nextSiblings[child]) {
+				stack[stackSize++] = child;
+			}
+		}
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Computes the cluster tree from the minimum spanning tree, which gives the same clusters as
+	 * computeHierarchyAndClusterTree of HDBSCANStar (or of HDBSCANApts), with the level at which each
+	 * point becomes noise, but without writing the hierarchy.  The minimum spanning tree need not be 
+	 * sorted, and is not modified.
+	 * @param mst A minimum spanning tree, possibly with self edges, which must connect all vertices
+	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
+	 * @param constraints An optional ArrayList of Constraints to calculate cluster constraint satisfaction
+	 * @param pointNoiseLevels A double[] to be filled with the levels at which each point becomes noise
+	 * @param pointLastClusters An int[] to be filled with the last label each point had before becoming noise
+	 * @param rootBirthLevel The birth level of the root cluster (Double.NaN for HDBSCANStar, Double.MAX_VALUE for HDBSCANApts)
+	 * @param recordChildren If the labels of the children of each cluster should be added to it, as HDBSCANApts does
+	 * @return The cluster tree
+	 */
+	public static ArrayList<Cluster> computeClusterTree(UndirectedGraph mst, int minClusterSize, 
+			final ArrayList<Constraint> constraints, final double[] pointNoiseLevels, final int[] pointLastClusters, 
+			double rootBirthLevel, final boolean recordChildren) {
+
+		final UnionFindHierarchy dendrogram = new UnionFindHierarchy(mst);
+		int numVertices = dendrogram.numVertices;
+
+		final int[] currentClusterLabels = new int[numVertices];
+		Arrays.fill(currentClusterLabels, 1);
+
+		final ArrayList<Cluster> clusters = new ArrayList<Cluster>();
+		clusters.add(null);
+		clusters.add(new Cluster(1, null, rootBirthLevel, numVertices));
+
+		TreeSet<Integer> clusterOne = new TreeSet<Integer>();
+		clusterOne.add(1);
+		HDBSCANStar.calculateNumConstraintsSatisfied(clusterOne, clusters, constraints, currentClusterLabels);
+
+		dendrogram.replaySplits(minClusterSize, new SplitListener() {
+			public void noiseDetached(int node, int label, double level) {
+				TreeSet<Integer> points = dendrogram.getPoints(node);
+				HDBSCANStar.createNewCluster(points, currentClusterLabels, clusters.get(label), 0, level);
+
+				for (int point : points) {
+					pointNoiseLevels[point] = level;
+					pointLastClusters[point] = label;
+				}
+			}
+
+			public void clusterCreated(int node, int parentLabel, int label, double level) {
+				Cluster parentCluster = clusters.get(parentLabel);
+				clusters.add(HDBSCANStar.createNewCluster(dendrogram.getPoints(node), currentClusterLabels, 
+						parentCluster, label, level));
+				if (recordChildren)
+					parentCluster.addChild(label);
+			}
+
+			public void levelFinished(TreeSet<Integer> newClusterLabels) {
+				HDBSCANStar.calculateNumConstraintsSatisfied(newClusterLabels, clusters, constraints, currentClusterLabels);
+			}
+		});
+
+		return clusters;
+	}
+
+
+	/**
+	 * Computes the condensed tree from the minimum spanning tree, which holds the same clusters, 
+	 * stabilities, noise levels and last clusters of the points as computeClusterTree, in O(n) memory 
+	 * and without creating the sets of points of the clusters.  The minimum spanning tree need not be 
+	 * sorted, and is not modified.
+	 * @param mst A minimum spanning tree, possibly with self edges, which must connect all vertices
+	 * @param minClusterSize The minimum number of points which a cluster needs to be a valid cluster
+	 * @param rootBirthLevel The birth level of the root cluster (Double.NaN for HDBSCANStar, Double.MAX_VALUE for HDBSCANApts)
+	 * @return The condensed tree
+	 */
+	public static CondensedTree computeCondensedTree(UndirectedGraph mst, int minClusterSize, double rootBirthLevel) {
+		final UnionFindHierarchy dendrogram = new UnionFindHierarchy(mst);
+		final int numVertices = dendrogram.numVertices;
+
+		//Each point and each cluster but the root is the child of one row:
+		int maxClusters = dendrogram.numNodes + 2;
+		final int[] rowParents = new int[numVertices + maxClusters];
+		final int[] rowChildren = new int[numVertices + maxClusters];
+		final double[] rowLevels = new double[numVertices + maxClusters];
+		final int[] rowChildSizes = new int[numVertices + maxClusters];
+		final int[] numRows = new int[1];
+
+		final double[] birthLevels = new double[maxClusters];
+		final double[] stabilities = new double[maxClusters];
+		final int[] numClusters = {2};
+		birthLevels[1] = rootBirthLevel;
+
+		dendrogram.replaySplits(minClusterSize, new SplitListener() {
+			public void noiseDetached(int node, int label, double level) {
+				int size = dendrogram.nodeSizes[node];
+				stabilities[label]+= (size * (1/level - 1/birthLevels[label]));
+
+				for (int i = dendrogram.nodeStarts[node]; i < dendrogram.nodeStarts[node] + size; i++) {
+					this.addRow(label, dendrogram.leafOrder[i], level, 1);
+				}
+			}
+
+			public void clusterCreated(int node, int parentLabel, int label, double level) {
+				int size = dendrogram.nodeSizes[node];
+				stabilities[parentLabel]+= (size * (1/level - 1/birthLevels[parentLabel]));
+				birthLevels[label] = level;
+				numClusters[0] = label + 1;
+				this.addRow(parentLabel, numVertices + label, level, size);
+			}
+
+			public void levelFinished(TreeSet<Integer> newClusterLabels) {
+			}
+
+			private void addRow(int parent, int child, double level, int childSize) {
+				rowParents[numRows[0]] = parent;
+				rowChildren[numRows[0]] = child;
+				rowLevels[numRows[0]] = level;
+				rowChildSizes[numRows[0]] = childSize;
+				numRows[0]++;
+			}
+		});
+
+		return new CondensedTree(numVertices, Arrays.copyOf(rowParents, numRows[0]), Arrays.copyOf(rowChildren, numRows[0]), 
+				Arrays.copyOf(rowLevels, numRows[0]), Arrays.copyOf(rowChildSizes, numRows[0]), 
+				Arrays.copyOf(birthLevels, numClusters[0]), Arrays.copyOf(stabilities, numClusters[0]));
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Receives the splits of the clusters as they are replayed.
+	 */
+	private interface SplitListener {
+
+		/**
+		 * The points of a node leave the cluster with the given label as noise.
+		 */
+		void noiseDetached(int node, int label, double level);
+
+		/**
+		 * The points of a node leave the cluster with parentLabel to form a new cluster with the given label.
+		 */
+		void clusterCreated(int node, int parentLabel, int label, double level);
+
+		/**
+		 * All the clusters which split at a level have been split, creating at least one new cluster.
+		 */
+		void levelFinished(TreeSet<Integer> newClusterLabels);
+	}
+
+
+	/**
+	 * Replays the splits of the clusters from the root of the dendrogram, in descending order of 
+	 * level and, within a level, in descending order of label, as computeHierarchyAndClusterTree 
+	 * processes them.  The new clusters are given consecutive labels, starting at 2.
+	 */
+	private void replaySplits(int minClusterSize, SplitListener listener) {
+
+		//The node whose vertices are the points of each cluster, and the clusters waiting to split, highest level first:
+		final int[] clusterNodes = new int[this.numNodes + 2];
+		PriorityQueue<Integer> splittingClusters = new PriorityQueue<Integer>(11, new Comparator<Integer>() {
+			public int compare(Integer labelOne, Integer labelTwo) {
+				int comparison = Double.compare(getSplitLevel(clusterNodes[labelTwo]), getSplitLevel(clusterNodes[labelOne]));
+				return (comparison != 0) ? comparison : labelTwo.compareTo(labelOne);
+			}
+		});
+
+		int[] numClusters = {2};
+		clusterNodes[1] = this.root;
+		this.addIfSplitting(splittingClusters, 1, clusterNodes);
+
+		while (!splittingClusters.isEmpty()) {
+			double level = this.getSplitLevel(clusterNodes[splittingClusters.peek()]);
+			TreeSet<Integer> newClusterLabels = new TreeSet<Integer>();
+
+			while (!splittingClusters.isEmpty() && this.getSplitLevel(clusterNodes[splittingClusters.peek()]) == level) {
+				int label = splittingClusters.poll();
+				this.splitCluster(label, level, minClusterSize, clusterNodes, splittingClusters, newClusterLabels, 
+						numClusters, listener);
+			}
+
+			if (!newClusterLabels.isEmpty())
+				listener.levelFinished(newClusterLabels);
+		}
+	}
+
+
+	/**
+	 * Removes the edges at the level of a cluster's node, as computeHierarchyAndClusterTree does: its 
+	 * components are explored from the largest affected vertex down, components which are too small 
+	 * (or single points without a self edge below the level) become noise, and if two or more are 
+	 * valid, each becomes a new cluster, with the first one found getting the last label.
+	 */
+	private void splitCluster(int label, double level, int minClusterSize, int[] clusterNodes, 
+			PriorityQueue<Integer> splittingClusters, TreeSet<Integer> newClusterLabels, int[] numClusters, 
+			SplitListener listener) {
+
+		int node = clusterNodes[label];
+
+		//A single point whose self edge is removed becomes noise:
+		if (node < this.numVertices) {
+			listener.noiseDetached(node, label, level);
+			return;
+		}
+
+		int numChildren = 0;
+		for (int child = this.firstChildren[node]; child != -1; child = this.nextSiblings[child]) {
+			numChildren++;
+		}
+
+		//Sort the children from the largest key down (keys are distinct vertices):
+		long[] keyedChildren = new long[numChildren];
+		int numValidChildren = 0;
+		numChildren = 0;
+		for (int child = this.firstChildren[node]; child != -1; child = this.nextSiblings[child]) {
+			keyedChildren[numChildren++] = ((long)this.childKeys[child] << 32) | child;
+			if (this.isValid(child, level, minClusterSize))
+				numValidChildren++;
+		}
+		Arrays.sort(keyedChildren);
+
+		int firstValidChild = -1;
+		for (int i = numChildren-1; i >= 0; i--) {
+			int child = (int)keyedChildren[i];
+
+			if (!this.isValid(child, level, minClusterSize))
+				listener.noiseDetached(child, label, level);
+			else if (firstValidChild == -1)
+				firstValidChild = child;
+			else
+				this.createCluster(child, label, level, clusterNodes, splittingClusters, newClusterLabels, numClusters, listener);
+		}
+
+		if (numValidChildren >= 2) {
+			this.createCluster(firstValidChild, label, level, clusterNodes, splittingClusters, newClusterLabels, 
+					numClusters, listener);
+		}
+		else if (numValidChildren == 1) {
+			clusterNodes[label] = firstValidChild;
+			this.addIfSplitting(splittingClusters, label, clusterNodes);
+		}
+	}
+
+
+	/**
+	 * A component is a valid cluster if it has at least minClusterSize points and any edge left.
+	 */
+	private boolean isValid(int node, double level, int minClusterSize) {
+		if (this.nodeSizes[node] < minClusterSize)
+			return false;
+		return node >= this.numVertices || this.selfEdgeLevels[node] < level;
+	}
+
+
+	private void createCluster(int node, int parentLabel, double level, int[] clusterNodes, 
+			PriorityQueue<Integer> splittingClusters, TreeSet<Integer> newClusterLabels, int[] numClusters, 
+			SplitListener listener) {
+
+		int label = numClusters[0]++;
+		listener.clusterCreated(node, parentLabel, label, level);
+
+		newClusterLabels.add(label);
+		clusterNodes[label] = node;
+		this.addIfSplitting(splittingClusters, label, clusterNodes);
+	}
+
+
+	/**
+	 * Queues a cluster to split at the level of its node, unless it is a single point without a self edge.
+	 */
+	private void addIfSplitting(PriorityQueue<Integer> splittingClusters, int label, int[] clusterNodes) {
+		int node = clusterNodes[label];
+		if (node >= 0 && this.getSplitLevel(node) != Double.POSITIVE_INFINITY)
+			splittingClusters.add(label);
+	}
+
+
+	private double getSplitLevel(int node) {
+		if (node < this.numVertices)
+			return this.selfEdgeLevels[node];
+		return this.nodeLevels[node];
+	}
+
+
+	private TreeSet<Integer> getPoints(int node) {
+		TreeSet<Integer> points = new TreeSet<Integer>();
+		for (int i = this.nodeStarts[node]; i < this.nodeStarts[node] + this.nodeSizes[node]; i++) {
+			points.add(this.leafOrder[i]);
+		}
+		return points;
+	}
+
+
+	/**
+	 * Finds the root of a vertex's component, halving the path to it.
+	 */
+	private int find(int vertex) {
+		while (this.parents[vertex] != vertex) {
+			this.parents[vertex] = this.parents[this.parents[vertex]];
+			vertex = this.parents[vertex];
+		}
+		return vertex;
+	}
+
+
+	private void union(int vertexOne, int vertexTwo) {
+		int rootOne = this.find(vertexOne);
+		int rootTwo = this.find(vertexTwo);
+		if (rootOne == rootTwo)
+			return;
+
+		if (this.componentSizes[rootOne] < this.componentSizes[rootTwo]) {
+			int temp = rootOne;
+			rootOne = rootTwo;
+			rootTwo = temp;
+		}
+
+		this.parents[rootTwo] = rootOne;
+		this.componentSizes[rootOne] += this.componentSizes[rootTwo];
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
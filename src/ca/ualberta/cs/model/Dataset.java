@@ -9,6 +9,8 @@ import java.util.TreeSet;
 import javafx.util.Pair;
 import ssExtraction.SemiWeight;
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.neighbors.NeighborSearch;
+import ca.ualberta.cs.neighbors.NeighborSearchFactory;
 
 /**
  * @author unknown
@@ -23,9 +25,19 @@ public class Dataset
 	private ArrayList<Instance> objects = new ArrayList<Instance>();
 	private Map<Integer, Integer> classDistribution = new HashMap<Integer, Integer>();
 
+	// Neighbor search over the objects, built on the first k nearest neighbor query
+	private NeighborSearch neighborSearch = null;
+	private DistanceCalculator neighborSearchDistance = null;
+	private Map<Instance, Integer> objectPositions = null;
+
+	// Coordinates of the objects, in order, for computing distances in batches
+	private double[][] objectCoordinates = null;
+
 	public void addObject(Instance instance)
 	{
 		this.objects.add(instance);
+		this.neighborSearch = null;
+		this.objectCoordinates = null;
 		
 		Integer key = instance.getTrueLabel();
 		
@@ -59,11 +71,11 @@ public class Dataset
 	public ArrayList<Neighbor> getNeighbors(Instance instance, DistanceCalculator distance) 
 	{		
 		ArrayList<Neighbor> neighbors = new ArrayList<Neighbor>();
+		double[] distances = computeDistancesTo(instance, distance);
 
-		for (Instance i : objects) 
+		for (int i = 0; i < this.objects.size(); i++) 
 		{
-			double distanceValue = distance.computeDistance(i.getCoordinates(), instance.getCoordinates());
-			Neighbor neighbor = new Neighbor(i, distanceValue);
+			Neighbor neighbor = new Neighbor(this.objects.get(i), distances[i]);
 			neighbors.add(neighbor);
 		}
 
@@ -73,12 +85,67 @@ public class Dataset
 	}
 	
 
+	/**
+	 * Returns the k nearest objects to an instance of this data set, sorted by distance.  The instance
+	 * itself is one of the candidates, so the result matches the first k entries of
+	 * getNeighbors(instance, distance), but only k neighbors are searched for (with the NeighborSearch
+	 * chosen by NeighborSearchFactory, which is kept for later queries with the same distance).
+	 */
+	public ArrayList<Neighbor> getNeighbors(Instance instance, DistanceCalculator distance, int k) 
+	{
+		if(this.neighborSearch == null || this.neighborSearchDistance != distance)
+		{
+			this.objectPositions = new HashMap<Instance, Integer>();
+
+			for (int i = 0; i < this.objects.size(); i++) 
+			{
+				this.objectPositions.put(this.objects.get(i), i);
+			}
+
+			this.neighborSearch = NeighborSearchFactory.createSearch(getObjectCoordinates(), distance);
+			this.neighborSearchDistance = distance;
+		}
+
+		Integer position = this.objectPositions.get(instance);
+		int numSearched = Math.min(k, this.objects.size() - 1);
+
+		if(position == null || numSearched < 0)
+			return truncate(getNeighbors(instance, distance), k);
+
+		int[] indices = new int[numSearched];
+		double[] distances = new double[numSearched];
+
+		// Objects at a NaN or unbounded distance are not returned by the search, so those are scanned
+		if(this.neighborSearch.kNearestNeighbors(position, numSearched, indices, distances) < numSearched)
+			return truncate(getNeighbors(instance, distance), k);
+
+		double selfDistance = distance.computeDistance(instance.getCoordinates(), instance.getCoordinates());
+
+		if(Double.isNaN(selfDistance))
+			return truncate(getNeighbors(instance, distance), k);
+
+		ArrayList<Neighbor> neighbors = new ArrayList<Neighbor>();
+		neighbors.add(new Neighbor(instance, selfDistance));
+
+		for (int i = 0; i < numSearched; i++) 
+		{
+			neighbors.add(new Neighbor(this.objects.get(indices[i]), distances[i]));
+		}
+
+		Collections.sort(neighbors);
+
+		return truncate(neighbors, k);
+	}
+	
+
 	public ArrayList<Neighbor> getNeighborsHissclu(Instance instance, DistanceCalculator distance, SemiWeight semi, boolean isWeighted) 
 	{
 		ArrayList<Neighbor> neighbors = new ArrayList<Neighbor>();
+		double[] distances = computeDistancesTo(instance, distance);
 
-		for (Instance i : this.objects) 
+		for (int position = 0; position < this.objects.size(); position++) 
 		{
+			Instance i = this.objects.get(position);
 
 			if(i.getIndex()==instance.getIndex())
 				continue;
@@ -88,7 +155,7 @@ public class Dataset
 			if(isWeighted)
 				weight = semi.computeWeight(instance.getCoordinates(), i.getCoordinates(), instance.getIndex(), i.getIndex());
 
-			double distanceValue = distance.computeDistance(i.getCoordinates(), instance.getCoordinates())*weight;
+			double distanceValue = distances[position]*weight;
 
 			Neighbor neighbor = new Neighbor(i, distanceValue);
 
@@ -121,4 +188,42 @@ public class Dataset
 		return neighbors;
 	}
 
-}
\ No newline at end of file
+
+	/**
+	 * Computes the distance from every object (in order) to an instance in one batch, with the
+	 * object as the first argument of the distance function.
+	 */
+	private double[] computeDistancesTo(Instance instance, DistanceCalculator distance)
+	{
+		double[][] coordinates = getObjectCoordinates();
+		double[] distances = new double[coordinates.length];
+
+		distance.computeDistances(coordinates, 0, coordinates.length, new double[][] {instance.getCoordinates()}, 0, 1, distances);
+
+		return distances;
+	}
+
+
+	private double[][] getObjectCoordinates()
+	{
+		if(this.objectCoordinates == null)
+		{
+			this.objectCoordinates = new double[this.objects.size()][];
+
+			for (int i = 0; i < this.objects.size(); i++) 
+				this.objectCoordinates[i] = this.objects.get(i).getCoordinates();
+		}
+
+		return this.objectCoordinates;
+	}
+
+
+	private static ArrayList<Neighbor> truncate(ArrayList<Neighbor> neighbors, int k)
+	{
+		while(neighbors.size() > k)
+			neighbors.remove(neighbors.size() - 1);
+
+		return neighbors;
+	}
+
+}
@@ -0,0 +1,60 @@
+package ca.ualberta.cs.neighbors;
+
+import ca.ualberta.cs.distance.DistanceCalculator;
+
+/**
+ * Answers k nearest neighbor queries by computing the distance from the query point to every other
+ * point of the data set.  This works with any DistanceCalculator.
+ */
+public class BruteForceSearch implements NeighborSearch {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private double[][] dataSet;
+	private DistanceCalculator distanceFunction;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int BLOCK_SIZE = 256;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates a new BruteForceSearch over a data set.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 */
+	public BruteForceSearch(double[][] dataSet, DistanceCalculator distanceFunction) {
+		this.dataSet = dataSet;
+		this.distanceFunction = distanceFunction;
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public int kNearestNeighbors(int point, int k, int[] neighbors, double[] distances) {
+		NeighborHeap heap = new NeighborHeap(k);
+		double[] blockDistances = new double[Math.min(BLOCK_SIZE, this.dataSet.length)];
+
+		//Distances are computed in batches of BLOCK_SIZE points:
+		for (int blockStart = 0; blockStart < this.dataSet.length; blockStart+= BLOCK_SIZE) {
+			int blockEnd = Math.min(blockStart + BLOCK_SIZE, this.dataSet.length);
+			this.distanceFunction.computeDistances(this.dataSet, point, point+1, this.dataSet, blockStart, blockEnd, blockDistances);
+
+			for (int neighbor = blockStart; neighbor < blockEnd; neighbor++) {
+				if (point == neighbor)
+					continue;
+				heap.offer(neighbor, blockDistances[neighbor - blockStart]);
+			}
+		}
+
+		return heap.drain(neighbors, distances);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.dataSet.length;
+	}
+}
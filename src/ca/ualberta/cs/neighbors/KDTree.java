@@ -0,0 +1,236 @@
+package ca.ualberta.cs.neighbors;
+
+import ca.ualberta.cs.distance.MinkowskiDistance;
+
+/**
+ * A k-d tree which answers exact k nearest neighbor queries for MinkowskiDistance functions.  Each
+ * node of the tree keeps the bounding box of its points, and the search skips a node whenever the
+ * distance from the query point to the closest point of the box is not smaller than the kth
+ * nearest distance found so far.  The box bound is computed with the same distance function as
+ * the points themselves, so it can never exceed the distance to a point inside the box, and the
+ * neighbors found are exactly those a brute force scan would find.
+ */
+public class KDTree implements NeighborSearch {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private double[][] dataSet;
+	private MinkowskiDistance distanceFunction;
+	private int numAttributes;
+
+	private int[] pointIndices;		//Data set indices, ordered so that every node covers an interval
+	private int[] nodeStart;		//First position (inclusive) in pointIndices of each node
+	private int[] nodeEnd;			//Last position (exclusive) in pointIndices of each node
+	private int[] leftChild;		//Left child of each node, or -1 for leaves
+	private int[] rightChild;
+	private double[] nodeLowerBounds;	//Index [node*numAttributes + j] is the lowest value of attribute j in the node
+	private double[] nodeUpperBounds;	//Index [node*numAttributes + j] is the highest value of attribute j in the node
+	private int numNodes;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int LEAF_SIZE = 32;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Builds a k-d tree over a data set.  Nodes are split at the median of the attribute with the
+	 * largest spread, until they hold at most LEAF_SIZE points.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A MinkowskiDistance to compute distances between points
+	 */
+	public KDTree(double[][] dataSet, MinkowskiDistance distanceFunction) {
+		this.dataSet = dataSet;
+		this.distanceFunction = distanceFunction;
+		this.numAttributes = (dataSet.length == 0) ? 0 : dataSet[0].length;
+
+		this.pointIndices = new int[dataSet.length];
+		for (int i = 0; i < dataSet.length; i++) {
+			this.pointIndices[i] = i;
+		}
+
+		//Every split leaves at least LEAF_SIZE/2 points on each side:
+		int maxNodes = 2 * (dataSet.length / (LEAF_SIZE/2) + 1);
+		this.nodeStart = new int[maxNodes];
+		this.nodeEnd = new int[maxNodes];
+		this.leftChild = new int[maxNodes];
+		this.rightChild = new int[maxNodes];
+		this.nodeLowerBounds = new double[maxNodes * this.numAttributes];
+		this.nodeUpperBounds = new double[maxNodes * this.numAttributes];
+		this.numNodes = 0;
+
+		if (dataSet.length > 0)
+			buildNode(0, dataSet.length);
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public int kNearestNeighbors(int point, int k, int[] neighbors, double[] distances) {
+		NeighborHeap heap = new NeighborHeap(k);
+
+		if (this.numNodes > 0 && k > 0)
+			searchNode(0, point, this.dataSet[point], new double[this.numAttributes], heap);
+
+		return heap.drain(neighbors, distances);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Creates the node covering positions [start, end) of pointIndices, and its subtree.
+	 * @return The index of the new node
+	 */
+	private int buildNode(int start, int end) {
+		int node = this.numNodes++;
+		this.nodeStart[node] = start;
+		this.nodeEnd[node] = end;
+		this.leftChild[node] = -1;
+		this.rightChild[node] = -1;
+
+		//Compute the bounding box of the node:
+		int offset = node * this.numAttributes;
+		for (int j = 0; j < this.numAttributes; j++) {
+			this.nodeLowerBounds[offset + j] = Double.POSITIVE_INFINITY;
+			this.nodeUpperBounds[offset + j] = Double.NEGATIVE_INFINITY;
+		}
+		for (int i = start; i < end; i++) {
+			double[] attributes = this.dataSet[this.pointIndices[i]];
+			for (int j = 0; j < this.numAttributes; j++) {
+				if (attributes[j] < this.nodeLowerBounds[offset + j])
+					this.nodeLowerBounds[offset + j] = attributes[j];
+				if (attributes[j] > this.nodeUpperBounds[offset + j])
+					this.nodeUpperBounds[offset + j] = attributes[j];
+			}
+		}
+
+		if (end - start <= LEAF_SIZE)
+			return node;
+
+		//Split on the attribute with the largest spread:
+		int splitAttribute = -1;
+		double largestSpread = 0;
+		for (int j = 0; j < this.numAttributes; j++) {
+			double spread = this.nodeUpperBounds[offset + j] - this.nodeLowerBounds[offset + j];
+			if (spread > largestSpread) {
+				largestSpread = spread;
+				splitAttribute = j;
+			}
+		}
+
+		//All points in the node are identical (or have missing values), so it stays a leaf:
+		if (splitAttribute == -1)
+			return node;
+
+		int middle = (start + end) >>> 1;
+		selectMedian(start, end, middle, splitAttribute);
+
+		this.leftChild[node] = buildNode(start, middle);
+		this.rightChild[node] = buildNode(middle, end);
+		return node;
+	}
+
+
+	/**
+	 * Reorders positions [start, end) of pointIndices so that position middle holds the point that
+	 * would be there if the interval were sorted by the given attribute, with no larger values
+	 * before it and no smaller values after it.
+	 */
+	private void selectMedian(int start, int end, int middle, int attribute) {
+		int left = start;
+		int right = end - 1;
+
+		while (left < right) {
+			double pivot = this.dataSet[this.pointIndices[(left + right) >>> 1]][attribute];
+			int i = left;
+			int j = right;
+
+			while (i <= j) {
+				while (this.dataSet[this.pointIndices[i]][attribute] < pivot)
+					i++;
+				while (this.dataSet[this.pointIndices[j]][attribute] > pivot)
+					j--;
+				if (i <= j) {
+					int temp = this.pointIndices[i];
+					this.pointIndices[i] = this.pointIndices[j];
+					this.pointIndices[j] = temp;
+					i++;
+					j--;
+				}
+			}
+
+			if (middle <= j)
+				right = j;
+			else if (middle >= i)
+				left = i;
+			else
+				break;
+		}
+	}
+
+
+	/**
+	 * Computes a lower bound on the distance from a query point to any point of a node, by
+	 * measuring the distance to the closest point of the node's bounding box.
+	 * @param closest A buffer which will hold the closest point of the box
+	 */
+	private double lowerBound(int node, double[] query, double[] closest) {
+		int offset = node * this.numAttributes;
+
+		for (int j = 0; j < this.numAttributes; j++) {
+			double value = query[j];
+			if (value < this.nodeLowerBounds[offset + j])
+				value = this.nodeLowerBounds[offset + j];
+			else if (value > this.nodeUpperBounds[offset + j])
+				value = this.nodeUpperBounds[offset + j];
+			closest[j] = value;
+		}
+
+		return this.distanceFunction.computeDistance(query, closest);
+	}
+
+
+	/**
+	 * Searches a node for neighbors of the query point, visiting the closer child first.  A child
+	 * is skipped only if its lower bound is not smaller than the current kth nearest distance (a NaN
+	 * bound never causes a skip).
+	 */
+	private void searchNode(int node, int point, double[] query, double[] closest, NeighborHeap heap) {
+		if (this.leftChild[node] == -1) {
+			for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+				int neighbor = this.pointIndices[i];
+				if (neighbor == point)
+					continue;
+				// Distances beyond the current kth nearest distance would be rejected anyway, so they need not
+				// be computed in full.
+				double distance = this.distanceFunction.computeDistance(query, this.dataSet[neighbor], heap.getThreshold());
+				heap.offer(neighbor, distance);
+			}
+			return;
+		}
+
+		int nearChild = this.leftChild[node];
+		int farChild = this.rightChild[node];
+		double nearBound = lowerBound(nearChild, query, closest);
+		double farBound = lowerBound(farChild, query, closest);
+
+		if (farBound < nearBound) {
+			int tempChild = nearChild;
+			nearChild = farChild;
+			farChild = tempChild;
+			double tempBound = nearBound;
+			nearBound = farBound;
+			farBound = tempBound;
+		}
+
+		if (!(nearBound >= heap.getThreshold()))
+			searchNode(nearChild, point, query, closest, heap);
+		if (!(farBound >= heap.getThreshold()))
+			searchNode(farChild, point, query, closest, heap);
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.dataSet.length;
+	}
+}
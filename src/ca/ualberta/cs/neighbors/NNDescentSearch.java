@@ -0,0 +1,439 @@
+package ca.ualberta.cs.neighbors;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ca.ualberta.cs.distance.DistanceCalculator;
+
+/**
+ * An approximate k nearest neighbor graph built with NN-Descent (Dong, Charikar and Li, 2011).  Each
+ * point starts with random neighbors, and the graph is refined by comparing the neighbors of each
+ * point with each other ("a neighbor of a neighbor is likely to be a neighbor"), until few
+ * neighbor lists change in an iteration.  Only candidates which are new since the last iteration
+ * are joined, and at most sampleRate * graphSize of them per point, which trades recall for speed.
+ * <p>
+ * Unlike the other NeighborSearch implementations, this one is NOT exact: queries return the nearest
+ * neighbors found in the graph, which may miss some true neighbors, and at most graphSize of them.
+ * The recall can be measured against a brute force scan with estimateRecall.  This is meant for
+ * high dimensional data sets where no exact index prunes well.
+ */
+public class NNDescentSearch implements NeighborSearch {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private double[][] dataSet;
+	private DistanceCalculator distanceFunction;
+	private int graphSize;
+	private double sampleRate;
+	private long seed;
+
+	//For each point, a max-heap of graphSize neighbors at positions [point*graphSize, (point+1)*graphSize),
+	//where empty positions are farther than any neighbor (so the root is empty while any position is):
+	private int[] graphNeighbors;		//Neighbor indices, or -1 for empty positions
+	private double[] graphDistances;	//Neighbor distances, with NaN stored as positive infinity
+	private boolean[] graphIsNew;		//If the neighbor has not been joined with the others yet
+	private int numIterations;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	public static final double DEFAULT_SAMPLE_RATE = 1.0;
+	public static final int DEFAULT_MAX_ITERATIONS = 20;
+	public static final double DEFAULT_TERMINATION_RATE = 0.001;
+	public static final long DEFAULT_SEED = 1L;
+
+	private static final int MAX_RANDOM_ATTEMPTS_PER_NEIGHBOR = 4;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Builds an approximate k nearest neighbor graph with the default parameters.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param graphSize The number of neighbors kept for each point, which is the largest k that
+	 * can be queried
+	 */
+	public NNDescentSearch(double[][] dataSet, DistanceCalculator distanceFunction, int graphSize) {
+		this(dataSet, distanceFunction, graphSize, DEFAULT_SAMPLE_RATE, DEFAULT_MAX_ITERATIONS,
+				DEFAULT_TERMINATION_RATE, DEFAULT_SEED);
+	}
+
+
+	/**
+	 * Builds an approximate k nearest neighbor graph.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @param graphSize The number of neighbors kept for each point, which is the largest k that
+	 * can be queried (a larger graph also gives a better recall for smaller k)
+	 * @param sampleRate The fraction (in (0, 1]) of each neighbor list joined in each iteration, lower
+	 * values are faster but give a lower recall
+	 * @param maxIterations The largest number of refinement iterations
+	 * @param terminationRate The refinement stops when fewer than terminationRate * n * graphSize
+	 * neighbors change in an iteration
+	 * @param seed The seed of the random number generator, so that the graph is the same on every run
+	 */
+	public NNDescentSearch(double[][] dataSet, DistanceCalculator distanceFunction, int graphSize,
+			double sampleRate, int maxIterations, double terminationRate, long seed) {
+		if (graphSize < 1)
+			throw new IllegalArgumentException("The graph size must be at least 1.");
+		if (!(sampleRate > 0 && sampleRate <= 1))
+			throw new IllegalArgumentException("The sample rate must be in (0, 1].");
+
+		this.dataSet = dataSet;
+		this.distanceFunction = distanceFunction;
+		this.graphSize = graphSize;
+		this.sampleRate = sampleRate;
+		this.seed = seed;
+
+		int numPoints = dataSet.length;
+		this.graphNeighbors = new int[numPoints * graphSize];
+		this.graphDistances = new double[numPoints * graphSize];
+		this.graphIsNew = new boolean[numPoints * graphSize];
+		Arrays.fill(this.graphNeighbors, -1);
+		Arrays.fill(this.graphDistances, Double.POSITIVE_INFINITY);
+
+		Random random = new Random(seed);
+		initializeGraph(random);
+
+		this.numIterations = 0;
+		while (this.numIterations < maxIterations) {
+			this.numIterations++;
+			long numUpdates = refineGraph(random);
+
+			if (numUpdates <= terminationRate * numPoints * graphSize)
+				break;
+		}
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Returns the k nearest neighbors of a point found in the graph.  If k is larger than the graph
+	 * size, only graphSize neighbors are returned.
+	 */
+	public int kNearestNeighbors(int point, int k, int[] neighbors, double[] distances) {
+		NeighborHeap heap = new NeighborHeap(k);
+		int offset = point * this.graphSize;
+
+		for (int position = offset; position < offset + this.graphSize; position++) {
+			if (this.graphNeighbors[position] != -1)
+				heap.offer(this.graphNeighbors[position], this.graphDistances[position]);
+		}
+
+		return heap.drain(neighbors, distances);
+	}
+
+
+	/**
+	 * Estimates the recall of the graph, by comparing the k nearest neighbors of a random sample of
+	 * points with the exact ones found by a brute force scan.  A neighbor found in the graph counts
+	 * as correct if it is not farther than the exact kth nearest neighbor, so ties are not penalized.
+	 * @param k The number of neighbors to compare, at most the graph size
+	 * @param sampleSize The number of points to sample
+	 * @return The fraction of exact neighbors which were found, between 0 and 1
+	 */
+	public double estimateRecall(int k, int sampleSize) {
+		int numPoints = this.dataSet.length;
+		int[] sample = samplePoints(numPoints, Math.min(sampleSize, numPoints), new Random(this.seed + 1));
+
+		BruteForceSearch exactSearch = new BruteForceSearch(this.dataSet, this.distanceFunction);
+		int[] neighbors = new int[k];
+		double[] distances = new double[k];
+		long numExact = 0;
+		long numFound = 0;
+
+		for (int point : sample) {
+			int numExactNeighbors = exactSearch.kNearestNeighbors(point, k, neighbors, distances);
+			if (numExactNeighbors == 0)
+				continue;
+			double maxDistance = distances[numExactNeighbors-1];
+
+			int numApproximateNeighbors = kNearestNeighbors(point, k, neighbors, distances);
+			for (int i = 0; i < numApproximateNeighbors; i++) {
+				if (distances[i] <= maxDistance)
+					numFound++;
+			}
+			numExact+= numExactNeighbors;
+		}
+
+		if (numExact == 0)
+			return 1.0;
+		else
+			return (double)numFound / numExact;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Fills the neighbor list of every point with random neighbors, or with every other point if
+	 * there are no more than graphSize of them.  The random draws are capped, and the positions still
+	 * empty after them are filled by a scan over the other points, so points at an infinite distance
+	 * from the others (e.g. rows of zeros under cosine) do not stall the initialization.
+	 */
+	private void initializeGraph(Random random) {
+		int numPoints = this.dataSet.length;
+
+		for (int point = 0; point < numPoints; point++) {
+			if (numPoints - 1 <= this.graphSize) {
+				for (int neighbor = 0; neighbor < numPoints; neighbor++) {
+					if (neighbor != point)
+						insertNeighbor(point, neighbor, computeDistance(point, neighbor));
+				}
+			}
+			else {
+				int numInserted = 0;
+				int numAttempts = 0;
+				while (numInserted < this.graphSize && numAttempts < MAX_RANDOM_ATTEMPTS_PER_NEIGHBOR * this.graphSize) {
+					int neighbor = random.nextInt(numPoints);
+					if (neighbor != point && insertNeighbor(point, neighbor, computeDistance(point, neighbor)))
+						numInserted++;
+					numAttempts++;
+				}
+
+				int offset = point * this.graphSize;
+				for (int i = 1; i < numPoints && this.graphNeighbors[offset] == -1; i++) {
+					int neighbor = (point + i) % numPoints;
+					insertNeighbor(point, neighbor, computeDistance(point, neighbor));
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Performs one NN-Descent iteration: builds the lists of new and old candidates of every point
+	 * (including reverse neighbors), and joins every pair of candidates of a point which involves a
+	 * new candidate.
+	 * @return The number of neighbor list updates made
+	 */
+	private long refineGraph(Random random) {
+		int numPoints = this.dataSet.length;
+		int maxSampled = Math.max(1, (int)Math.ceil(this.sampleRate * this.graphSize));
+
+		int[][] newCandidates = new int[numPoints][];
+		int[] numNewCandidates = new int[numPoints];
+		int[][] oldCandidates = new int[numPoints][];
+		int[] numOldCandidates = new int[numPoints];
+		int[][] newReverse = new int[numPoints][];
+		int[] numNewReverse = new int[numPoints];
+		int[][] oldReverse = new int[numPoints][];
+		int[] numOldReverse = new int[numPoints];
+
+		//Forward candidates: a sample of the new neighbors (which are then marked old) and all old neighbors:
+		int[] newPositions = new int[this.graphSize];
+		for (int point = 0; point < numPoints; point++) {
+			int offset = point * this.graphSize;
+			int numNewPositions = 0;
+
+			for (int position = offset; position < offset + this.graphSize; position++) {
+				int neighbor = this.graphNeighbors[position];
+				if (neighbor == -1)
+					continue;
+				if (this.graphIsNew[position])
+					newPositions[numNewPositions++] = position;
+				else {
+					append(oldCandidates, numOldCandidates, point, neighbor);
+					append(oldReverse, numOldReverse, neighbor, point);
+				}
+			}
+
+			shufflePrefix(newPositions, numNewPositions, maxSampled, random);
+			for (int i = 0; i < Math.min(numNewPositions, maxSampled); i++) {
+				int position = newPositions[i];
+				this.graphIsNew[position] = false;
+				append(newCandidates, numNewCandidates, point, this.graphNeighbors[position]);
+				append(newReverse, numNewReverse, this.graphNeighbors[position], point);
+			}
+		}
+
+		//Add a sample of the reverse neighbors, skipping duplicates:
+		int[] lastSeen = new int[numPoints];
+		Arrays.fill(lastSeen, -1);
+		for (int point = 0; point < numPoints; point++) {
+			for (int i = 0; i < numNewCandidates[point]; i++) {
+				lastSeen[newCandidates[point][i]] = point;
+			}
+			shufflePrefix(newReverse[point], numNewReverse[point], maxSampled, random);
+			for (int i = 0; i < Math.min(numNewReverse[point], maxSampled); i++) {
+				int neighbor = newReverse[point][i];
+				if (lastSeen[neighbor] != point) {
+					lastSeen[neighbor] = point;
+					append(newCandidates, numNewCandidates, point, neighbor);
+				}
+			}
+		}
+
+		Arrays.fill(lastSeen, -1);
+		for (int point = 0; point < numPoints; point++) {
+			for (int i = 0; i < numOldCandidates[point]; i++) {
+				lastSeen[oldCandidates[point][i]] = point;
+			}
+			shufflePrefix(oldReverse[point], numOldReverse[point], maxSampled, random);
+			for (int i = 0; i < Math.min(numOldReverse[point], maxSampled); i++) {
+				int neighbor = oldReverse[point][i];
+				if (lastSeen[neighbor] != point) {
+					lastSeen[neighbor] = point;
+					append(oldCandidates, numOldCandidates, point, neighbor);
+				}
+			}
+		}
+
+		//Local join:
+		long numUpdates = 0;
+		for (int point = 0; point < numPoints; point++) {
+			int[] newList = newCandidates[point];
+			int[] oldList = oldCandidates[point];
+
+			for (int i = 0; i < numNewCandidates[point]; i++) {
+				int first = newList[i];
+
+				for (int j = i+1; j < numNewCandidates[point]; j++) {
+					numUpdates+= joinPair(first, newList[j]);
+				}
+				for (int j = 0; j < numOldCandidates[point]; j++) {
+					if (first != oldList[j])
+						numUpdates+= joinPair(first, oldList[j]);
+				}
+			}
+		}
+
+		return numUpdates;
+	}
+
+
+	/**
+	 * Offers each of two points to the neighbor list of the other.
+	 * @return The number of neighbor lists which changed
+	 */
+	private int joinPair(int first, int second) {
+		double distance = computeDistance(first, second);
+		int numUpdates = 0;
+
+		if (insertNeighbor(first, second, distance))
+			numUpdates++;
+		if (insertNeighbor(second, first, distance))
+			numUpdates++;
+
+		return numUpdates;
+	}
+
+
+	/**
+	 * Inserts a neighbor into the neighbor list of a point if the list has an empty position or the
+	 * neighbor is closer than the farthest neighbor in the list, and it is not in the list yet.
+	 * @return true if the list changed
+	 */
+	private boolean insertNeighbor(int point, int neighbor, double distance) {
+		int offset = point * this.graphSize;
+
+		if (this.graphNeighbors[offset] != -1 && !(distance < this.graphDistances[offset]))
+			return false;
+
+		for (int position = offset; position < offset + this.graphSize; position++) {
+			if (this.graphNeighbors[position] == neighbor)
+				return false;
+		}
+
+		//Replace the root and sift it down:
+		int position = 0;
+		while (true) {
+			int child = 2*position + 1;
+			if (child >= this.graphSize)
+				break;
+			if (child + 1 < this.graphSize && isFarther(offset + child + 1, offset + child))
+				child++;
+			if (this.graphNeighbors[offset + child] != -1 && !(this.graphDistances[offset + child] > distance))
+				break;
+			this.graphNeighbors[offset + position] = this.graphNeighbors[offset + child];
+			this.graphDistances[offset + position] = this.graphDistances[offset + child];
+			this.graphIsNew[offset + position] = this.graphIsNew[offset + child];
+			position = child;
+		}
+		this.graphNeighbors[offset + position] = neighbor;
+		this.graphDistances[offset + position] = distance;
+		this.graphIsNew[offset + position] = true;
+
+		return true;
+	}
+
+
+	/**
+	 * Returns true if the neighbor at a position is farther than the one at another position, where
+	 * an empty position is farther than any neighbor.
+	 */
+	private boolean isFarther(int position, int otherPosition) {
+		if (this.graphNeighbors[otherPosition] == -1)
+			return false;
+		if (this.graphNeighbors[position] == -1)
+			return true;
+		return this.graphDistances[position] > this.graphDistances[otherPosition];
+	}
+
+
+	/**
+	 * Computes the distance between two points, replacing NaN by positive infinity so that the
+	 * heap order stays well defined.
+	 */
+	private double computeDistance(int first, int second) {
+		double distance = this.distanceFunction.computeDistance(this.dataSet[first], this.dataSet[second]);
+
+		if (Double.isNaN(distance))
+			return Double.POSITIVE_INFINITY;
+		else
+			return distance;
+	}
+
+
+	/**
+	 * Appends a value to one of a set of growable int lists.
+	 */
+	private static void append(int[][] lists, int[] sizes, int list, int value) {
+		if (lists[list] == null)
+			lists[list] = new int[4];
+		else if (sizes[list] == lists[list].length)
+			lists[list] = Arrays.copyOf(lists[list], 2 * sizes[list]);
+
+		lists[list][sizes[list]++] = value;
+	}
+
+
+	/**
+	 * Moves a random selection of count values to the beginning of the first size positions of an
+	 * array (a partial Fisher-Yates shuffle).
+	 */
+	private static void shufflePrefix(int[] values, int size, int count, Random random) {
+		for (int i = 0; i < Math.min(size, count); i++) {
+			int j = i + random.nextInt(size - i);
+			int temp = values[i];
+			values[i] = values[j];
+			values[j] = temp;
+		}
+	}
+
+
+	/**
+	 * Selects sampleSize distinct points at random.
+	 */
+	private static int[] samplePoints(int numPoints, int sampleSize, Random random) {
+		int[] points = new int[numPoints];
+		for (int i = 0; i < numPoints; i++) {
+			points[i] = i;
+		}
+		shufflePrefix(points, numPoints, sampleSize, random);
+
+		return Arrays.copyOf(points, sampleSize);
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.dataSet.length;
+	}
+
+	public int getGraphSize() {
+		return this.graphSize;
+	}
+
+	public int getNumIterations() {
+		return this.numIterations;
+	}
+}
@@ -0,0 +1,146 @@
+package ca.ualberta.cs.neighbors;
+
+/**
+ * A bounded max-heap holding the k nearest candidates found so far during a neighbor search.
+ * A candidate is only accepted if its distance is strictly smaller than the current kth distance
+ * (or than Double.MAX_VALUE while fewer than k candidates are held), which matches the behavior
+ * of the sorted insertion used by the original core distance computation.
+ */
+class NeighborHeap {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private int capacity;
+	private int size;
+	private int[] indices;
+	private double[] distances;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Creates a new, empty NeighborHeap.
+	 * @param capacity The number of neighbors (k) to keep
+	 */
+	public NeighborHeap(int capacity) {
+		this.capacity = capacity;
+		this.size = 0;
+		this.indices = new int[capacity];
+		this.distances = new double[capacity];
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Offers a candidate neighbor to the heap, which keeps it if it is one of the k nearest so far.
+	 * @param index The index of the candidate
+	 * @param distance The distance from the query point to the candidate
+	 */
+	public void offer(int index, double distance) {
+		if (this.size < this.capacity) {
+			if (!(distance < Double.MAX_VALUE))
+				return;
+
+			int position = this.size++;
+			while (position > 0) {
+				int parent = (position-1) >> 1;
+				if (!greater(index, distance, this.indices[parent], this.distances[parent]))
+					break;
+				this.indices[position] = this.indices[parent];
+				this.distances[position] = this.distances[parent];
+				position = parent;
+			}
+			this.indices[position] = index;
+			this.distances[position] = distance;
+		}
+		else if (this.capacity > 0 && distance < this.distances[0]) {
+			siftDown(index, distance);
+		}
+	}
+
+
+	/**
+	 * Returns the distance a candidate must be strictly smaller than to be accepted by the heap.
+	 * @return The current kth nearest distance, or Double.MAX_VALUE if fewer than k candidates are held
+	 */
+	public double getThreshold() {
+		if (this.size < this.capacity)
+			return Double.MAX_VALUE;
+		else
+			return this.distances[0];
+	}
+
+
+	/**
+	 * Empties the heap into the given arrays, nearest neighbor first.  Neighbors at equal distances
+	 * are ordered by index.
+	 * @param neighbors An int[] which will hold the neighbor indices
+	 * @param neighborDistances A double[] which will hold the neighbor distances
+	 * @return The number of neighbors written
+	 */
+	public int drain(int[] neighbors, double[] neighborDistances) {
+		int numNeighbors = this.size;
+
+		while (this.size > 0) {
+			int last = --this.size;
+			neighbors[last] = this.indices[0];
+			neighborDistances[last] = this.distances[0];
+			if (last > 0)
+				siftDown(this.indices[last], this.distances[last]);
+		}
+
+		return numNeighbors;
+	}
+
+
+	/**
+	 * Removes every candidate from the heap, so that it can be reused for another query.
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Replaces the root of the heap with the given candidate and restores the heap order.
+	 */
+	private void siftDown(int index, double distance) {
+		int position = 0;
+		int half = this.size >> 1;
+
+		while (position < half) {
+			int child = 2*position + 1;
+			int right = child + 1;
+			if (right < this.size && greater(this.indices[right], this.distances[right], this.indices[child], this.distances[child]))
+				child = right;
+			if (!greater(this.indices[child], this.distances[child], index, distance))
+				break;
+			this.indices[position] = this.indices[child];
+			this.distances[position] = this.distances[child];
+			position = child;
+		}
+		this.indices[position] = index;
+		this.distances[position] = distance;
+	}
+
+
+	/**
+	 * Orders candidates by distance, breaking ties by index.
+	 */
+	private static boolean greater(int indexOne, double distanceOne, int indexTwo, double distanceTwo) {
+		if (distanceOne > distanceTwo)
+			return true;
+		else if (distanceOne < distanceTwo)
+			return false;
+		else
+			return indexOne > indexTwo;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getSize() {
+		return this.size;
+	}
+}
@@ -0,0 +1,32 @@
+package ca.ualberta.cs.neighbors;
+
+/**
+ * An interface for classes which answer k nearest neighbor queries over the points of a data set.
+ * Points are identified by their index in the data set.  Implementations are exact unless they
+ * say otherwise (see NNDescentSearch): the distances returned are the same values a scan over every
+ * other point would find.  Queries may be issued concurrently from several threads once the search
+ * has been constructed.
+ */
+public interface NeighborSearch {
+
+	/**
+	 * Finds the k nearest neighbors of a point in the data set, not including the point itself.
+	 * Distances which are not smaller than Double.MAX_VALUE (or which are NaN) never qualify as
+	 * neighbors, so fewer than k neighbors may be returned.
+	 * @param point The index of the query point
+	 * @param k The number of neighbors to find
+	 * @param neighbors An int[] of length at least k, which will be filled with the indices of the
+	 * neighbors found, nearest first
+	 * @param distances A double[] of length at least k, which will be filled with the distances to
+	 * the neighbors found, in ascending order
+	 * @return The number of neighbors found
+	 */
+	public int kNearestNeighbors(int point, int k, int[] neighbors, double[] distances);
+
+
+	/**
+	 * Returns the number of points in the data set being searched.
+	 * @return The number of points
+	 */
+	public int getNumPoints();
+}
@@ -0,0 +1,75 @@
+package ca.ualberta.cs.neighbors;
+
+import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.MetricDistance;
+import ca.ualberta.cs.distance.MinkowskiDistance;
+import ca.ualberta.cs.distance.TanimotoSimilarity;
+
+/**
+ * Chooses a NeighborSearch implementation for a data set and distance function.
+ */
+public class NeighborSearchFactory {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	/**
+	 * Data sets smaller than this are always scanned, since building an index would not pay off.
+	 */
+	public static final int MIN_INDEXED_POINTS = 256;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	/**
+	 * Creates a NeighborSearch for a data set.  A KDTree is used for MinkowskiDistance functions
+	 * when the data set has few enough attributes for the tree to prune well (2^d <= n), a VPTree is
+	 * used for other MetricDistance functions, and a BruteForceSearch is used for small data sets and
+	 * for distance functions which are not declared to be metrics.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A DistanceCalculator to compute distances between points
+	 * @return A NeighborSearch over the data set
+	 */
+	public static NeighborSearch createSearch(double[][] dataSet, DistanceCalculator distanceFunction) {
+		if (dataSet.length < MIN_INDEXED_POINTS)
+			return new BruteForceSearch(dataSet, distanceFunction);
+
+		if (distanceFunction instanceof MinkowskiDistance) {
+			int numAttributes = dataSet[0].length;
+			if (numAttributes < 31 && (1 << numAttributes) <= dataSet.length)
+				return new KDTree(dataSet, (MinkowskiDistance)distanceFunction);
+		}
+
+		if (isMetric(dataSet, distanceFunction))
+			return new VPTree(dataSet, (MetricDistance)distanceFunction);
+
+		return new BruteForceSearch(dataSet, distanceFunction);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Checks whether a distance function can be treated as a metric on a data set.  The tanimoto
+	 * distance is only a metric (the jaccard distance) when every attribute is 0 or 1.
+	 */
+	private static boolean isMetric(double[][] dataSet, DistanceCalculator distanceFunction) {
+		if (!(distanceFunction instanceof MetricDistance))
+			return false;
+
+		if (distanceFunction instanceof TanimotoSimilarity) {
+			for (double[] attributes : dataSet) {
+				for (double value : attributes) {
+					if (value != 0 && value != 1)
+						return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+}
@@ -0,0 +1,265 @@
+package ca.ualberta.cs.neighbors;
+
+import java.util.Random;
+
+import ca.ualberta.cs.distance.MetricDistance;
+
+/**
+ * A vantage-point tree which answers exact k nearest neighbor queries for any MetricDistance.  Each
+ * node picks a vantage point and splits the remaining points of the node into an inner half (closer
+ * to the vantage point) and an outer half, remembering the largest metric distance of the inner half
+ * and the smallest metric distance of the outer half.  The triangle inequality then gives a lower
+ * bound on the distance from a query to every point of a half, and halves whose bound is larger than
+ * the current kth nearest distance are skipped.
+ * <p>
+ * Metric distances are compared with a small tolerance, so that rounding errors in the computed
+ * distances (e.g. the cancellation in 1 - cos(X,Y)) can never cause a true neighbor to be skipped.
+ * Points whose distance to a vantage point is NaN are kept apart and always scanned.
+ */
+public class VPTree implements NeighborSearch {
+
+	// ------------------------------ PRIVATE VARIABLES ------------------------------
+
+	private double[][] dataSet;
+	private MetricDistance distanceFunction;
+
+	private int[] pointIndices;		//Data set indices, ordered so that every node covers an interval
+	private int[] vantagePoints;	//Vantage point (data set index) of each node, or -1 for leaves
+	private int[] nodeStart;		//First position (inclusive) in pointIndices of each node's points
+	private int[] nodeEnd;			//Last position (exclusive) in pointIndices of each node's points
+	private int[] unboundedEnd;		//Positions [nodeStart, unboundedEnd) hold points at a NaN distance from the vantage point
+	private int[] innerChild;
+	private int[] outerChild;
+	private double[] innerRadius;	//Largest metric distance from the vantage point to a point of the inner child
+	private double[] outerRadius;	//Smallest metric distance from the vantage point to a point of the outer child
+	private int numNodes;
+
+	// ------------------------------ CONSTANTS ------------------------------
+
+	private static final int LEAF_SIZE = 16;
+	private static final double RELATIVE_TOLERANCE = 1e-9;
+	private static final double ABSOLUTE_TOLERANCE = 1e-6;
+	private static final long SEED = 1L;
+
+	// ------------------------------ CONSTRUCTORS ------------------------------
+
+	/**
+	 * Builds a vantage-point tree over a data set.  Vantage points are chosen at random, with a fixed
+	 * seed so that the tree (and the order in which ties are found) is the same on every run.
+	 * @param dataSet A double[][] where index [i][j] indicates the jth attribute of data point i
+	 * @param distanceFunction A MetricDistance to compute distances between points
+	 */
+	public VPTree(double[][] dataSet, MetricDistance distanceFunction) {
+		this.dataSet = dataSet;
+		this.distanceFunction = distanceFunction;
+
+		this.pointIndices = new int[dataSet.length];
+		for (int i = 0; i < dataSet.length; i++) {
+			this.pointIndices[i] = i;
+		}
+
+		//Every internal node consumes its vantage point, so there are at most n internal nodes:
+		int maxNodes = 2 * dataSet.length + 1;
+		this.vantagePoints = new int[maxNodes];
+		this.nodeStart = new int[maxNodes];
+		this.nodeEnd = new int[maxNodes];
+		this.unboundedEnd = new int[maxNodes];
+		this.innerChild = new int[maxNodes];
+		this.outerChild = new int[maxNodes];
+		this.innerRadius = new double[maxNodes];
+		this.outerRadius = new double[maxNodes];
+		this.numNodes = 0;
+
+		if (dataSet.length > 0)
+			buildNode(0, dataSet.length, new double[dataSet.length], new Random(SEED));
+	}
+
+	// ------------------------------ PUBLIC METHODS ------------------------------
+
+	public int kNearestNeighbors(int point, int k, int[] neighbors, double[] distances) {
+		NeighborHeap heap = new NeighborHeap(k);
+
+		if (this.numNodes > 0 && k > 0)
+			searchNode(0, point, this.dataSet[point], heap);
+
+		return heap.drain(neighbors, distances);
+	}
+
+	// ------------------------------ PRIVATE METHODS ------------------------------
+
+	/**
+	 * Creates the node covering positions [start, end) of pointIndices, and its subtree.
+	 * @param metricDistances A buffer used to hold the metric distances to the vantage point, indexed by position
+	 * @return The index of the new node
+	 */
+	private int buildNode(int start, int end, double[] metricDistances, Random random) {
+		int node = this.numNodes++;
+		this.vantagePoints[node] = -1;
+		this.nodeStart[node] = start;
+		this.nodeEnd[node] = end;
+		this.unboundedEnd[node] = start;
+		this.innerChild[node] = -1;
+		this.outerChild[node] = -1;
+
+		if (end - start <= LEAF_SIZE)
+			return node;
+
+		//Move a random vantage point out of the interval:
+		swapPositions(start, start + random.nextInt(end - start));
+		int vantagePoint = this.pointIndices[start];
+		this.vantagePoints[node] = vantagePoint;
+		start++;
+
+		//Points at a NaN distance from the vantage point can't be bounded, so they go first:
+		int unbounded = start;
+		for (int i = start; i < end; i++) {
+			double metricDistance = this.distanceFunction.toMetric(
+					this.distanceFunction.computeDistance(this.dataSet[vantagePoint], this.dataSet[this.pointIndices[i]]));
+			if (Double.isNaN(metricDistance)) {
+				metricDistances[i] = metricDistances[unbounded];
+				swapPositions(i, unbounded);
+				unbounded++;
+			}
+			else
+				metricDistances[i] = metricDistance;
+		}
+		this.nodeStart[node] = start;
+		this.unboundedEnd[node] = unbounded;
+
+		if (end - unbounded == 0)
+			return node;
+
+		//Split the remaining points at the median metric distance:
+		int middle = (unbounded + end) >>> 1;
+		selectMedian(unbounded, end, middle, metricDistances);
+
+		double largestInner = Double.NEGATIVE_INFINITY;
+		for (int i = unbounded; i < middle; i++) {
+			if (metricDistances[i] > largestInner)
+				largestInner = metricDistances[i];
+		}
+		double smallestOuter = Double.POSITIVE_INFINITY;
+		for (int i = middle; i < end; i++) {
+			if (metricDistances[i] < smallestOuter)
+				smallestOuter = metricDistances[i];
+		}
+		this.innerRadius[node] = largestInner;
+		this.outerRadius[node] = smallestOuter;
+
+		if (middle > unbounded)
+			this.innerChild[node] = buildNode(unbounded, middle, metricDistances, random);
+		this.outerChild[node] = buildNode(middle, end, metricDistances, random);
+		return node;
+	}
+
+
+	/**
+	 * Reorders positions [start, end) of pointIndices (and metricDistances along with them) so that
+	 * position middle holds the median, with no larger distances before it and no smaller ones after it.
+	 */
+	private void selectMedian(int start, int end, int middle, double[] metricDistances) {
+		int left = start;
+		int right = end - 1;
+
+		while (left < right) {
+			double pivot = metricDistances[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+
+			while (i <= j) {
+				while (metricDistances[i] < pivot)
+					i++;
+				while (metricDistances[j] > pivot)
+					j--;
+				if (i <= j) {
+					double temp = metricDistances[i];
+					metricDistances[i] = metricDistances[j];
+					metricDistances[j] = temp;
+					swapPositions(i, j);
+					i++;
+					j--;
+				}
+			}
+
+			if (middle <= j)
+				right = j;
+			else if (middle >= i)
+				left = i;
+			else
+				break;
+		}
+	}
+
+
+	private void swapPositions(int i, int j) {
+		int temp = this.pointIndices[i];
+		this.pointIndices[i] = this.pointIndices[j];
+		this.pointIndices[j] = temp;
+	}
+
+
+	/**
+	 * Searches a node for neighbors of the query point.  The child on the query's side of the split
+	 * is visited first, and a child is skipped only when the triangle inequality guarantees that all
+	 * of its points are farther than the current kth nearest distance.
+	 */
+	private void searchNode(int node, int point, double[] query, NeighborHeap heap) {
+		int vantagePoint = this.vantagePoints[node];
+
+		if (vantagePoint == -1) {
+			scan(this.nodeStart[node], this.nodeEnd[node], point, query, heap);
+			return;
+		}
+
+		double distance = this.distanceFunction.computeDistance(query, this.dataSet[vantagePoint]);
+		if (vantagePoint != point)
+			heap.offer(vantagePoint, distance);
+		scan(this.nodeStart[node], this.unboundedEnd[node], point, query, heap);
+
+		double metricDistance = this.distanceFunction.toMetric(distance);
+		int inner = this.innerChild[node];
+		int outer = this.outerChild[node];
+
+		if (metricDistance <= (this.innerRadius[node] + this.outerRadius[node]) / 2) {
+			if (inner != -1 && !canSkip(metricDistance - this.innerRadius[node], heap))
+				searchNode(inner, point, query, heap);
+			if (outer != -1 && !canSkip(this.outerRadius[node] - metricDistance, heap))
+				searchNode(outer, point, query, heap);
+		}
+		else {
+			if (outer != -1 && !canSkip(this.outerRadius[node] - metricDistance, heap))
+				searchNode(outer, point, query, heap);
+			if (inner != -1 && !canSkip(metricDistance - this.innerRadius[node], heap))
+				searchNode(inner, point, query, heap);
+		}
+	}
+
+
+	/**
+	 * Decides whether a child can be skipped, given a lower bound on the metric distance from the
+	 * query to its points.  NaN bounds (e.g. a NaN distance to the vantage point) never allow a skip.
+	 */
+	private boolean canSkip(double lowerBound, NeighborHeap heap) {
+		double threshold = this.distanceFunction.toMetric(heap.getThreshold());
+		return lowerBound > threshold + RELATIVE_TOLERANCE * Math.abs(threshold) + ABSOLUTE_TOLERANCE;
+	}
+
+
+	private void scan(int start, int end, int point, double[] query, NeighborHeap heap) {
+		for (int i = start; i < end; i++) {
+			int neighbor = this.pointIndices[i];
+			if (neighbor == point)
+				continue;
+			// Distances beyond the current kth nearest distance would be rejected anyway, so they need not
+			// be computed in full.
+			double distance = this.distanceFunction.computeDistance(query, this.dataSet[neighbor], heap.getThreshold());
+			heap.offer(neighbor, distance);
+		}
+	}
+
+	// ------------------------------ GETTERS & SETTERS ------------------------------
+
+	public int getNumPoints() {
+		return this.dataSet.length;
+	}
+}
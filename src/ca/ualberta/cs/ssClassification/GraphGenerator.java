@@ -2,15 +2,30 @@ package ca.ualberta.cs.ssClassification;
 import java.util.ArrayList;
 
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.distance.NormalizedDotProduct;
+import ca.ualberta.cs.distance.PackedTanimotoSimilarity;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
+import ca.ualberta.cs.neighbors.NeighborSearch;
 
 public class GraphGenerator 
 {
 
     public static Graph generateGraph(double[][] data, DistanceCalculator distance, int k) throws Exception 
     {
+        // packed fingerprints for tanimoto, normalized points for cosine and pearson
+        double[][] distanceData = data;
+        DistanceCalculator dataDistance = distance;
+        if (PackedTanimotoSimilarity.canPack(data, distance)) {
+            distanceData = PackedTanimotoSimilarity.pack(data);
+            dataDistance = new PackedTanimotoSimilarity(data[0].length);
+        }
+        else if (NormalizedDotProduct.canNormalize(data, distance)) {
+            distanceData = NormalizedDotProduct.normalize(data, distance);
+            dataDistance = new NormalizedDotProduct(distance.getName());
+        }
+
         // computing the distance matrix
-        double[][] distanceMatrix = Utils.getDistanceMatrix(data, distance);
+        double[][] distanceMatrix = Utils.getDistanceMatrix(distanceData, dataDistance);
 
         // computing the adjacency matrix
         KNN knn = new KNN();
@@ -22,7 +37,7 @@ public class GraphGenerator
         double[][] weightedMatrix = null;
         RBFKernel rbf = new RBFKernel();
         rbf.computeSigma(adjacencyMatrix, knn.getKNNDistances());
-        weightedMatrix = rbf.getWeightedMatrix(adjacencyMatrix, data, distance);
+        weightedMatrix = rbf.getWeightedMatrix(adjacencyMatrix, distanceData, dataDistance);
 
         // computing the value of sigma
 //        double sigma = 0;
@@ -32,6 +47,26 @@ public class GraphGenerator
         // returning the weighted graph
         return new Graph(data, distanceMatrix, weightedMatrix, adjacencyMatrix, distance, k, sigma);
     }
+
+    /**
+     * Generates the graph as generateGraph(double[][], DistanceCalculator, int), but finds the kNN
+     * graph with a NeighborSearch over the data, e.g. an approximate NNDescentSearch.  The full
+     * distance matrix is still computed, since the Graph keeps it.
+     */
+    public static Graph generateGraph(double[][] data, DistanceCalculator distance, int k, NeighborSearch search) throws Exception 
+    {
+        double[][] distanceMatrix = Utils.getDistanceMatrix(data, distance);
+
+        KNN knn = new KNN();
+        knn.computeKNNGraph(search, k);
+        int[][] adjacencyMatrix = knn.getMutualKNN(distanceMatrix);
+
+        RBFKernel rbf = new RBFKernel();
+        rbf.computeSigma(adjacencyMatrix, knn.getKNNDistances());
+        double[][] weightedMatrix = rbf.getWeightedMatrix(adjacencyMatrix, data, distance);
+
+        return new Graph(data, distanceMatrix, weightedMatrix, adjacencyMatrix, distance, k, rbf.getSigma());
+    }
     
     public static Graph generateAptsGraph(double[][] data, double[] coreDistances, UndirectedGraph mst, DistanceCalculator distance)
     {
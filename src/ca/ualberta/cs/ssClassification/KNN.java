@@ -7,6 +7,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 
+import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.neighbors.NeighborSearch;
+import ca.ualberta.cs.neighbors.NeighborSearchFactory;
+
 // k-nearest neighbors (kNN)
 public class KNN {
 
@@ -128,6 +132,50 @@ public class KNN {
         }
     }
 
+    /**
+     * Computes the kNN graph from the data itself, searching the neighbors of each point with the
+     * NeighborSearch chosen by NeighborSearchFactory instead of scanning a full distance matrix.
+     */
+    public void computeKNNGraph(double[][] data, DistanceCalculator distance, int k) {
+        computeKNNGraph(NeighborSearchFactory.createSearch(data, distance), k);
+    }
+
+    /**
+     * Computes the kNN graph using a NeighborSearch.  As in computeKNNGraph(double[][], int), every
+     * point whose distance ties with the distance to the kth nearest neighbor (within 1E-10) is also
+     * taken as a neighbor, so the search is repeated with a larger k until all ties are found.
+     */
+    public void computeKNNGraph(NeighborSearch search, int k) {
+        double epsilon = 1E-10;
+        int n = search.getNumPoints();
+        kNNGraph = new int[n][n];
+        kNNDistances = new double[n];
+
+        int[] neighbors = new int[Math.max(n - 1, 0)];
+        double[] distances = new double[Math.max(n - 1, 0)];
+
+        for (int i = 0; i < n; i++) {
+            int numSearched = Math.min(k, n - 1);
+            int numFound = search.kNearestNeighbors(i, numSearched, neighbors, distances);
+            double maxAllowed = (numFound > 0) ? distances[Math.min(k, numFound) - 1] + epsilon : 0;
+
+            while (numFound == numSearched && numSearched < n - 1 && distances[numFound - 1] <= maxAllowed) {
+                numSearched = Math.min(2 * numSearched, n - 1);
+                numFound = search.kNearestNeighbors(i, numSearched, neighbors, distances);
+            }
+
+            double maxDistance = 0;
+            for (int j = 0; j < numFound && distances[j] <= maxAllowed; j++) {
+                kNNGraph[i][neighbors[j]] = 1;
+
+                if (distances[j] > maxDistance) {
+                    maxDistance = distances[j];
+                }
+            }
+            kNNDistances[i] = maxDistance;
+        }
+    }
+
     public static List<Integer> computeNearestNeighbors(double[][] distanceMatrix, int pointIndex, int k) {
         
         List<Integer> adjacencyList = new ArrayList<Integer>();
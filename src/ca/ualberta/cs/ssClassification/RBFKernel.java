@@ -27,17 +27,26 @@ public class RBFKernel {
         double[][] weightedMatrix = new double[n][n];
         
         double den = 2 * sigma * sigma;
+        int[] adjacent = new int[n];
+        double[] distances = new double[n];
         
         for (int i = 0; i < n; i++)
         {
+            // the distances to all adjacent points are computed in one batch
+            int numAdjacent = 0;
             for (int j = 0; j < n; j++)
             {
                 if (adjacencyMatrix[i][j] != 0)
-                {
-                    double dist = distance.computeDistance(data[i], data[j]);
-                    weightedMatrix[i][j] = adjacencyMatrix[i][j] * Math.exp( -(dist * dist) / den );
-//                    System.out.println("i: " + i + " j: " + j + " w: " + String.format("%.2f", weightedMatrix[i][j]) + " dist: " + String.format("%.2f", dist)+ " den: " + String.format("%."+ "2f", den));
-                }
+                    adjacent[numAdjacent++] = j;
+            }
+            distance.computeDistances(data[i], data, adjacent, numAdjacent, distances);
+
+            for (int position = 0; position < numAdjacent; position++)
+            {
+                int j = adjacent[position];
+                double dist = distances[position];
+                weightedMatrix[i][j] = adjacencyMatrix[i][j] * Math.exp( -(dist * dist) / den );
+//                System.out.println("i: " + i + " j: " + j + " w: " + String.format("%.2f", weightedMatrix[i][j]) + " dist: " + String.format("%.2f", dist)+ " den: " + String.format("%."+ "2f", den));
             }
         }
         return weightedMatrix;
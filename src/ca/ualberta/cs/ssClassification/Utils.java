@@ -14,15 +14,29 @@ import ca.ualberta.cs.distance.DistanceCalculator;
 
 public class Utils {
 
+    private static final int BLOCK_SIZE = 64;
+
     // getting the distance matrix
     public static double[][] getDistanceMatrix(double[][] data, DistanceCalculator function) {
         int n = data.length;
         double[][] distanceMatrix = new double[n][n];
-        for (int i = 0; i < n; i++) {
-            for (int j = i + 1; j < n; j++) {
-                double dist = function.computeDistance(data[i], data[j]);
-                distanceMatrix[i][j] = dist;
-                distanceMatrix[j][i] = dist;
+        double[] blockDistances = new double[BLOCK_SIZE * BLOCK_SIZE];
+
+        // the upper triangle is computed in square blocks which fit in cache
+        for (int blockOne = 0; blockOne < n; blockOne += BLOCK_SIZE) {
+            int endOne = Math.min(blockOne + BLOCK_SIZE, n);
+            for (int blockTwo = blockOne; blockTwo < n; blockTwo += BLOCK_SIZE) {
+                int endTwo = Math.min(blockTwo + BLOCK_SIZE, n);
+                int width = endTwo - blockTwo;
+                function.computeDistances(data, blockOne, endOne, data, blockTwo, endTwo, blockDistances);
+
+                for (int i = blockOne; i < endOne; i++) {
+                    for (int j = Math.max(blockTwo, i + 1); j < endTwo; j++) {
+                        double dist = blockDistances[(i - blockOne) * width + (j - blockTwo)];
+                        distanceMatrix[i][j] = dist;
+                        distanceMatrix[j][i] = dist;
+                    }
+                }
             }
         }
         return distanceMatrix;
@@ -175,7 +175,7 @@ public class SSDBSCANCandy {
 		for (Neighbor neighbor : neighbors)
 		{	
 			//TODO: The neighbor's core-distance is not used in this method, why calculate here?
-			ArrayList<Neighbor> currentNeighbors = dataset.getNeighbors(neighbor.getInstance(), distance);
+			ArrayList<Neighbor> currentNeighbors = dataset.getNeighbors(neighbor.getInstance(), distance, minPts);
 			neighbor.getInstance().setCoreDistance2(currentNeighbors, minPts);
 
 			//TODO: "core" equals to "instance.getCoreDistance", why is the second Math.max() necessary?
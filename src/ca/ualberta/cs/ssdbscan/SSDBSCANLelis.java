@@ -127,7 +127,7 @@ public class SSDBSCANLelis
 		{	
 			if(neighbor.getInstance().wasNotCoreDistanceSet())
 			{
-				ArrayList<Neighbor> currentNeighbors = dataset.getNeighbors(neighbor.getInstance(), distance);
+				ArrayList<Neighbor> currentNeighbors = dataset.getNeighbors(neighbor.getInstance(), distance, minPts);
 				neighbor.getInstance().setCoreDistance2(currentNeighbors, minPts);
 			}
 			
@@ -14,6 +14,7 @@ import java.util.Stack;
 import java.util.TreeSet;
 
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.hdbscanstar.ParallelExecution;
 import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
 
 public class SSExtraction implements Serializable
@@ -62,6 +63,7 @@ public class SSExtraction implements Serializable
 	{
 		Map<Integer, Integer> response = new HashMap<Integer, Integer>();
 		ArrayList<Integer> labeledIds  = new ArrayList<Integer>(labeledObjects.keySet());
+		int[] neighborIndices = new int[G.getNumVertices()]; // the neighbors are visited in the order of G.getNeighbors()
 
 		while(!labeledIds.isEmpty())
 		{
@@ -106,12 +108,11 @@ public class SSExtraction implements Serializable
 				}
 
 				// The edge from pred[next] to next is in the MST (if next!=s)
-				Map<Integer, Double> neighbors = G.getNeighbors(next);
-
-				for(Map.Entry<Integer, Double> entries: neighbors.entrySet())
+				int numNeighbors = G.getNeighborIndicesInMapOrder(next, neighborIndices);
+				for(int j = 0; j < numNeighbors; j++)
 				{
-					vertex= entries.getKey();
-					nearestDist= entries.getValue();
+					vertex= G.getNeighborAtIndex(next, neighborIndices[j]);
+					nearestDist= G.getNeighborWeightAtIndex(next, neighborIndices[j]);
 
 					if(distances[vertex] > nearestDist)
 					{
@@ -144,6 +145,7 @@ public class SSExtraction implements Serializable
 	{
 
 		int numVertices = G.getNumVertices();
+		int[] neighborIndices = new int[numVertices]; // the neighbors are visited in the order of G.getNeighbors()
 
 		Map<Integer, double[]> storedPaths = new HashMap<Integer, double[]>();
 		Map<Integer, Integer> response = new HashMap<Integer, Integer>();
@@ -167,10 +169,12 @@ public class SSExtraction implements Serializable
 		for(Map.Entry<Integer, Integer> entry: labeledObjects.entrySet())
 		{
 			int idLabeled = entry.getKey();
-			for(Map.Entry<Integer, Double> neighbor: G.getNeighbors(idLabeled).entrySet())
+			int numNeighbors = G.getNeighborIndicesInMapOrder(idLabeled, neighborIndices);
+			for(int i = 0; i < numNeighbors; i++)
 			{
-				if(idLabeled != neighbor.getKey())
-					edgeList.add(new Edge(idLabeled, neighbor.getKey(), neighbor.getValue()));
+				int neighbor = G.getNeighborAtIndex(idLabeled, neighborIndices[i]);
+				if(idLabeled != neighbor)
+					edgeList.add(new Edge(idLabeled, neighbor, G.getNeighborWeightAtIndex(idLabeled, neighborIndices[i])));
 			}
 		}
 
@@ -250,10 +254,12 @@ public class SSExtraction implements Serializable
 				//				System.out.println("Going to update paths " + affectedEdges + "\nUnlabeled: " + unlabeledVertex);
 				updatePaths(G, labeledNeighbors, unlabeledVertex, storedPaths, response);
 
-				for(Map.Entry<Integer, Double> neighbor: G.getNeighbors(unlabeledVertex).entrySet())
+				int numNeighbors = G.getNeighborIndicesInMapOrder(unlabeledVertex, neighborIndices);
+				for(int i = 0; i < numNeighbors; i++)
 				{
-					if(neighbor.getKey() != unlabeledVertex && !response.containsKey(neighbor.getKey()))
-						edgeList.add(new Edge(unlabeledVertex, neighbor.getKey(), neighbor.getValue()));
+					int neighbor = G.getNeighborAtIndex(unlabeledVertex, neighborIndices[i]);
+					if(neighbor != unlabeledVertex && !response.containsKey(neighbor))
+						edgeList.add(new Edge(unlabeledVertex, neighbor, G.getNeighborWeightAtIndex(unlabeledVertex, neighborIndices[i])));
 				}
 			}
 		}
@@ -337,42 +343,7 @@ public class SSExtraction implements Serializable
 	private static UndirectedGraph updateEdges(UndirectedGraph G,
 			double[][] objects, SemiWeight weight) 
 	{
-
-		Map<Integer, Map<Integer, Double>> newEdges           = new HashMap<Integer, Map<Integer, Double>>();
-		BitSet visited           							  = new BitSet(G.getNumVertices());
-		ArrayList<Integer> queue 							  = new ArrayList<Integer>();
-
-
-		for(Integer inst=0; inst < objects.length; inst++)
-			newEdges.put(inst, new HashMap<Integer, Double>());
-
-		int startPoint = objects.length-1;
-		visited.set(startPoint);
-		queue.add(startPoint);
-
-		while(!queue.isEmpty())
-		{
-			Integer currentNode = queue.remove((int)0);
-
-			Map<Integer, Double> neighbors = G.getNeighbors(currentNode);
-
-			for(Map.Entry<Integer, Double> entries: neighbors.entrySet())
-			{
-				int idNeighbor    = entries.getKey();
-
-				double newCostEdges = entries.getValue() * weight.computeWeight(objects[currentNode], objects[idNeighbor], currentNode, idNeighbor);
-				newEdges.get(currentNode).put(idNeighbor, newCostEdges);
-				newEdges.get(idNeighbor).put(currentNode, newCostEdges);
-
-				if(!visited.get(idNeighbor))
-				{
-					queue.add(idNeighbor);
-					visited.set(idNeighbor);
-				}
-
-			}
-		}
-		return new UndirectedGraph(newEdges, G.getNumVertices(), G.getVertexA(), G.getVertexB(), G.getEdgesWeights());
+		return weight.reweightEdges(G, objects, ParallelExecution.DEFAULT_NUM_THREADS);
 	}
 
 
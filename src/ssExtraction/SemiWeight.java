@@ -12,6 +12,8 @@ import java.util.Map;
 import java.util.TreeMap;
 import javafx.util.Pair;
 import ca.ualberta.cs.distance.DistanceCalculator;
+import ca.ualberta.cs.hdbscanstar.ParallelExecution;
+import ca.ualberta.cs.hdbscanstar.UndirectedGraph;
 
 public class SemiWeight 
 {
@@ -21,6 +23,11 @@ public class SemiWeight
 	double expo;
 	Map<Integer, Integer[]> pairOfLabeledForObject;
 	double timeToApplyWeight;
+	double[] edgeWeights;
+	UndirectedGraph reweightedGraph;
+
+	// Weighting fewer edges than this is faster on one thread than on a new ForkJoinPool
+	private static final int MIN_EDGES_PER_THREAD = 1 << 13;
 
 	/** Creates a new instance of SemiWeight */
 
@@ -40,6 +47,48 @@ public class SemiWeight
 		return(weightDistance(p, q, idP, idQ));
 	}
 	
+	/**
+	 * Multiplies the weight of each edge of a minimum spanning tree by computeWeight() of its vertices,
+	 * taking as p the vertex which a breadth-first search from the last object reaches later (the one 
+	 * further from the last object), as the breadth-first update of the edges always did.  The edges are
+	 * weighted into buffers which are reused by the next call (together with the returned graph, which 
+	 * shares everything else with G), so the returned graph is only valid until then.  Trees with fewer 
+	 * than 2 * MIN_EDGES_PER_THREAD edges are weighted serially.  Each pair of vertices must share at 
+	 * most one edge, as in a tree.
+	 * @param G The minimum spanning tree, which is not modified
+	 * @param objects The objects of the vertices
+	 * @param numThreads The number of threads to use
+	 * @return The reweighted minimum spanning tree
+	 */
+	public UndirectedGraph reweightEdges(final UndirectedGraph G, final double[][] objects, int numThreads)
+	{
+		final int[] ranks = G.getBreadthFirstRanks(objects.length-1);
+		final int[] vertexA = G.getVertexA();
+		final int[] vertexB = G.getVertexB();
+
+		if (this.edgeWeights == null || this.edgeWeights.length != vertexA.length)
+			this.edgeWeights = new double[vertexA.length];
+		final double[] newWeights = this.edgeWeights;
+
+		numThreads = ParallelExecution.numThreadsFor(vertexA.length, MIN_EDGES_PER_THREAD, numThreads);
+		ParallelExecution.forEachRange(vertexA.length, numThreads, new ParallelExecution.RangeTask() {
+			public void run(int start, int end) {
+				for (int i = start; i < end; i++) {
+					int p = vertexA[i];
+					int q = vertexB[i];
+					if (ranks[q] > ranks[p]) {
+						p = vertexB[i];
+						q = vertexA[i];
+					}
+					newWeights[i] = G.getEdgeWeightAtIndex(i) * computeWeight(objects[p], objects[q], p, q);
+				}
+			}
+		});
+
+		this.reweightedGraph = G.reweight(newWeights, this.reweightedGraph, numThreads);
+		return this.reweightedGraph;
+	}
+
 	public void performQuery(double[][] database)
 	{
 		this.pairOfLabeledForObject = new HashMap<Integer, Integer[]>();